@@ -0,0 +1,91 @@
+package ThreeDimensionalComponents;
+
+import java.awt.*;
+import java.util.Random;
+
+//Seeded scene generators shared by the benchmarks, so every benchmark at the same parameters sees the same data
+final class BenchmarkScenes {
+	
+	//Faces of a cuboid made by "cuboid(...)"
+	static final int[][] CUBOID_FACES = new int[][]{new int[]{0,2,3,1}, new int[]{4,6,7,5}, new int[]{0,4,5,1}, new int[]{1,5,7,3}, new int[]{2,6,7,3}, new int[]{0,4,6,2}};
+	
+	private BenchmarkScenes(){
+	
+	}
+	
+	//Random face depths in front of the camera
+	static double[] depths(int count, long seed){
+		Random random = new Random(seed);
+		double[] depths = new double[count];
+		for (var i = 0; i < count; i++){
+			depths[i] = -random.nextDouble() * 10000;
+		}
+		return depths;
+	}
+	
+	//Random points in a cube of the given size around the origin, as {x, y, z}
+	static double[][] points(int count, double size, long seed){
+		Random random = new Random(seed);
+		double[][] points = new double[3][count];
+		for (var i = 0; i < count; i++){
+			points[0][i] = (random.nextDouble() - 0.5) * size;
+			points[1][i] = (random.nextDouble() - 0.5) * size;
+			points[2][i] = (random.nextDouble() - 0.5) * size;
+		}
+		return points;
+	}
+	
+	//Axis-aligned cuboid, as {x, y, z}
+	static double[][] cuboid(double x, double y, double z, double size){
+		double half = size / 2;
+		double[][] points = new double[3][8];
+		for (var i = 0; i < 8; i++){
+			points[0][i] = x + ((i & 4) == 0 ? -half : half);
+			points[1][i] = y + ((i & 1) == 0 ? -half : half);
+			points[2][i] = z + ((i & 2) == 0 ? -half : half);
+		}
+		return points;
+	}
+	
+	//Flat grid of quads in the xz-plane, with "cells" by "cells" faces
+	static Mesh grid(int cells, double size){
+		final int side = cells + 1;
+		double[] x = new double[side * side];
+		double[] y = new double[side * side];
+		double[] z = new double[side * side];
+		for (var i = 0; i < side; i++){
+			for (var j = 0; j < side; j++){
+				x[i * side + j] = (j / (double) cells - 0.5) * size;
+				z[i * side + j] = (i / (double) cells - 0.5) * size;
+			}
+		}
+		int[][] faces = new int[cells * cells][];
+		for (var i = 0; i < cells; i++){
+			for (var j = 0; j < cells; j++){
+				int corner = i * side + j;
+				faces[i * cells + j] = new int[]{corner, corner + 1, corner + side + 1, corner + side};
+			}
+		}
+		return new Mesh(x, y, z, faces);
+	}
+	
+	//Registers "count" cuboids at random positions with random rotations. If "around" is false they are all in front
+	//of the default camera, otherwise they are spread all around it, like a walk-through scene where most of the
+	//geometry is out of view
+	static MeshHandle[] registerCuboids(ThreeDimensionalCanvas canvas, int count, boolean around, long seed){
+		Random random = new Random(seed);
+		double[][] points = cuboid(0, 0, 0, 400);
+		Mesh mesh = new Mesh(points[0], points[1], points[2], CUBOID_FACES);
+		MeshHandle[] handles = new MeshHandle[count];
+		for (var i = 0; i < count; i++){
+			handles[i] = canvas.registerMesh(mesh, random.nextDouble() * Math.PI, random.nextDouble() * Math.PI, 0,
+					new Color(255, 255, 255), new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256), 200));
+			if (around){
+				handles[i].setOffset((random.nextDouble() - 0.5) * 40000, (random.nextDouble() - 0.5) * 8000, 10000 + (random.nextDouble() - 0.5) * 40000);
+			} else {
+				handles[i].setOffset((random.nextDouble() - 0.5) * 8000, (random.nextDouble() - 0.5) * 8000, random.nextDouble() * 6000);
+			}
+		}
+		return handles;
+	}
+}
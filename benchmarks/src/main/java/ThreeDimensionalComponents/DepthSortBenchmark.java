@@ -0,0 +1,122 @@
+package ThreeDimensionalComponents;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+//Depth sort of the draw queue at varying face counts. "random" gives every frame fresh depths, so the sorter always
+//falls back to the radix sort; "coherent" moves every face a little per frame, like a camera walking through the
+//scene, which the insertion sort over the previous order handles.
+//"legacySort" is the selection sort "drawShapes" used to do, as the baseline. It is O(n^2) and ignores the previous
+//order, so at 100k faces a single call takes seconds
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DepthSortBenchmark {
+	
+	@Param({"1000", "10000", "100000"})
+	int faces;
+	
+	@Param({"random", "coherent"})
+	String motion;
+	
+	@Param({"42"})
+	long seed;
+	
+	private double[] depths;
+	private Random random;
+	private DepthSorter sorter;
+	
+	@Setup(Level.Trial)
+	public void setUp(){
+		depths = BenchmarkScenes.depths(faces, seed);
+		random = new Random(seed);
+		sorter = new DepthSorter();
+		
+		//Checked once, so the numbers can not come from a broken sort
+		verify(sorter.sort(depths, faces));
+		verifyLegacy();
+	}
+	
+	//Moves the faces before every sort. Not part of the measured time
+	@Setup(Level.Invocation)
+	public void move(){
+		if (motion.equals("random")){
+			for (var i = 0; i < faces; i++){
+				depths[i] = -random.nextDouble() * 10000;
+			}
+		} else {
+			for (var i = 0; i < faces; i++){
+				depths[i] += random.nextDouble() - 0.5;
+			}
+		}
+	}
+	
+	@Benchmark
+	public int[] sort(){
+		return sorter.sort(depths, faces);
+	}
+	
+	@Benchmark
+	public int legacySort(){
+		return legacySort(depths, null);
+	}
+	
+	//The depth ordering "drawShapes" used to do, without the drawing. The depths are written to "sorted" in the
+	//order they are picked, if it is not null
+	private static int legacySort(double[] depths, double[] sorted){
+		ArrayList<Double> zIndex = new ArrayList<>();
+		for (double depth : depths) {
+			zIndex.add(depth);
+		}
+		@SuppressWarnings("unchecked")
+		ArrayList<Double> zIndexCache = (ArrayList<Double>) zIndex.clone();
+		int checksum = 0;
+		int size = zIndex.size();
+		double lowZValue;
+		int lowZIndex;
+		for (var i = 0; i < size; i++){
+			lowZValue = 1.0/0.0;
+			lowZIndex = -1;
+			for (var j = 0; j < zIndex.size(); j++){
+				if (lowZValue > zIndex.get(j)){
+					lowZValue = zIndex.get(j).doubleValue();
+					lowZIndex = j;
+				}
+			}
+			if (sorted != null){
+				sorted[i] = lowZValue;
+			}
+			checksum += lowZIndex;
+			zIndex.remove(lowZIndex);
+		}
+		return checksum + zIndexCache.size();
+	}
+	
+	private void verify(int[] order){
+		for (var i = 1; i < faces; i++){
+			if (depths[order[i - 1]] > depths[order[i]]){
+				throw new Error("Depth order is not sorted at " + i);
+			}
+		}
+	}
+	
+	//Only at up to 10k faces, where one extra call is cheap
+	private void verifyLegacy(){
+		if (faces > 10000){
+			return;
+		}
+		final double[] sorted = new double[faces];
+		legacySort(depths, sorted);
+		for (var i = 1; i < faces; i++){
+			if (sorted[i - 1] > sorted[i]){
+				throw new Error("Legacy depth order is not sorted at " + i);
+			}
+		}
+	}
+}
@@ -0,0 +1,65 @@
+package ThreeDimensionalComponents;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.util.concurrent.TimeUnit;
+
+//A full headless frame into a BufferedImage: clear, transform and queue registered cuboids, sort, rasterize and
+//present. The camera sways a little every frame, so every mesh is rebuilt, like a player looking around.
+//"front" puts every cuboid in view, "around" spreads them all around the camera, so most of them are culled
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class FrameBenchmark {
+	
+	@Param({"graphics2d", "zbuffer", "tiled"})
+	String rasterizer;
+	
+	@Param({"10", "100", "1000"})
+	int cuboids;
+	
+	@Param({"front", "around"})
+	String scene;
+	
+	@Param({"600"})
+	int size;
+	
+	@Param({"42"})
+	long seed;
+	
+	private ThreeDimensionalCanvas canvas;
+	private int frames = 0;
+	
+	@Setup(Level.Trial)
+	public void setUp(){
+		OffscreenRenderTarget target = new OffscreenRenderTarget(size, size);
+		canvas = new ThreeDimensionalCanvas(250, target, size / 2, size / 2, new Color(255, 255, 255), new Color(0, 0, 0));
+		switch (rasterizer){
+			case "graphics2d":
+				canvas.setRasterizer(new Graphics2DRasterizer());
+				break;
+			case "zbuffer":
+				canvas.setRasterizer(new ZBufferRasterizer());
+				break;
+			case "tiled":
+				canvas.setRasterizer(new TiledRasterizer(true));
+				break;
+			default:
+				throw new Error("Unknown rasterizer: " + rasterizer);
+		}
+		BenchmarkScenes.registerCuboids(canvas, cuboids, scene.equals("around"), seed);
+	}
+	
+	@Benchmark
+	public int[] frame(){
+		canvas.setCamRotY(0.2 * Math.sin(++frames * 0.05));
+		canvas.clear(true);
+		canvas.drawShapes(true);
+		canvas.update();
+		return canvas.getPixels();
+	}
+}
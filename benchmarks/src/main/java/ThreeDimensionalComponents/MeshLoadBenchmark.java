@@ -0,0 +1,64 @@
+package ThreeDimensionalComponents;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+//Mesh import: streaming an OBJ file that is already in memory, against loading the same mesh from the memory-mapped
+//binary cache. Disk speed is left out of the OBJ case, so the difference is all parsing
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MeshLoadBenchmark {
+	
+	@Param({"16384", "262144"})
+	int faces;
+	
+	private byte[] obj;
+	private Path cache;
+	
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		int cells = Math.max(1, (int) Math.sqrt(faces));
+		Mesh mesh = BenchmarkScenes.grid(cells, 10000);
+		StringBuilder text = new StringBuilder();
+		for (var i = 0; i < mesh.getPointCount(); i++){
+			text.append("v ").append(mesh.getX()[i]).append(' ').append(Math.sin(i) * 100).append(' ').append(mesh.getZ()[i]).append('\n');
+		}
+		final int[] indices = mesh.getFaceIndices();
+		final int[] offsets = mesh.getFaceOffsets();
+		for (var i = 0; i < mesh.getFaceCount(); i++){
+			text.append('f');
+			for (var j = offsets[i]; j < offsets[i + 1]; j++){
+				text.append(' ').append(indices[j] + 1);
+			}
+			text.append('\n');
+		}
+		obj = text.toString().getBytes(StandardCharsets.US_ASCII);
+		cache = Files.createTempFile("benchmark", ".mesh");
+		MeshLoader.writeCache(MeshLoader.loadOBJ(new ByteArrayInputStream(obj)), cache);
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(cache);
+	}
+	
+	@Benchmark
+	public Mesh obj() throws IOException {
+		return MeshLoader.loadOBJ(new ByteArrayInputStream(obj));
+	}
+	
+	@Benchmark
+	public Mesh cache() throws IOException {
+		return MeshLoader.readCache(cache);
+	}
+}
@@ -0,0 +1,50 @@
+package ThreeDimensionalComponents;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.util.concurrent.TimeUnit;
+
+//Polygon projection: copies the projected faces of a transformed mesh into the draw queue, then turns every face
+//into the integer screen polygon the Graphics2D backend draws. The transform itself is measured by
+//TransformBenchmark, so the mesh is only transformed once
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProjectionBenchmark {
+	
+	@Param({"1024", "16384", "131072"})
+	int faces;
+	
+	private MeshHandle handle;
+	private final DrawQueue queue = new DrawQueue();
+	private final int[] xPoints = new int[4];
+	private final int[] yPoints = new int[4];
+	
+	@Setup(Level.Trial)
+	public void setUp(){
+		int cells = Math.max(1, (int) Math.sqrt(faces));
+		handle = new MeshHandle(BenchmarkScenes.grid(cells, 10000), 0.2, 0.3, 0, Color.WHITE, Color.BLACK);
+		handle.rebuild(new Matrix4().setIdentity().translate(0, 0, -10000), 250, 300, 300, 0, false);
+	}
+	
+	@Benchmark
+	public int project(){
+		final int[] indices = handle.getMesh().getFaceIndices();
+		final int[] offsets = handle.getMesh().getFaceOffsets();
+		queue.truncate(0);
+		for (var i = 0; i < handle.visibleCount; i++){
+			int face = handle.visibleFaces[i];
+			queue.addFace(handle.vertices, indices, offsets[face], offsets[face + 1], handle.zList[i], handle.lineARGB, handle.faceARGB);
+		}
+		int checksum = 0;
+		for (var face = 0; face < queue.faceCount; face++){
+			queue.getPolygon(face, xPoints, yPoints);
+			checksum += xPoints[0] + yPoints[0];
+		}
+		return checksum;
+	}
+}
@@ -0,0 +1,82 @@
+package ThreeDimensionalComponents;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+//Transform throughput, reported as vertices per second through the "vertices" counter.
+//"buffer" is the bare model-view transform and projection of a point cloud, "rebuild" is a full registered mesh
+//rebuild (transform, projection, face depths and clipping), and "parallel" is the same on the common pool
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransformBenchmark {
+	
+	@Param({"1024", "65536", "1048576"})
+	int points;
+	
+	@Param({"42"})
+	long seed;
+	
+	private double[][] cloud;
+	private final Matrix4 modelView = new Matrix4();
+	private final VertexBuffer vertices = new VertexBuffer();
+	
+	private final Matrix4 view = new Matrix4();
+	private MeshHandle handle;
+	private final ArrayList<MeshHandle> handles = new ArrayList<>();
+	private int cameraVersion = 0;
+	
+	//Counts transformed vertices, so JMH reports them as a rate
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class Counters {
+		public long vertices;
+		
+		@Setup(Level.Iteration)
+		public void clear(){
+			vertices = 0;
+		}
+	}
+	
+	@Setup(Level.Trial)
+	public void setUp(){
+		cloud = BenchmarkScenes.points(points, 10000, seed);
+		modelView.setIdentity().translate(0, 0, -20000).rotateY(0.3).rotateX(0.2);
+		vertices.resize(points);
+		
+		//A square grid with about as many points as the cloud
+		int cells = Math.max(1, (int) Math.sqrt(points) - 1);
+		handle = new MeshHandle(BenchmarkScenes.grid(cells, 10000), 0.2, 0.3, 0, Color.WHITE, Color.BLACK);
+		handles.add(handle);
+		view.setIdentity().translate(0, 0, -10000);
+	}
+	
+	@Benchmark
+	public VertexBuffer buffer(Counters counters){
+		vertices.transform(modelView, cloud[0], cloud[1], cloud[2], points, 250, 300, 300);
+		counters.vertices += points;
+		return vertices;
+	}
+	
+	@Benchmark
+	public MeshHandle rebuild(Counters counters){
+		handle.rebuild(view, 250, 300, 300, ++cameraVersion, false);
+		counters.vertices += handle.getMesh().getPointCount();
+		return handle;
+	}
+	
+	@Benchmark
+	public MeshHandle parallel(Counters counters){
+		handle.beginRebuild(view);
+		ForkJoinPool.commonPool().invoke(new MeshTransformTask(handles, 250, 300, 300, ++cameraVersion, false));
+		counters.vertices += handle.getMesh().getPointCount();
+		return handle;
+	}
+}
@@ -0,0 +1,62 @@
+package ThreeDimensionalComponents;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+//Transform kernels side by side on the same point cloud: the scalar loop, the SIMD kernel on doubles, and the SIMD
+//kernel on float32 copies of the points. The forked JVM gets the Vector API module, so the SIMD paths are available
+//whenever the build ran on Java 16+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class VectorTransformBenchmark {
+	
+	@Param({"4096", "262144"})
+	int points;
+	
+	@Param({"scalar", "vector", "float"})
+	String path;
+	
+	private Mesh mesh;
+	private float[][] floatPoints;
+	private final Matrix4 modelView = new Matrix4();
+	private final VertexBuffer vertices = new VertexBuffer();
+	
+	@Setup(Level.Trial)
+	public void setUp(){
+		if (!path.equals("scalar") && TransformKernel.INSTANCE == null){
+			throw new Error("SIMD transform kernel is not available!");
+		}
+		Random random = new Random(42);
+		double[] x = new double[points], y = new double[points], z = new double[points];
+		for (var i = 0; i < points; i++){
+			x[i] = random.nextGaussian() * 1000;
+			y[i] = random.nextGaussian() * 1000;
+			z[i] = random.nextGaussian() * 1000;
+		}
+		mesh = new Mesh(x, y, z, new int[][]{new int[]{0, 1, 2}});
+		floatPoints = mesh.getFloatPoints();
+		modelView.setModelView(new Matrix4().setIdentity().translate(0, 0, -10000), 0, 0, 0, 0, 0, 0, 0.3, 0.4, 0.5);
+		vertices.resize(points);
+	}
+	
+	@Benchmark
+	public double transform(){
+		switch (path){
+			case "scalar":
+				vertices.transformScalar(modelView, mesh.getX(), mesh.getY(), mesh.getZ(), 0, points, 250, 300, 300);
+				break;
+			case "vector":
+				TransformKernel.INSTANCE.transform(modelView.m, mesh.getX(), mesh.getY(), mesh.getZ(), 0, points, 250, 300, 300, vertices);
+				break;
+			default:
+				TransformKernel.INSTANCE.transform(modelView.m, floatPoints[0], floatPoints[1], floatPoints[2], 0, points, 250, 300, 300, vertices);
+		}
+		return vertices.screenX[points - 1];
+	}
+}
@@ -1,31 +1,34 @@
+import ThreeDimensionalComponents.FrameStats;
+import ThreeDimensionalComponents.RenderLoop;
 import ThreeDimensionalComponents.ThreeDimensionalCanvas;
 
-import javax.swing.*;
 import java.awt.*;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
 
 public class Main {
     
     public static void main(String[] args) {
         ThreeDimensionalCanvas canvas = new ThreeDimensionalCanvas(250, 600, 600, 300,300, new Color(255,255,255), new Color(0,0,0, 251));
         canvas.clear(true);
-        ActionListener updateTask = new ActionListener() {
-            private int counter = 0;
-            private long fpsStart = System.currentTimeMillis();
+        RenderLoop renderLoop = new RenderLoop(canvas, 10);
+        FrameStats stats = canvas.getFrameStats();
+        renderLoop.setFrameListener(new Runnable() {
+            private long fpsStart = System.nanoTime();
             private int fpsCount = 0;
             @Override
-            public void actionPerformed(ActionEvent actionEvent) {
-                canvas.loop();
-                if (fpsStart + 100 < System.currentTimeMillis()){
-                    System.out.println("FPS: " + (1000 / (System.currentTimeMillis() - fpsStart) * fpsCount));
+            public void run() {
+                fpsCount++;
+                long now = System.nanoTime();
+                if (now - fpsStart >= 1_000_000_000L){
+                    double fps = fpsCount * 1e9 / (now - fpsStart);
+                    System.out.printf("FPS: %.1f, p99 frame: %.2f ms, p99 raster: %.2f ms%n", fps,
+                            stats.getPercentileNanos(FrameStats.FRAME, 99) / 1e6,
+                            stats.getPercentileNanos(FrameStats.RASTER, 99) / 1e6);
                     fpsCount = 0;
-                    fpsStart = System.currentTimeMillis();
+                    fpsStart = now;
                 }
-                fpsCount++;
             }
-        };
-        new Timer(10, updateTask).start();
+        });
+        renderLoop.start();
         
     }
 }
@@ -0,0 +1,525 @@
+package ThreeDimensionalComponents;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.awt.*;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+//Binary space partitioning tree over static, world-space geometry. Built once, splitting faces that cross a
+//partition plane, after which walking it from the camera's position gives an exact back-to-front order without
+//sorting anything. Set on a canvas with "setStaticGeometry(...)"; its faces are merged with the sorted dynamic faces.
+//Static geometry can not move: add everything with "add(...)", then call "build()" once
+public final class BSPTree {
+	
+	//Points closer than this to a plane are on it
+	private static final double EPSILON = 1e-6;
+	
+	//Faces tried as partition planes per node. Trying all of them makes building quadratic
+	private static final int CANDIDATES = 16;
+	
+	//Results of "classify"
+	private static final int COPLANAR = 0;
+	private static final int FRONT = 1;
+	private static final int BACK = 2;
+	private static final int SPANNING = 3;
+	
+	//Polygons. Polygon i uses points polygonStart[i] up to polygonStart[i] + polygonSize[i]
+	private double[] pointX = new double[64];
+	private double[] pointY = new double[64];
+	private double[] pointZ = new double[64];
+	private int pointCount = 0;
+	private int[] polygonStart = new int[16];
+	private int[] polygonSize = new int[16];
+	private int[] lineColors = new int[16];
+	private int[] faceColors = new int[16];
+	private int polygonCount = 0;
+	
+	//Nodes: partition plane (a * x + b * y + c * z + d, front is positive), children (-1 if none), the points of the
+	//polygons lying in the plane, and the bounds of everything in the subtree
+	private double[] planeA, planeB, planeC, planeD;
+	private int[] front, back;
+	private int[] nodePolygonStart, nodePolygonEnd;
+	private int[] nodePointStart, nodePointEnd;
+	private double[] minX, minY, minZ, maxX, maxY, maxZ;
+	private int nodeCount = 0;
+	
+	private boolean built = false;
+	
+	//Points of every polygon, counting 0 up, so a range of them can be handed around like mesh faces
+	private int[] identity;
+	
+	//Transformed points, and the camera version every node's points were transformed for
+	private final VertexBuffer vertices = new VertexBuffer();
+	private int[] nodeVersion;
+	
+	//Traversal stack
+	private int[] stack = new int[64];
+	
+	//Adds a mesh, as it is, in world space
+	public void add(@NotNull Mesh mesh, Color lineColor, Color faceColor){
+		add(mesh, 0, 0, 0, 0, 0, 0, lineColor, faceColor);
+	}
+	
+	//Adds a mesh, rotated (in radians) around its center and offset, the same way a registered mesh would be
+	public void add(@NotNull Mesh mesh, double thetaX, double thetaY, double thetaZ,
+	                double offsetX, double offsetY, double offsetZ, Color lineColor, Color faceColor){
+		if (built){
+			throw new Error("Static geometry can not be changed once built!");
+		}
+		final Matrix4 model = new Matrix4().setModelView(new Matrix4(), mesh.getCenterX(), mesh.getCenterY(), mesh.getCenterZ(),
+				offsetX, offsetY, offsetZ, thetaX, thetaY, thetaZ);
+		final double[] x = mesh.getX();
+		final double[] y = mesh.getY();
+		final double[] z = mesh.getZ();
+		final int[] indices = mesh.getFaceIndices();
+		final int[] offsets = mesh.getFaceOffsets();
+		for (var i = 0; i < mesh.getFaceCount(); i++){
+			beginPolygon(lineColor.getRGB(), faceColor.getRGB());
+			for (var j = offsets[i]; j < offsets[i + 1]; j++){
+				int point = indices[j];
+				addPoint(model.transformX(x[point], y[point], z[point]),
+						model.transformY(x[point], y[point], z[point]),
+						model.transformZ(x[point], y[point], z[point]));
+			}
+		}
+	}
+	
+	private int beginPolygon(int lineColor, int faceColor){
+		if (polygonCount == polygonStart.length){
+			int size = polygonCount * 2;
+			polygonStart = Arrays.copyOf(polygonStart, size);
+			polygonSize = Arrays.copyOf(polygonSize, size);
+			lineColors = Arrays.copyOf(lineColors, size);
+			faceColors = Arrays.copyOf(faceColors, size);
+		}
+		polygonStart[polygonCount] = pointCount;
+		polygonSize[polygonCount] = 0;
+		lineColors[polygonCount] = lineColor;
+		faceColors[polygonCount] = faceColor;
+		return polygonCount++;
+	}
+	
+	private void addPoint(double x, double y, double z){
+		if (pointCount == pointX.length){
+			int size = pointCount * 2;
+			pointX = Arrays.copyOf(pointX, size);
+			pointY = Arrays.copyOf(pointY, size);
+			pointZ = Arrays.copyOf(pointZ, size);
+		}
+		pointX[pointCount] = x;
+		pointY[pointCount] = y;
+		pointZ[pointCount] = z;
+		pointCount++;
+		polygonSize[polygonCount - 1]++;
+	}
+	
+	public boolean isBuilt(){
+		return built;
+	}
+	
+	//Number of faces after building, including the pieces of split faces
+	public int getFaceCount(){
+		return polygonCount;
+	}
+	
+	//Builds the tree. Faces crossing a partition plane are split in two
+	public void build(){
+		if (built){
+			throw new Error("Static geometry is already built!");
+		}
+		
+		//Polygon planes, from Newell's normal. Degenerate polygons are left out
+		final int inputCount = polygonCount;
+		double[] normalX = new double[inputCount], normalY = new double[inputCount], normalZ = new double[inputCount];
+		double[] distance = new double[inputCount];
+		int[] polygons = new int[inputCount];
+		int kept = 0;
+		for (var i = 0; i < inputCount; i++){
+			if (polygonPlane(i, normalX, normalY, normalZ, distance)){
+				polygons[kept++] = i;
+			}
+		}
+		
+		allocateNodes(Math.max(16, kept));
+		
+		//Nodes are filled from a work list, rather than recursively, as a chain of convex faces is as deep as it is long
+		final ArrayDeque<int[]> work = new ArrayDeque<>();
+		final ArrayDeque<Integer> workNodes = new ArrayDeque<>();
+		//Node each polygon lies in, or -1 if it was split, left out, or not placed yet
+		int[] owner = new int[Math.max(16, inputCount)];
+		Arrays.fill(owner, -1);
+		if (kept > 0){
+			work.push(Arrays.copyOf(polygons, kept));
+			workNodes.push(newNode());
+		}
+		int[] frontList = new int[16];
+		int[] backList = new int[16];
+		while (!work.isEmpty()){
+			final int[] list = work.pop();
+			final int node = workNodes.pop();
+			
+			//Picks the partition plane that splits the fewest faces, keeping the sides balanced
+			int splitter = list[0];
+			long bestScore = Long.MAX_VALUE;
+			final int step = Math.max(1, list.length / CANDIDATES);
+			for (var i = 0; i < list.length; i += step){
+				int candidate = list[i];
+				int frontCount = 0, backCount = 0, splits = 0;
+				for (var j = 0; j < list.length; j++){
+					int side = classify(list[j], normalX[candidate], normalY[candidate], normalZ[candidate], distance[candidate]);
+					if (side == SPANNING){
+						splits++;
+					} else if (side == FRONT){
+						frontCount++;
+					} else if (side == BACK){
+						backCount++;
+					}
+				}
+				long score = splits * 8L + Math.abs(frontCount - backCount);
+				if (score < bestScore){
+					bestScore = score;
+					splitter = candidate;
+				}
+			}
+			final double a = normalX[splitter], b = normalY[splitter], c = normalZ[splitter], d = distance[splitter];
+			planeA[node] = a;
+			planeB[node] = b;
+			planeC[node] = c;
+			planeD[node] = d;
+			
+			//Sorts the faces into the node, the front and the back, splitting the ones that span the plane
+			int frontSize = 0, backSize = 0;
+			for (var i = 0; i < list.length; i++){
+				int polygon = list[i];
+				int side = classify(polygon, a, b, c, d);
+				if (frontList.length < frontSize + 1 || backList.length < backSize + 1){
+					frontList = Arrays.copyOf(frontList, frontList.length * 2 + 2);
+					backList = Arrays.copyOf(backList, backList.length * 2 + 2);
+				}
+				if (side == COPLANAR){
+					if (owner.length <= polygon){
+						int size = owner.length;
+						owner = Arrays.copyOf(owner, Math.max(polygon + 1, size * 2));
+						Arrays.fill(owner, size, owner.length, -1);
+					}
+					owner[polygon] = node;
+				} else if (side == FRONT){
+					frontList[frontSize++] = polygon;
+				} else if (side == BACK){
+					backList[backSize++] = polygon;
+				} else {
+					int frontPiece = split(polygon, a, b, c, d, true);
+					int backPiece = split(polygon, a, b, c, d, false);
+					if (normalX.length < polygonCount){
+						int size = polygonCount * 2;
+						normalX = Arrays.copyOf(normalX, size);
+						normalY = Arrays.copyOf(normalY, size);
+						normalZ = Arrays.copyOf(normalZ, size);
+						distance = Arrays.copyOf(distance, size);
+					}
+					//Pieces keep the plane of the face they came from
+					for (int piece : new int[]{frontPiece, backPiece}){
+						normalX[piece] = normalX[polygon];
+						normalY[piece] = normalY[polygon];
+						normalZ[piece] = normalZ[polygon];
+						distance[piece] = distance[polygon];
+					}
+					frontList[frontSize++] = frontPiece;
+					backList[backSize++] = backPiece;
+				}
+			}
+			if (frontSize > 0){
+				int child = newNode();
+				front[node] = child;
+				work.push(Arrays.copyOf(frontList, frontSize));
+				workNodes.push(child);
+			}
+			if (backSize > 0){
+				int child = newNode();
+				back[node] = child;
+				work.push(Arrays.copyOf(backList, backSize));
+				workNodes.push(child);
+			}
+		}
+		
+		flatten(owner);
+		built = true;
+	}
+	
+	//Returns where a polygon is relative to a plane
+	private int classify(int polygon, double a, double b, double c, double d){
+		boolean anyFront = false, anyBack = false;
+		final int start = polygonStart[polygon];
+		for (var i = start; i < start + polygonSize[polygon]; i++){
+			double side = a * pointX[i] + b * pointY[i] + c * pointZ[i] + d;
+			anyFront |= side > EPSILON;
+			anyBack |= side < -EPSILON;
+		}
+		if (anyFront && anyBack){
+			return SPANNING;
+		}
+		return anyFront ? FRONT : anyBack ? BACK : COPLANAR;
+	}
+	
+	//Computes the plane of a polygon. Returns false if the polygon has no area
+	private boolean polygonPlane(int polygon, double[] normalX, double[] normalY, double[] normalZ, double[] distance){
+		final int start = polygonStart[polygon];
+		final int end = start + polygonSize[polygon];
+		double x = 0, y = 0, z = 0;
+		double sumX = 0, sumY = 0, sumZ = 0;
+		for (var i = start; i < end; i++){
+			int next = i + 1 < end ? i + 1 : start;
+			x += (pointY[i] - pointY[next]) * (pointZ[i] + pointZ[next]);
+			y += (pointZ[i] - pointZ[next]) * (pointX[i] + pointX[next]);
+			z += (pointX[i] - pointX[next]) * (pointY[i] + pointY[next]);
+			sumX += pointX[i];
+			sumY += pointY[i];
+			sumZ += pointZ[i];
+		}
+		double length = Math.sqrt(x * x + y * y + z * z);
+		if (length == 0){
+			return false;
+		}
+		normalX[polygon] = x / length;
+		normalY[polygon] = y / length;
+		normalZ[polygon] = z / length;
+		distance[polygon] = -(normalX[polygon] * sumX + normalY[polygon] * sumY + normalZ[polygon] * sumZ) / (end - start);
+		return true;
+	}
+	
+	//Adds the part of a polygon on one side of a plane as a new polygon, and returns it
+	private int split(int polygon, double a, double b, double c, double d, boolean frontSide){
+		final int start = polygonStart[polygon];
+		final int end = start + polygonSize[polygon];
+		final int piece = beginPolygon(lineColors[polygon], faceColors[polygon]);
+		int previous = end - 1;
+		double previousSide = a * pointX[previous] + b * pointY[previous] + c * pointZ[previous] + d;
+		for (var i = start; i < end; i++){
+			double side = a * pointX[i] + b * pointY[i] + c * pointZ[i] + d;
+			boolean previousIn = frontSide ? previousSide >= -EPSILON : previousSide <= EPSILON;
+			boolean currentIn = frontSide ? side >= -EPSILON : side <= EPSILON;
+			if (previousIn != currentIn && Math.abs(previousSide) > EPSILON && Math.abs(side) > EPSILON){
+				double t = previousSide / (previousSide - side);
+				addPoint(pointX[previous] + (pointX[i] - pointX[previous]) * t,
+						pointY[previous] + (pointY[i] - pointY[previous]) * t,
+						pointZ[previous] + (pointZ[i] - pointZ[previous]) * t);
+			}
+			if (currentIn){
+				addPoint(pointX[i], pointY[i], pointZ[i]);
+			}
+			previous = i;
+			previousSide = side;
+		}
+		return piece;
+	}
+	
+	private void allocateNodes(int size){
+		planeA = new double[size];
+		planeB = new double[size];
+		planeC = new double[size];
+		planeD = new double[size];
+		front = new int[size];
+		back = new int[size];
+	}
+	
+	private int newNode(){
+		if (nodeCount == front.length){
+			int size = nodeCount * 2;
+			planeA = Arrays.copyOf(planeA, size);
+			planeB = Arrays.copyOf(planeB, size);
+			planeC = Arrays.copyOf(planeC, size);
+			planeD = Arrays.copyOf(planeD, size);
+			front = Arrays.copyOf(front, size);
+			back = Arrays.copyOf(back, size);
+		}
+		front[nodeCount] = -1;
+		back[nodeCount] = -1;
+		return nodeCount++;
+	}
+	
+	//Reorders the polygons (and their points) so every node's polygons are contiguous, drops the polygons that were
+	//split or left out, and computes the bounds of every subtree
+	private void flatten(int[] owner){
+		//Counts the polygons in every node
+		final int[] count = new int[nodeCount + 1];
+		for (var polygon = 0; polygon < polygonCount; polygon++){
+			if (polygon < owner.length && owner[polygon] >= 0){
+				count[owner[polygon] + 1]++;
+			}
+		}
+		for (var node = 0; node < nodeCount; node++){
+			count[node + 1] += count[node];
+		}
+		nodePolygonStart = new int[nodeCount];
+		nodePolygonEnd = new int[nodeCount];
+		for (var node = 0; node < nodeCount; node++){
+			nodePolygonStart[node] = count[node];
+			nodePolygonEnd[node] = count[node];
+		}
+		final int total = count[nodeCount];
+		final int[] sorted = new int[total];
+		for (var polygon = 0; polygon < polygonCount; polygon++){
+			if (polygon < owner.length && owner[polygon] >= 0){
+				sorted[nodePolygonEnd[owner[polygon]]++] = polygon;
+			}
+		}
+		
+		//Copies the polygons out in node order
+		int points = 0;
+		for (var i = 0; i < total; i++){
+			points += polygonSize[sorted[i]];
+		}
+		final double[] x = new double[points], y = new double[points], z = new double[points];
+		final int[] start = new int[total], size = new int[total], lines = new int[total], faces = new int[total];
+		nodePointStart = new int[nodeCount];
+		nodePointEnd = new int[nodeCount];
+		int point = 0;
+		for (var node = 0; node < nodeCount; node++){
+			nodePointStart[node] = point;
+			for (var i = nodePolygonStart[node]; i < nodePolygonEnd[node]; i++){
+				int polygon = sorted[i];
+				start[i] = point;
+				size[i] = polygonSize[polygon];
+				lines[i] = lineColors[polygon];
+				faces[i] = faceColors[polygon];
+				System.arraycopy(pointX, polygonStart[polygon], x, point, size[i]);
+				System.arraycopy(pointY, polygonStart[polygon], y, point, size[i]);
+				System.arraycopy(pointZ, polygonStart[polygon], z, point, size[i]);
+				point += size[i];
+			}
+			nodePointEnd[node] = point;
+		}
+		pointX = x;
+		pointY = y;
+		pointZ = z;
+		pointCount = points;
+		polygonStart = start;
+		polygonSize = size;
+		lineColors = lines;
+		faceColors = faces;
+		polygonCount = total;
+		
+		identity = new int[points];
+		for (var i = 0; i < points; i++){
+			identity[i] = i;
+		}
+		vertices.resize(points);
+		nodeVersion = new int[nodeCount];
+		Arrays.fill(nodeVersion, -1);
+		
+		//Children are always created after their parent, so walking the nodes backwards visits children first
+		minX = new double[nodeCount];
+		minY = new double[nodeCount];
+		minZ = new double[nodeCount];
+		maxX = new double[nodeCount];
+		maxY = new double[nodeCount];
+		maxZ = new double[nodeCount];
+		for (var node = nodeCount - 1; node >= 0; node--){
+			double lowX = Globals.Numbers.infinity, lowY = Globals.Numbers.infinity, lowZ = Globals.Numbers.infinity;
+			double highX = -Globals.Numbers.infinity, highY = -Globals.Numbers.infinity, highZ = -Globals.Numbers.infinity;
+			for (var i = nodePointStart[node]; i < nodePointEnd[node]; i++){
+				lowX = Math.min(lowX, pointX[i]);
+				lowY = Math.min(lowY, pointY[i]);
+				lowZ = Math.min(lowZ, pointZ[i]);
+				highX = Math.max(highX, pointX[i]);
+				highY = Math.max(highY, pointY[i]);
+				highZ = Math.max(highZ, pointZ[i]);
+			}
+			for (int child : new int[]{front[node], back[node]}){
+				if (child >= 0){
+					lowX = Math.min(lowX, minX[child]);
+					lowY = Math.min(lowY, minY[child]);
+					lowZ = Math.min(lowZ, minZ[child]);
+					highX = Math.max(highX, maxX[child]);
+					highY = Math.max(highY, maxY[child]);
+					highZ = Math.max(highZ, maxZ[child]);
+				}
+			}
+			minX[node] = lowX;
+			minY[node] = lowY;
+			minZ[node] = lowZ;
+			maxX[node] = highX;
+			maxY[node] = highY;
+			maxZ[node] = highZ;
+		}
+	}
+	
+	//Forgets which points were transformed, so the next draw transforms them again
+	void invalidate(){
+		if (nodeVersion != null){
+			Arrays.fill(nodeVersion, -1);
+		}
+	}
+	
+	//Adds every face in view to the draw queue, farthest first, and returns how many were added. The camera is at
+	//(cameraX, cameraY, cameraZ) in world space. Points are only transformed again when the camera changed
+	int addFaces(DrawQueue queue, Matrix4 view, Frustum frustum, FaceClipper clipper,
+	             double cameraX, double cameraY, double cameraZ,
+	             double FOV, int centerX, int centerY, int cameraVersion, boolean cullBackFaces){
+		if (!built){
+			throw new Error("Static geometry has to be built before it is drawn!");
+		}
+		if (nodeCount == 0){
+			return 0;
+		}
+		final int faceCount = queue.faceCount;
+		final double[] x = vertices.x;
+		final double[] y = vertices.y;
+		final double[] z = vertices.z;
+		
+		//Nodes to visit, and ~node for nodes whose own faces are next
+		int size = 0;
+		stack[size++] = 0;
+		while (size > 0){
+			final int entry = stack[--size];
+			if (entry < 0){
+				final int node = ~entry;
+				if (nodeVersion[node] != cameraVersion){
+					vertices.transform(view, pointX, pointY, pointZ, nodePointStart[node], nodePointEnd[node], FOV, centerX, centerY);
+					nodeVersion[node] = cameraVersion;
+				}
+				for (var i = nodePolygonStart[node]; i < nodePolygonEnd[node]; i++){
+					final int from = polygonStart[i];
+					final int to = from + polygonSize[i];
+					int position = FaceClipper.classify(z, identity, from, to);
+					if (position == FaceClipper.OUTSIDE || (position == FaceClipper.CROSSING && Globals.Camera.strictClip)){
+						continue;
+					}
+					if (cullBackFaces && FaceClipper.isBackFace(x, y, z, identity, from, to)){
+						continue;
+					}
+					if (position == FaceClipper.CROSSING){
+						clipper.addClipped(queue, x, y, z, identity, from, to, lineColors[i], faceColors[i]);
+						continue;
+					}
+					double zSum = 0;
+					for (var j = from; j < to; j++){
+						zSum += z[j];
+					}
+					queue.addFace(vertices, identity, from, to, zSum / (to - from), lineColors[i], faceColors[i]);
+				}
+				continue;
+			}
+			if (frustum.isBoxOutside(minX[entry], minY[entry], minZ[entry], maxX[entry], maxY[entry], maxZ[entry])){
+				continue;
+			}
+			
+			//The side the camera is on is drawn last, as nothing behind the plane can cover it
+			final boolean inFront = planeA[entry] * cameraX + planeB[entry] * cameraY + planeC[entry] * cameraZ + planeD[entry] >= 0;
+			final int near = inFront ? front[entry] : back[entry];
+			final int far = inFront ? back[entry] : front[entry];
+			if (stack.length < size + 3){
+				stack = Arrays.copyOf(stack, stack.length * 2);
+			}
+			if (near >= 0){
+				stack[size++] = near;
+			}
+			stack[size++] = ~entry;
+			if (far >= 0){
+				stack[size++] = far;
+			}
+		}
+		return queue.faceCount - faceCount;
+	}
+}
@@ -0,0 +1,500 @@
+package ThreeDimensionalComponents;
+
+import java.util.Arrays;
+
+//Spatial hash of collider boxes on a uniform grid, for moving bodies through the scene. Every collider is the bounding
+//box of a mesh, turned with the mesh's rotation, and is listed in every grid cell its world-space bounds touch. Cells
+//live in a hash table, so empty space costs nothing, and moving a collider only touches the cells it left or entered.
+//Queries only visit the cells around the moving body, so their cost depends on how crowded it is there, not on how
+//many colliders there are. Everything is kept in flat primitive arrays
+final class CollisionGrid {
+	
+	//Results of "move": whether the body came to rest on something, or hit something above it
+	static final int GROUNDED = 1;
+	static final int CEILING = 2;
+	
+	//Colliders touching more cells than this are kept on a list every query checks instead
+	private static final int MAX_CELLS = 512;
+	
+	//Distance kept between a body and what it hit, so its next move never starts inside it
+	private static final double SKIN = 0.5;
+	
+	//Most times a move slides along what it hit before giving up
+	private static final int MAX_SLIDES = 4;
+	
+	//Smallest upward (or downward) part of a contact normal that counts as ground (or ceiling)
+	private static final double GROUND_NORMAL = 0.7;
+	
+	//Values per collider: mesh center, offset, rotation matrix (row-major), box around the center, and world bounds
+	private static final int STRIDE = 27;
+	private static final int CENTER = 0, OFFSET = 3, ROTATION = 6, LOCAL_MIN = 15, LOCAL_MAX = 18, WORLD_MIN = 21, WORLD_MAX = 24;
+	
+	private final double cellSize;
+	
+	//Per collider: values, cell range as x0, y0, z0, x1, y1, z1 (inclusive, or x0 > x1 if oversized), whether it is in
+	//use, and the last query that found it
+	private double[] colliders = new double[64 * STRIDE];
+	private int[] cellRanges = new int[64 * 6];
+	private boolean[] live = new boolean[64];
+	private int[] found = new int[64];
+	private int colliderCount = 0;
+	
+	//Colliders removed, whose slots are free again
+	private int[] freeColliders = new int[16];
+	private int freeCount = 0;
+	
+	//Oversized colliders
+	private int[] oversized = new int[16];
+	private int oversizedCount = 0;
+	
+	//Open-addressed table of cells: packed cell coords, and the first entry of the cell, or -1 if it is empty.
+	//Empty cells keep their slot until the table grows
+	private long[] cellKeys = new long[1024];
+	private int[] cellHeads = new int[1024];
+	private boolean[] cellUsed = new boolean[1024];
+	private int usedCells = 0;
+	
+	//Entries, each a collider in a cell, chained per cell. Free entries are chained through "entryNext" too
+	private int[] entryCollider = new int[256];
+	private int[] entryNext = new int[256];
+	private int entryCount = 0;
+	private int freeEntry = -1;
+	
+	//Colliders found by the last query, and the stamp marking them
+	private int[] candidates = new int[64];
+	private int candidateCount = 0;
+	private int stamp = 0;
+	
+	//Scratch rotation
+	private final Matrix4 rotation = new Matrix4();
+	
+	CollisionGrid(double cellSize){
+		if (!(cellSize > 0)){
+			throw new Error("Cell size must be positive");
+		}
+		this.cellSize = cellSize;
+	}
+	
+	//Adds the box around a mesh, rotated (in radians) about the mesh's center and offset like the mesh is drawn.
+	//Returns the collider's id
+	int add(Mesh mesh, double thetaX, double thetaY, double thetaZ, double offsetX, double offsetY, double offsetZ){
+		final int collider;
+		if (freeCount > 0){
+			collider = freeColliders[--freeCount];
+		} else {
+			if (colliderCount == live.length){
+				final int length = colliderCount * 2;
+				colliders = Arrays.copyOf(colliders, length * STRIDE);
+				cellRanges = Arrays.copyOf(cellRanges, length * 6);
+				live = Arrays.copyOf(live, length);
+				found = Arrays.copyOf(found, length);
+			}
+			collider = colliderCount++;
+		}
+		final int base = collider * STRIDE;
+		colliders[base + CENTER] = mesh.getCenterX();
+		colliders[base + CENTER + 1] = mesh.getCenterY();
+		colliders[base + CENTER + 2] = mesh.getCenterZ();
+		colliders[base + LOCAL_MIN] = mesh.getMinX() - mesh.getCenterX();
+		colliders[base + LOCAL_MIN + 1] = mesh.getMinY() - mesh.getCenterY();
+		colliders[base + LOCAL_MIN + 2] = mesh.getMinZ() - mesh.getCenterZ();
+		colliders[base + LOCAL_MAX] = mesh.getMaxX() - mesh.getCenterX();
+		colliders[base + LOCAL_MAX + 1] = mesh.getMaxY() - mesh.getCenterY();
+		colliders[base + LOCAL_MAX + 2] = mesh.getMaxZ() - mesh.getCenterZ();
+		live[collider] = true;
+		found[collider] = stamp;
+		setTransform(collider, thetaX, thetaY, thetaZ, offsetX, offsetY, offsetZ);
+		insert(collider);
+		return collider;
+	}
+	
+	//Moves a collider. Only the cells it left or entered are touched, and none if it stayed within the same cells
+	void move(int collider, double thetaX, double thetaY, double thetaZ, double offsetX, double offsetY, double offsetZ){
+		final int range = collider * 6;
+		final int x0 = cellRanges[range], y0 = cellRanges[range + 1], z0 = cellRanges[range + 2];
+		final int x1 = cellRanges[range + 3], y1 = cellRanges[range + 4], z1 = cellRanges[range + 5];
+		setTransform(collider, thetaX, thetaY, thetaZ, offsetX, offsetY, offsetZ);
+		final int base = collider * STRIDE;
+		if (x0 <= x1 && cell(colliders[base + WORLD_MIN]) == x0 && cell(colliders[base + WORLD_MIN + 1]) == y0
+				&& cell(colliders[base + WORLD_MIN + 2]) == z0 && cell(colliders[base + WORLD_MAX]) == x1
+				&& cell(colliders[base + WORLD_MAX + 1]) == y1 && cell(colliders[base + WORLD_MAX + 2]) == z1){
+			return;
+		}
+		unlink(collider);
+		insert(collider);
+	}
+	
+	void remove(int collider){
+		unlink(collider);
+		live[collider] = false;
+		if (freeCount == freeColliders.length){
+			freeColliders = Arrays.copyOf(freeColliders, freeCount * 2);
+		}
+		freeColliders[freeCount++] = collider;
+	}
+	
+	//Moves an upright capsule by (dx, dy, dz), from "position" (its center, updated in place). The capsule is
+	//"halfHeight" tall above and below its center, and "radius" wide; with "halfHeight" equal to "radius", it is a
+	//sphere. The capsule is first pushed out of anything it starts inside, then swept along the motion; whenever it
+	//hits something, the rest of the motion slides along the surface it hit.
+	//Colliders are grown by the capsule's size, so their corners are square rather than round. Returns GROUNDED and
+	//CEILING flags for what the capsule touched
+	int move(double[] position, double dx, double dy, double dz, double radius, double halfHeight){
+		int contacts = 0;
+		
+		//Pushes the capsule out of every collider it is inside, along the shortest way out
+		query(position[0] - radius, position[1] - halfHeight, position[2] - radius,
+				position[0] + radius, position[1] + halfHeight, position[2] + radius);
+		for (var i = 0; i < candidateCount; i++){
+			final int base = candidates[i] * STRIDE;
+			int axis = -1;
+			double push = Globals.Numbers.infinity;
+			for (var j = 0; j < 3; j++){
+				final double grow = radius + Math.abs(colliders[base + ROTATION + 3 + j]) * (halfHeight - radius);
+				final double local = toLocal(base, j, position);
+				final double below = local - (colliders[base + LOCAL_MIN + j] - grow);
+				final double above = (colliders[base + LOCAL_MAX + j] + grow) - local;
+				if (below <= 0 || above <= 0){
+					axis = -1;
+					break;
+				}
+				if (below < Math.abs(push)){
+					axis = j;
+					push = -below;
+				}
+				if (above < Math.abs(push)){
+					axis = j;
+					push = above;
+				}
+			}
+			if (axis < 0){
+				continue;
+			}
+			final double sign = push < 0 ? -1 : 1;
+			final double distance = Math.abs(push) + SKIN;
+			position[0] += colliders[base + ROTATION + axis] * sign * distance;
+			position[1] += colliders[base + ROTATION + 3 + axis] * sign * distance;
+			position[2] += colliders[base + ROTATION + 6 + axis] * sign * distance;
+			contacts |= contact(colliders[base + ROTATION + 3 + axis] * sign);
+		}
+		
+		//Sweeps the capsule, sliding along whatever it hits
+		for (var slide = 0; slide < MAX_SLIDES && (dx != 0 || dy != 0 || dz != 0); slide++){
+			query(Math.min(position[0], position[0] + dx) - radius - SKIN,
+					Math.min(position[1], position[1] + dy) - halfHeight - SKIN,
+					Math.min(position[2], position[2] + dz) - radius - SKIN,
+					Math.max(position[0], position[0] + dx) + radius + SKIN,
+					Math.max(position[1], position[1] + dy) + halfHeight + SKIN,
+					Math.max(position[2], position[2] + dz) + radius + SKIN);
+			
+			//Finds the first collider hit, as a ray against the collider's box grown by the capsule, in the box's space
+			double first = 1;
+			double normalX = 0, normalY = 0, normalZ = 0;
+			for (var i = 0; i < candidateCount; i++){
+				final int base = candidates[i] * STRIDE;
+				double enter = -Globals.Numbers.infinity, exit = Globals.Numbers.infinity;
+				int enterAxis = -1;
+				double enterSign = 0;
+				boolean miss = false;
+				for (var j = 0; j < 3; j++){
+					final double grow = radius + Math.abs(colliders[base + ROTATION + 3 + j]) * (halfHeight - radius);
+					final double start = toLocal(base, j, position);
+					final double motion = colliders[base + ROTATION + j] * dx + colliders[base + ROTATION + 3 + j] * dy
+							+ colliders[base + ROTATION + 6 + j] * dz;
+					final double low = colliders[base + LOCAL_MIN + j] - grow;
+					final double high = colliders[base + LOCAL_MAX + j] + grow;
+					if (motion == 0){
+						if (start <= low || start >= high){
+							miss = true;
+							break;
+						}
+						continue;
+					}
+					double near = ((motion > 0 ? low : high) - start) / motion;
+					double far = ((motion > 0 ? high : low) - start) / motion;
+					if (near > enter){
+						enter = near;
+						enterAxis = j;
+						enterSign = motion > 0 ? -1 : 1;
+					}
+					exit = Math.min(exit, far);
+				}
+				//Starting inside was handled by the push above, so only hits ahead count
+				if (miss || enterAxis < 0 || enter > exit || enter < 0 || enter >= first){
+					continue;
+				}
+				first = enter;
+				normalX = colliders[base + ROTATION + enterAxis] * enterSign;
+				normalY = colliders[base + ROTATION + 3 + enterAxis] * enterSign;
+				normalZ = colliders[base + ROTATION + 6 + enterAxis] * enterSign;
+			}
+			
+			if (first >= 1){
+				position[0] += dx;
+				position[1] += dy;
+				position[2] += dz;
+				break;
+			}
+			position[0] += dx * first + normalX * SKIN;
+			position[1] += dy * first + normalY * SKIN;
+			position[2] += dz * first + normalZ * SKIN;
+			contacts |= contact(normalY);
+			
+			//Slides the rest of the motion along the surface
+			dx *= 1 - first;
+			dy *= 1 - first;
+			dz *= 1 - first;
+			final double into = dx * normalX + dy * normalY + dz * normalZ;
+			dx -= into * normalX;
+			dy -= into * normalY;
+			dz -= into * normalZ;
+		}
+		return contacts;
+	}
+	
+	private static int contact(double normalY){
+		return normalY > GROUND_NORMAL ? GROUNDED : normalY < -GROUND_NORMAL ? CEILING : 0;
+	}
+	
+	//Coord "axis" of a world-space point, in the space of a collider's box
+	private double toLocal(int base, int axis, double[] point){
+		final double x = point[0] - colliders[base + CENTER] - colliders[base + OFFSET];
+		final double y = point[1] - colliders[base + CENTER + 1] - colliders[base + OFFSET + 1];
+		final double z = point[2] - colliders[base + CENTER + 2] - colliders[base + OFFSET + 2];
+		return colliders[base + ROTATION + axis] * x + colliders[base + ROTATION + 3 + axis] * y + colliders[base + ROTATION + 6 + axis] * z;
+	}
+	
+	//Stores a collider's transform, and the world bounds of its box
+	private void setTransform(int collider, double thetaX, double thetaY, double thetaZ, double offsetX, double offsetY, double offsetZ){
+		final int base = collider * STRIDE;
+		rotation.setIdentity().rotateZ(thetaZ).rotateY(thetaY).rotateX(thetaX);
+		for (var row = 0; row < 3; row++){
+			for (var column = 0; column < 3; column++){
+				colliders[base + ROTATION + row * 3 + column] = rotation.m[row * 4 + column];
+			}
+		}
+		colliders[base + OFFSET] = offsetX;
+		colliders[base + OFFSET + 1] = offsetY;
+		colliders[base + OFFSET + 2] = offsetZ;
+		
+		//World bounds of the turned box: its turned center, plus its half sizes projected onto every world axis
+		for (var row = 0; row < 3; row++){
+			double center = colliders[base + CENTER + row] + colliders[base + OFFSET + row];
+			double extent = 0;
+			for (var column = 0; column < 3; column++){
+				final double value = colliders[base + ROTATION + row * 3 + column];
+				center += value * (colliders[base + LOCAL_MIN + column] + colliders[base + LOCAL_MAX + column]) / 2;
+				extent += Math.abs(value) * (colliders[base + LOCAL_MAX + column] - colliders[base + LOCAL_MIN + column]) / 2;
+			}
+			colliders[base + WORLD_MIN + row] = center - extent;
+			colliders[base + WORLD_MAX + row] = center + extent;
+		}
+	}
+	
+	private int cell(double coord){
+		return (int) Math.floor(coord / cellSize);
+	}
+	
+	//Lists a collider in every cell its world bounds touch, or on the oversized list
+	private void insert(int collider){
+		final int base = collider * STRIDE;
+		final int range = collider * 6;
+		final int x0 = cell(colliders[base + WORLD_MIN]), y0 = cell(colliders[base + WORLD_MIN + 1]), z0 = cell(colliders[base + WORLD_MIN + 2]);
+		final int x1 = cell(colliders[base + WORLD_MAX]), y1 = cell(colliders[base + WORLD_MAX + 1]), z1 = cell(colliders[base + WORLD_MAX + 2]);
+		if ((long) (x1 - x0 + 1) * (y1 - y0 + 1) * (z1 - z0 + 1) > MAX_CELLS){
+			if (oversizedCount == oversized.length){
+				oversized = Arrays.copyOf(oversized, oversizedCount * 2);
+			}
+			oversized[oversizedCount++] = collider;
+			cellRanges[range] = 1;
+			cellRanges[range + 3] = 0;
+			return;
+		}
+		cellRanges[range] = x0;
+		cellRanges[range + 1] = y0;
+		cellRanges[range + 2] = z0;
+		cellRanges[range + 3] = x1;
+		cellRanges[range + 4] = y1;
+		cellRanges[range + 5] = z1;
+		for (var x = x0; x <= x1; x++){
+			for (var y = y0; y <= y1; y++){
+				for (var z = z0; z <= z1; z++){
+					final int slot = claimCell(key(x, y, z));
+					if (freeEntry < 0){
+						if (entryCount == entryCollider.length){
+							entryCollider = Arrays.copyOf(entryCollider, entryCount * 2);
+							entryNext = Arrays.copyOf(entryNext, entryCount * 2);
+						}
+						freeEntry = entryCount;
+						entryNext[entryCount++] = -1;
+					}
+					final int entry = freeEntry;
+					freeEntry = entryNext[entry];
+					entryCollider[entry] = collider;
+					entryNext[entry] = cellHeads[slot];
+					cellHeads[slot] = entry;
+				}
+			}
+		}
+	}
+	
+	//Takes a collider out of every cell it is listed in, or off the oversized list
+	private void unlink(int collider){
+		final int range = collider * 6;
+		final int x0 = cellRanges[range], y0 = cellRanges[range + 1], z0 = cellRanges[range + 2];
+		final int x1 = cellRanges[range + 3], y1 = cellRanges[range + 4], z1 = cellRanges[range + 5];
+		if (x0 > x1){
+			for (var i = 0; i < oversizedCount; i++){
+				if (oversized[i] == collider){
+					oversized[i] = oversized[--oversizedCount];
+					break;
+				}
+			}
+			return;
+		}
+		for (var x = x0; x <= x1; x++){
+			for (var y = y0; y <= y1; y++){
+				for (var z = z0; z <= z1; z++){
+					final int slot = findCell(key(x, y, z));
+					int previous = -1;
+					for (var entry = cellHeads[slot]; entry >= 0; entry = entryNext[entry]){
+						if (entryCollider[entry] == collider){
+							if (previous < 0){
+								cellHeads[slot] = entryNext[entry];
+							} else {
+								entryNext[previous] = entryNext[entry];
+							}
+							entryNext[entry] = freeEntry;
+							freeEntry = entry;
+							break;
+						}
+						previous = entry;
+					}
+				}
+			}
+		}
+	}
+	
+	//Finds every collider whose world bounds touch the box, into "candidates"
+	private void query(double minX, double minY, double minZ, double maxX, double maxY, double maxZ){
+		stamp++;
+		candidateCount = 0;
+		for (var i = 0; i < oversizedCount; i++){
+			addCandidate(oversized[i], minX, minY, minZ, maxX, maxY, maxZ);
+		}
+		final int x0 = cell(minX), y0 = cell(minY), z0 = cell(minZ);
+		final int x1 = cell(maxX), y1 = cell(maxY), z1 = cell(maxZ);
+		
+		//A box over more cells than there are colliders is cheaper to answer by checking every collider
+		if ((long) (x1 - x0 + 1) * (y1 - y0 + 1) * (z1 - z0 + 1) > colliderCount){
+			for (var i = 0; i < colliderCount; i++){
+				if (live[i]){
+					addCandidate(i, minX, minY, minZ, maxX, maxY, maxZ);
+				}
+			}
+			return;
+		}
+		for (var x = x0; x <= x1; x++){
+			for (var y = y0; y <= y1; y++){
+				for (var z = z0; z <= z1; z++){
+					final int slot = findCell(key(x, y, z));
+					if (slot < 0){
+						continue;
+					}
+					for (var entry = cellHeads[slot]; entry >= 0; entry = entryNext[entry]){
+						addCandidate(entryCollider[entry], minX, minY, minZ, maxX, maxY, maxZ);
+					}
+				}
+			}
+		}
+	}
+	
+	private void addCandidate(int collider, double minX, double minY, double minZ, double maxX, double maxY, double maxZ){
+		if (found[collider] == stamp){
+			return;
+		}
+		found[collider] = stamp;
+		final int base = collider * STRIDE;
+		if (colliders[base + WORLD_MIN] > maxX || colliders[base + WORLD_MAX] < minX
+				|| colliders[base + WORLD_MIN + 1] > maxY || colliders[base + WORLD_MAX + 1] < minY
+				|| colliders[base + WORLD_MIN + 2] > maxZ || colliders[base + WORLD_MAX + 2] < minZ){
+			return;
+		}
+		if (candidateCount == candidates.length){
+			candidates = Arrays.copyOf(candidates, candidateCount * 2);
+		}
+		candidates[candidateCount++] = collider;
+	}
+	
+	//Packs cell coords, 21 bits each
+	private static long key(int x, int y, int z){
+		return ((long) (x & 0x1FFFFF) << 42) | ((long) (y & 0x1FFFFF) << 21) | (z & 0x1FFFFF);
+	}
+	
+	private int hash(long key){
+		return (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & (cellKeys.length - 1);
+	}
+	
+	//Slot of a cell, or -1 if it has none
+	private int findCell(long key){
+		final int mask = cellKeys.length - 1;
+		for (var slot = hash(key); cellUsed[slot]; slot = (slot + 1) & mask){
+			if (cellKeys[slot] == key){
+				return slot;
+			}
+		}
+		return -1;
+	}
+	
+	//Slot of a cell, claiming one if it has none. The table grows to stay at most half full
+	private int claimCell(long key){
+		final int existing = findCell(key);
+		if (existing >= 0){
+			return existing;
+		}
+		if (usedCells * 2 >= cellKeys.length){
+			grow();
+		}
+		final int mask = cellKeys.length - 1;
+		int slot = hash(key);
+		while (cellUsed[slot]){
+			slot = (slot + 1) & mask;
+		}
+		cellUsed[slot] = true;
+		cellKeys[slot] = key;
+		cellHeads[slot] = -1;
+		usedCells++;
+		return slot;
+	}
+	
+	//Rehashes the cells that are not empty into a table big enough for twice as many
+	private void grow(){
+		final long[] oldKeys = cellKeys;
+		final int[] oldHeads = cellHeads;
+		final boolean[] oldUsed = cellUsed;
+		int occupied = 0;
+		for (var i = 0; i < oldKeys.length; i++){
+			if (oldUsed[i] && oldHeads[i] >= 0){
+				occupied++;
+			}
+		}
+		final int size = Math.max(oldKeys.length, Integer.highestOneBit(Math.max(1, occupied) * 4) * 2);
+		cellKeys = new long[size];
+		cellHeads = new int[size];
+		cellUsed = new boolean[size];
+		usedCells = 0;
+		final int mask = size - 1;
+		for (var i = 0; i < oldKeys.length; i++){
+			if (oldUsed[i] && oldHeads[i] >= 0){
+				int slot = hash(oldKeys[i]);
+				while (cellUsed[slot]){
+					slot = (slot + 1) & mask;
+				}
+				cellUsed[slot] = true;
+				cellKeys[slot] = oldKeys[i];
+				cellHeads[slot] = oldHeads[i];
+				usedCells++;
+			}
+		}
+	}
+}
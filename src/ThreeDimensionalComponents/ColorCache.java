@@ -0,0 +1,27 @@
+package ThreeDimensionalComponents;
+
+import java.awt.*;
+
+//Maps packed ARGB ints back to Color instances without allocating, for code that has to hand Graphics2D a Color.
+//Direct-mapped: each color can only live in one slot, and a new color simply replaces whatever was there.
+//Scenes tend to use a handful of colors, so after the first frame every lookup is a hit
+final class ColorCache {
+	
+	//Number of slots. Must be a power of two
+	private static final int SIZE = 256;
+	
+	private final int[] keys = new int[SIZE];
+	private final Color[] colors = new Color[SIZE];
+	
+	//Gets a Color for a packed ARGB value
+	Color get(int argb){
+		int slot = (argb ^ (argb >>> 8) ^ (argb >>> 16) ^ (argb >>> 24)) & (SIZE - 1);
+		Color color = colors[slot];
+		if (color == null || keys[slot] != argb){
+			color = new Color(argb, true);
+			colors[slot] = color;
+			keys[slot] = argb;
+		}
+		return color;
+	}
+}
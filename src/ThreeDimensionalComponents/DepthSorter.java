@@ -0,0 +1,152 @@
+package ThreeDimensionalComponents;
+
+import java.util.Arrays;
+
+//Orders faces by depth, farthest (lowest z) first, on primitive keys. All buffers are kept between calls, so a
+//sorter that is reused every frame does not allocate once it has grown to the scene size.
+//Frame-to-frame coherence is exploited by starting from the previous frame's order: when the faces barely moved, an
+//insertion sort finishes in close to O(n). If that turns out to be too much work, it falls back to an LSD radix sort
+//on the bits of the keys, which is O(n) regardless of input order.
+//Ties are broken by submission index, so the result is always the same as a stable sort
+final class DepthSorter {
+	
+	//Below this size, insertion sort is always used
+	private static final int INSERTION_THRESHOLD = 64;
+	
+	//Insertion sort gives up after this many shifts per element
+	private static final int SHIFT_BUDGET = 8;
+	
+	//Radix digit size, in bits. 6 passes cover all 64 bits of a double
+	private static final int RADIX_BITS = 11;
+	private static final int RADIX_SIZE = 1 << RADIX_BITS;
+	private static final int RADIX_MASK = RADIX_SIZE - 1;
+	
+	//Result permutation, and the number of entries of it that are valid
+	private int[] order = new int[0];
+	private int count = 0;
+	
+	//Radix sort buffers, only allocated if the radix sort is ever used
+	private int[] orderScratch = new int[0];
+	private long[] keys = new long[0];
+	private long[] keyScratch = new long[0];
+	private int[] counts;
+	
+	//Sorts the first "count" depths, and returns the sorted order of their indices. The returned array is owned by
+	//the sorter and is only valid until the next call; only its first "count" entries are meaningful
+	int[] sort(double[] depths, int count){
+		
+		//Starts from the previous order if the face count did not change, otherwise from submission order
+		if (count != this.count || order.length < count){
+			if (order.length < count){
+				order = new int[Math.max(count, order.length * 2)];
+			}
+			for (var i = 0; i < count; i++){
+				order[i] = i;
+			}
+			this.count = count;
+		}
+		
+		if (count < INSERTION_THRESHOLD || !insertionSort(depths, count, (long) count * SHIFT_BUDGET)){
+			if (count >= INSERTION_THRESHOLD){
+				radixSort(depths, count);
+			} else {
+				insertionSort(depths, count, Long.MAX_VALUE);
+			}
+		}
+		return order;
+	}
+	
+	//Returns the number of valid entries in the last returned order
+	int size(){
+		return count;
+	}
+	
+	//Sorts "order" in place. Returns false, leaving "order" as a valid permutation, if the shift budget ran out
+	private boolean insertionSort(double[] depths, int count, long budget){
+		for (var i = 1; i < count; i++){
+			int index = order[i];
+			double depth = depths[index];
+			int j = i - 1;
+			while (j >= 0 && before(depth, index, depths[order[j]], order[j])){
+				order[j + 1] = order[j];
+				j--;
+				if (--budget < 0){
+					order[j + 1] = index;
+					return false;
+				}
+			}
+			order[j + 1] = index;
+		}
+		return true;
+	}
+	
+	//Returns if face "a" should come before face "b"
+	private static boolean before(double depthA, int indexA, double depthB, int indexB){
+		return depthA < depthB || (depthA == depthB && indexA < indexB);
+	}
+	
+	//Stable LSD radix sort over the bits of the keys, starting from submission order
+	private void radixSort(double[] depths, int count){
+		if (keys.length < count){
+			int size = Math.max(count, keys.length * 2);
+			keys = new long[size];
+			keyScratch = new long[size];
+		}
+		if (orderScratch.length < count){
+			orderScratch = new int[order.length];
+		}
+		if (counts == null){
+			counts = new int[RADIX_SIZE];
+		}
+		
+		//Maps each double to a long with the same ordering
+		for (var i = 0; i < count; i++){
+			long bits = Double.doubleToLongBits(depths[i]);
+			keys[i] = bits ^ ((bits >> 63) | Long.MIN_VALUE);
+			order[i] = i;
+		}
+		
+		long[] srcKeys = keys;
+		long[] dstKeys = keyScratch;
+		int[] srcOrder = order;
+		int[] dstOrder = orderScratch;
+		for (var shift = 0; shift < 64; shift += RADIX_BITS){
+			Arrays.fill(counts, 0);
+			for (var i = 0; i < count; i++){
+				counts[(int) (srcKeys[i] >>> shift) & RADIX_MASK]++;
+			}
+			
+			//Skips the pass if every key has the same digit, which is common for the high bits
+			if (counts[(int) (srcKeys[0] >>> shift) & RADIX_MASK] == count){
+				continue;
+			}
+			
+			int total = 0;
+			for (var i = 0; i < RADIX_SIZE; i++){
+				int digitCount = counts[i];
+				counts[i] = total;
+				total += digitCount;
+			}
+			for (var i = 0; i < count; i++){
+				int position = counts[(int) (srcKeys[i] >>> shift) & RADIX_MASK]++;
+				dstKeys[position] = srcKeys[i];
+				dstOrder[position] = srcOrder[i];
+			}
+			
+			long[] tempKeys = srcKeys;
+			srcKeys = dstKeys;
+			dstKeys = tempKeys;
+			int[] tempOrder = srcOrder;
+			srcOrder = dstOrder;
+			dstOrder = tempOrder;
+		}
+		
+		//Keeps the result in "order", swapping buffers rather than copying
+		if (srcOrder != order){
+			orderScratch = order;
+			order = srcOrder;
+		}
+		keys = srcKeys;
+		keyScratch = dstKeys;
+	}
+}
@@ -0,0 +1,206 @@
+package ThreeDimensionalComponents;
+
+import java.util.Arrays;
+
+//Finds the parts of the screen that changed between two frames. Everything drawn in a frame (faces, text) is added as
+//a hash of how it is drawn plus its screen bounds; anything without an identical match in the other frame marks its
+//bounds dirty, so both where an object was and where it is now get repainted.
+//Dirty bounds are merged into a few rectangles that never overlap, so each can be repainted on its own
+final class DirtyRegions {
+	
+	//Most rectangles kept apart. Past that, the two whose union grows the least are merged
+	private static final int MAX_RECTS = 8;
+	
+	//Past this fraction of the screen, the whole screen is repainted instead
+	private static final double FULL_FRACTION = 0.5;
+	
+	//Items of the last frame and of the frame being added: hash, and bounds as x0, y0, x1, y1 (max values exclusive)
+	private long[] previousHashes = new long[256];
+	private int[] previousBounds = new int[256 * 4];
+	private int previousCount = 0;
+	private long[] hashes = new long[256];
+	private int[] bounds = new int[256 * 4];
+	private int count = 0;
+	
+	//Open-addressed multiset of the last frame's hashes. A slot is in use if its stamp is the current one
+	private long[] tableKeys = new long[512];
+	private int[] tableCounts = new int[512];
+	private int[] tableStamps = new int[512];
+	private int stamp = 0;
+	
+	//Dirty rectangles, as x0, y0, x1, y1 (max values exclusive)
+	int[] rects = new int[(MAX_RECTS + 1) * 4];
+	int rectCount = 0;
+	
+	//Whether the last "finish" call found the whole screen dirty
+	boolean full = false;
+	
+	//Starts adding the items of a new frame
+	void begin(){
+		count = 0;
+	}
+	
+	//Adds an item of the new frame. Bounds are clamped later
+	void add(long hash, int x0, int y0, int x1, int y1){
+		if (count == hashes.length){
+			hashes = Arrays.copyOf(hashes, count * 2);
+			bounds = Arrays.copyOf(bounds, count * 8);
+		}
+		hashes[count] = hash;
+		bounds[count * 4] = x0;
+		bounds[count * 4 + 1] = y0;
+		bounds[count * 4 + 2] = x1;
+		bounds[count * 4 + 3] = y1;
+		count++;
+	}
+	
+	//Compares the new frame with the last one, and fills the dirty rectangles. With "repaintAll", the whole screen is
+	//dirty whatever changed. The new frame then becomes the last one
+	void finish(boolean repaintAll, int width, int height){
+		rectCount = 0;
+		full = false;
+		if (repaintAll){
+			addRect(0, 0, width, height, width, height);
+		} else {
+			//Counts every hash of the last frame. Hashes of the new frame are looked up in the same table, so it has
+			//room for both
+			if (tableKeys.length < (previousCount + count) * 2){
+				final int size = Integer.highestOneBit((previousCount + count) * 2) * 2;
+				tableKeys = new long[size];
+				tableCounts = new int[size];
+				tableStamps = new int[size];
+			}
+			stamp++;
+			for (var i = 0; i < previousCount; i++){
+				tableCounts[slot(previousHashes[i])]++;
+			}
+			
+			//New items without a match are dirty, and so are old items left without one
+			for (var i = 0; i < count; i++){
+				final int slot = slot(hashes[i]);
+				if (tableCounts[slot] > 0){
+					tableCounts[slot]--;
+				} else {
+					addRect(bounds[i * 4], bounds[i * 4 + 1], bounds[i * 4 + 2], bounds[i * 4 + 3], width, height);
+				}
+			}
+			for (var i = 0; i < previousCount; i++){
+				final int slot = slot(previousHashes[i]);
+				if (tableCounts[slot] > 0){
+					tableCounts[slot]--;
+					addRect(previousBounds[i * 4], previousBounds[i * 4 + 1], previousBounds[i * 4 + 2], previousBounds[i * 4 + 3], width, height);
+				}
+			}
+			
+			long area = 0;
+			for (var i = 0; i < rectCount; i++){
+				area += (long) (rects[i * 4 + 2] - rects[i * 4]) * (rects[i * 4 + 3] - rects[i * 4 + 1]);
+			}
+			if (area > FULL_FRACTION * width * height){
+				rectCount = 0;
+				addRect(0, 0, width, height, width, height);
+			}
+		}
+		full = rectCount == 1 && rects[0] == 0 && rects[1] == 0 && rects[2] == width && rects[3] == height;
+		
+		final long[] swapHashes = previousHashes;
+		previousHashes = hashes;
+		hashes = swapHashes;
+		final int[] swapBounds = previousBounds;
+		previousBounds = bounds;
+		bounds = swapBounds;
+		previousCount = count;
+		count = 0;
+	}
+	
+	//Forgets the last frame, so the next one is compared against nothing
+	void reset(){
+		previousCount = 0;
+		count = 0;
+	}
+	
+	//Finds the table slot of a hash, claiming it if it is not in use yet
+	private int slot(long hash){
+		final int mask = tableKeys.length - 1;
+		int slot = (int) (hash ^ (hash >>> 32)) & mask;
+		while (tableStamps[slot] == stamp && tableKeys[slot] != hash){
+			slot = (slot + 1) & mask;
+		}
+		if (tableStamps[slot] != stamp){
+			tableStamps[slot] = stamp;
+			tableKeys[slot] = hash;
+			tableCounts[slot] = 0;
+		}
+		return slot;
+	}
+	
+	//Adds a dirty rectangle, clamped to the screen, merging it with every rectangle it touches
+	private void addRect(int x0, int y0, int x1, int y1, int width, int height){
+		x0 = Math.max(0, x0);
+		y0 = Math.max(0, y0);
+		x1 = Math.min(width, x1);
+		y1 = Math.min(height, y1);
+		if (x0 >= x1 || y0 >= y1){
+			return;
+		}
+		
+		//Merging can make a rectangle touch others, so merging repeats until nothing touches
+		boolean merged = true;
+		while (merged){
+			merged = false;
+			for (var i = 0; i < rectCount; i++){
+				final int base = i * 4;
+				if (x0 <= rects[base + 2] && rects[base] <= x1 && y0 <= rects[base + 3] && rects[base + 1] <= y1){
+					x0 = Math.min(x0, rects[base]);
+					y0 = Math.min(y0, rects[base + 1]);
+					x1 = Math.max(x1, rects[base + 2]);
+					y1 = Math.max(y1, rects[base + 3]);
+					removeRect(i);
+					merged = true;
+					break;
+				}
+			}
+		}
+		rects[rectCount * 4] = x0;
+		rects[rectCount * 4 + 1] = y0;
+		rects[rectCount * 4 + 2] = x1;
+		rects[rectCount * 4 + 3] = y1;
+		rectCount++;
+		
+		if (rectCount > MAX_RECTS){
+			int bestA = 0, bestB = 1;
+			long bestGrowth = Long.MAX_VALUE;
+			for (var a = 0; a < rectCount; a++){
+				for (var b = a + 1; b < rectCount; b++){
+					long growth = unionArea(a, b) - area(a) - area(b);
+					if (growth < bestGrowth){
+						bestGrowth = growth;
+						bestA = a;
+						bestB = b;
+					}
+				}
+			}
+			final int unionX0 = Math.min(rects[bestA * 4], rects[bestB * 4]);
+			final int unionY0 = Math.min(rects[bestA * 4 + 1], rects[bestB * 4 + 1]);
+			final int unionX1 = Math.max(rects[bestA * 4 + 2], rects[bestB * 4 + 2]);
+			final int unionY1 = Math.max(rects[bestA * 4 + 3], rects[bestB * 4 + 3]);
+			removeRect(bestB);
+			removeRect(bestA);
+			addRect(unionX0, unionY0, unionX1, unionY1, width, height);
+		}
+	}
+	
+	private void removeRect(int rect){
+		rectCount--;
+		System.arraycopy(rects, rectCount * 4, rects, rect * 4, 4);
+	}
+	
+	private long area(int rect){
+		return (long) (rects[rect * 4 + 2] - rects[rect * 4]) * (rects[rect * 4 + 3] - rects[rect * 4 + 1]);
+	}
+	
+	private long unionArea(int a, int b){
+		return (long) (Math.max(rects[a * 4 + 2], rects[b * 4 + 2]) - Math.min(rects[a * 4], rects[b * 4]))
+				* (Math.max(rects[a * 4 + 3], rects[b * 4 + 3]) - Math.min(rects[a * 4 + 1], rects[b * 4 + 1]));
+	}
+}
@@ -0,0 +1,170 @@
+package ThreeDimensionalComponents;
+
+import java.awt.*;
+import java.awt.geom.Path2D;
+import java.util.Arrays;
+
+//Command buffer for Graphics2D drawing, stored as flat primitive arrays. Polygons and lines are recorded in draw order,
+//and consecutive ones with the same colors are merged into one command, which is drawn as a single Path2D fill and
+//stroke. Colors are only set when they change.
+//Merging never changes the picture: a shape only joins a command if the command's colors are the same and opaque, or
+//if it does not overlap anything already in the command, so drawing the command's shapes in any order looks the same
+final class DrawCommands {
+	
+	//Per point: screen coords, in pixels
+	private int[] pointX = new int[256];
+	private int[] pointY = new int[256];
+	private int pointCount = 0;
+	
+	//Per shape: first point, and number of points. Shapes of two points are lines, anything bigger is a closed polygon
+	private int[] shapeStart = new int[64];
+	private int[] shapeSize = new int[64];
+	private int shapeCount = 0;
+	
+	//Per command: first shape, fill color (ignored if not filled), and line color as packed ARGB
+	private int[] commandStart = new int[16];
+	private int[] commandFill = new int[16];
+	private int[] commandLine = new int[16];
+	private boolean[] commandFilled = new boolean[16];
+	private int commandCount = 0;
+	
+	//Bounds of the last command, grown by a pixel for the outline
+	private int minX, minY, maxX, maxY;
+	
+	//Path every command is built in, reused across commands
+	private final Path2D.Float path = new Path2D.Float(Path2D.WIND_NON_ZERO, 1024);
+	
+	//Number of commands drawn by the last "draw" call
+	int drawnCommands = 0;
+	
+	//Removes every command
+	void clear(){
+		pointCount = 0;
+		shapeCount = 0;
+		commandCount = 0;
+	}
+	
+	//Adds a filled and outlined polygon of the first "size" points of the arrays
+	void addPolygon(int[] xPoints, int[] yPoints, int size, int fillColor, int lineColor){
+		reservePoints(size);
+		
+		//Polygons are all stored counter-clockwise on screen, so a fill of overlapping polygons covers their union
+		long area = 0;
+		for (var i = 0; i < size; i++){
+			final int j = i == 0 ? size - 1 : i - 1;
+			area += (long) xPoints[j] * yPoints[i] - (long) xPoints[i] * yPoints[j];
+		}
+		for (var i = 0; i < size; i++){
+			final int point = area < 0 ? size - 1 - i : i;
+			pointX[pointCount + i] = xPoints[point];
+			pointY[pointCount + i] = yPoints[point];
+		}
+		pointCount += size;
+		beginShape(pointCount - size, size, true, fillColor, lineColor);
+	}
+	
+	//Adds a line
+	void addLine(int x1, int y1, int x2, int y2, int lineColor){
+		reservePoints(2);
+		pointX[pointCount] = x1;
+		pointY[pointCount] = y1;
+		pointX[pointCount + 1] = x2;
+		pointY[pointCount + 1] = y2;
+		pointCount += 2;
+		beginShape(pointCount - 2, 2, false, 0, lineColor);
+	}
+	
+	//Adds a shape whose points were just added, merging it into the last command if it can be
+	private void beginShape(int start, int size, boolean filled, int fillColor, int lineColor){
+		if (shapeCount == shapeStart.length){
+			shapeStart = Arrays.copyOf(shapeStart, shapeCount * 2);
+			shapeSize = Arrays.copyOf(shapeSize, shapeCount * 2);
+		}
+		shapeStart[shapeCount] = start;
+		shapeSize[shapeCount] = size;
+		shapeCount++;
+		
+		int lowX = Integer.MAX_VALUE, lowY = Integer.MAX_VALUE, highX = Integer.MIN_VALUE, highY = Integer.MIN_VALUE;
+		for (var i = start; i < start + size; i++){
+			lowX = Math.min(lowX, pointX[i]);
+			lowY = Math.min(lowY, pointY[i]);
+			highX = Math.max(highX, pointX[i]);
+			highY = Math.max(highY, pointY[i]);
+		}
+		lowX--;
+		lowY--;
+		highX++;
+		highY++;
+		
+		if (commandCount > 0 && commandFilled[commandCount - 1] == filled && commandLine[commandCount - 1] == lineColor
+				&& (!filled || commandFill[commandCount - 1] == fillColor)){
+			final boolean opaque = lineColor >>> 24 == 0xFF && (!filled || fillColor == lineColor);
+			final boolean separate = lowX > maxX || highX < minX || lowY > maxY || highY < minY;
+			if (opaque || separate){
+				minX = Math.min(minX, lowX);
+				minY = Math.min(minY, lowY);
+				maxX = Math.max(maxX, highX);
+				maxY = Math.max(maxY, highY);
+				return;
+			}
+		}
+		
+		if (commandCount == commandStart.length){
+			final int length = commandCount * 2;
+			commandStart = Arrays.copyOf(commandStart, length);
+			commandFill = Arrays.copyOf(commandFill, length);
+			commandLine = Arrays.copyOf(commandLine, length);
+			commandFilled = Arrays.copyOf(commandFilled, length);
+		}
+		commandStart[commandCount] = shapeCount - 1;
+		commandFill[commandCount] = fillColor;
+		commandLine[commandCount] = lineColor;
+		commandFilled[commandCount] = filled;
+		commandCount++;
+		minX = lowX;
+		minY = lowY;
+		maxX = highX;
+		maxY = highY;
+	}
+	
+	private void reservePoints(int size){
+		if (pointCount + size > pointX.length){
+			final int length = Math.max(pointCount + size, pointX.length * 2);
+			pointX = Arrays.copyOf(pointX, length);
+			pointY = Arrays.copyOf(pointY, length);
+		}
+	}
+	
+	//Draws every command, in order
+	void draw(Graphics2D Graphics, ColorCache colors){
+		int current = Graphics.getColor().getRGB();
+		for (var i = 0; i < commandCount; i++){
+			final int end = i + 1 < commandCount ? commandStart[i + 1] : shapeCount;
+			path.reset();
+			for (var shape = commandStart[i]; shape < end; shape++){
+				final int start = shapeStart[shape];
+				final int size = shapeSize[shape];
+				path.moveTo(pointX[start], pointY[start]);
+				for (var j = start + 1; j < start + size; j++){
+					path.lineTo(pointX[j], pointY[j]);
+				}
+				if (size > 2){
+					path.closePath();
+				}
+			}
+			if (commandFilled[i]){
+				if (current != commandFill[i]){
+					current = commandFill[i];
+					Graphics.setColor(colors.get(current));
+				}
+				Graphics.fill(path);
+			}
+			if (current != commandLine[i]){
+				current = commandLine[i];
+				Graphics.setColor(colors.get(current));
+			}
+			Graphics.draw(path);
+		}
+		drawnCommands = commandCount;
+	}
+}
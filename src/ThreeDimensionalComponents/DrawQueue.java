@@ -0,0 +1,127 @@
+package ThreeDimensionalComponents;
+
+import java.util.Arrays;
+
+//Faces waiting to be drawn, stored as flat primitive arrays. Every face keeps the screen coords and depth of its own
+//points, so any rasterizer can draw it without going back to the shape it came from.
+//Acts as the frame arena: arrays only ever grow, and truncating just resets the counts, so once the queue has grown
+//to the size of a scene, filling it again allocates nothing
+final class DrawQueue {
+	
+	//Per point: screen coords, and view-space depth (negative in front of the camera)
+	double[] pointX = new double[256];
+	double[] pointY = new double[256];
+	double[] pointZ = new double[256];
+	int pointCount = 0;
+	
+	//Per face: first point, number of points, average depth, and colors as packed ARGB
+	int[] faceStart = new int[64];
+	int[] faceSize = new int[64];
+	double[] faceZ = new double[64];
+	int[] faceColors = new int[64];
+	int[] lineColors = new int[64];
+	int faceCount = 0;
+	
+	//Starts a new face, returning its index. Points are then added with "addPoint"
+	int beginFace(double z, int lineColor, int faceColor){
+		if (faceCount == faceStart.length){
+			int size = faceCount * 2;
+			faceStart = Arrays.copyOf(faceStart, size);
+			faceSize = Arrays.copyOf(faceSize, size);
+			faceZ = Arrays.copyOf(faceZ, size);
+			faceColors = Arrays.copyOf(faceColors, size);
+			lineColors = Arrays.copyOf(lineColors, size);
+		}
+		faceStart[faceCount] = pointCount;
+		faceSize[faceCount] = 0;
+		faceZ[faceCount] = z;
+		faceColors[faceCount] = faceColor;
+		lineColors[faceCount] = lineColor;
+		return faceCount++;
+	}
+	
+	//Adds a point to the last face
+	void addPoint(double x, double y, double z){
+		if (pointCount == pointX.length){
+			int size = pointCount * 2;
+			pointX = Arrays.copyOf(pointX, size);
+			pointY = Arrays.copyOf(pointY, size);
+			pointZ = Arrays.copyOf(pointZ, size);
+		}
+		pointX[pointCount] = x;
+		pointY[pointCount] = y;
+		pointZ[pointCount] = z;
+		pointCount++;
+		faceSize[faceCount - 1]++;
+	}
+	
+	//Adds a whole face, reading its points from a transformed vertex buffer
+	void addFace(VertexBuffer vertices, int[] indices, int from, int to, double z, int lineColor, int faceColor){
+		beginFace(z, lineColor, faceColor);
+		for (var i = from; i < to; i++){
+			int point = indices[i];
+			addPoint(vertices.screenX[point], vertices.screenY[point], vertices.z[point]);
+		}
+	}
+	
+	//Adds a copy of a face of another queue
+	void copyFace(DrawQueue source, int face){
+		beginFace(source.faceZ[face], source.lineColors[face], source.faceColors[face]);
+		final int start = source.faceStart[face];
+		for (var i = start; i < start + source.faceSize[face]; i++){
+			addPoint(source.pointX[i], source.pointY[i], source.pointZ[i]);
+		}
+	}
+	
+	//Hash of everything that decides how a face is drawn: its colors, depth, and the coords of its points
+	long hashFace(int face){
+		long hash = ((long) faceColors[face] << 32 | (lineColors[face] & 0xFFFFFFFFL)) * 0x9E3779B97F4A7C15L;
+		hash = mix(hash, Double.doubleToLongBits(faceZ[face]));
+		final int start = faceStart[face];
+		for (var i = start; i < start + faceSize[face]; i++){
+			hash = mix(hash, Double.doubleToLongBits(pointX[i]));
+			hash = mix(hash, Double.doubleToLongBits(pointY[i]));
+			hash = mix(hash, Double.doubleToLongBits(pointZ[i]));
+		}
+		return hash;
+	}
+	
+	private static long mix(long hash, long value){
+		return Long.rotateLeft((hash ^ value) * 0xC2B2AE3D27D4EB4FL, 31);
+	}
+	
+	//Writes the screen bounds of a face, grown by a pixel for its outline, as x0, y0, x1, y1 (max values exclusive)
+	void getBounds(int face, int[] bounds, int offset){
+		double minX = Globals.Numbers.infinity, minY = Globals.Numbers.infinity;
+		double maxX = -Globals.Numbers.infinity, maxY = -Globals.Numbers.infinity;
+		final int start = faceStart[face];
+		for (var i = start; i < start + faceSize[face]; i++){
+			minX = Math.min(minX, pointX[i]);
+			minY = Math.min(minY, pointY[i]);
+			maxX = Math.max(maxX, pointX[i]);
+			maxY = Math.max(maxY, pointY[i]);
+		}
+		//Far off-screen coords are clamped, so the casts cannot overflow
+		bounds[offset] = (int) Math.max(-1e9, Math.floor(minX)) - 1;
+		bounds[offset + 1] = (int) Math.max(-1e9, Math.floor(minY)) - 1;
+		bounds[offset + 2] = (int) Math.min(1e9, Math.ceil(maxX)) + 2;
+		bounds[offset + 3] = (int) Math.min(1e9, Math.ceil(maxY)) + 2;
+	}
+	
+	//Removes every face past the given count
+	void truncate(int faceCount){
+		if (faceCount < this.faceCount){
+			pointCount = faceCount == 0 ? 0 : faceStart[faceCount];
+			this.faceCount = faceCount;
+		}
+	}
+	
+	//Copies the screen coords of a face into int arrays, which must hold AT LEAST "faceSize[face]" points
+	void getPolygon(int face, int[] xPoints, int[] yPoints){
+		final int start = faceStart[face];
+		for (var i = 0; i < faceSize[face]; i++){
+			xPoints[i] = (int) pointX[start + i];
+			yPoints[i] = (int) pointY[start + i];
+		}
+	}
+}
@@ -0,0 +1,135 @@
+package ThreeDimensionalComponents;
+
+//Per-face visibility: where a face is relative to the near plane, whether it faces away from the camera, and
+//Sutherland-Hodgman clipping of faces that cross the near plane, so they are cut off at it instead of dropped.
+//Clipped faces get new points, which are kept in the clipper's own buffers until the next clip
+final class FaceClipper {
+	
+	//Where a face is relative to the near plane
+	static final int INSIDE = 0;
+	static final int CROSSING = 1;
+	static final int OUTSIDE = 2;
+	
+	//Projection the clipped points are projected with
+	private double FOV;
+	private int centerX;
+	private int centerY;
+	
+	//Last clipped polygon: view-space coords and screen coords, and the number of points
+	double[] x = new double[16];
+	double[] y = new double[16];
+	double[] z = new double[16];
+	double[] screenX = new double[16];
+	double[] screenY = new double[16];
+	int count = 0;
+	
+	void setProjection(double FOV, int centerX, int centerY){
+		this.FOV = FOV;
+		this.centerX = centerX;
+		this.centerY = centerY;
+	}
+	
+	//Classifies the face made of indices[from] up to (but not including) indices[to]. Points in front of the camera
+	//have z of -near or less
+	static int classify(double[] z, int[] indices, int from, int to){
+		final double limit = -Globals.Camera.nearPlane;
+		int behind = 0;
+		for (var i = from; i < to; i++){
+			if (z[indices[i]] > limit){
+				behind++;
+			}
+		}
+		return behind == 0 ? INSIDE : behind == to - from ? OUTSIDE : CROSSING;
+	}
+	
+	//Returns if a face points away from the camera. Faces are front facing when their points run counter-clockwise
+	//on screen, as the screen is seen (y grows downwards, so the signed area of such a face in screen coords is
+	//negative). Tested on the view-space normal, which gives the same answer as the screen winding for points in
+	//front of the camera, and still works for faces that cross the near plane. The view matrix mirrors y, so this
+	//can not be checked on world-space coords without it
+	static boolean isBackFace(double[] x, double[] y, double[] z, int[] indices, int from, int to){
+		//Newell's method, so faces with more than three points are handled too
+		double normalX = 0, normalY = 0, normalZ = 0;
+		double sumX = 0, sumY = 0, sumZ = 0;
+		for (var i = from; i < to; i++){
+			int current = indices[i];
+			int next = indices[i + 1 < to ? i + 1 : from];
+			normalX += (y[current] - y[next]) * (z[current] + z[next]);
+			normalY += (z[current] - z[next]) * (x[current] + x[next]);
+			normalZ += (x[current] - x[next]) * (y[current] + y[next]);
+			sumX += x[current];
+			sumY += y[current];
+			sumZ += z[current];
+		}
+		//The camera is at the origin, so the face is seen from the front if the centroid lies on the back of the normal
+		return normalX * sumX + normalY * sumY + normalZ * sumZ <= 0;
+	}
+	
+	//Clips a face against the near plane, and projects the result. Returns the number of points left, which is 0 if
+	//the face was entirely behind the near plane
+	int clip(double[] x, double[] y, double[] z, int[] indices, int from, int to){
+		final double limit = -Globals.Camera.nearPlane;
+		final int size = to - from;
+		
+		//Clipping against one plane adds at most one point
+		if (this.x.length < size + 1){
+			int length = (size + 1) * 2;
+			this.x = new double[length];
+			this.y = new double[length];
+			this.z = new double[length];
+			screenX = new double[length];
+			screenY = new double[length];
+		}
+		
+		count = 0;
+		int previous = indices[to - 1];
+		boolean previousIn = z[previous] <= limit;
+		for (var i = from; i < to; i++){
+			int current = indices[i];
+			boolean currentIn = z[current] <= limit;
+			if (currentIn != previousIn){
+				//Adds where the edge crosses the near plane
+				double t = (limit - z[previous]) / (z[current] - z[previous]);
+				addPoint(x[previous] + (x[current] - x[previous]) * t,
+						y[previous] + (y[current] - y[previous]) * t,
+						limit);
+			}
+			if (currentIn){
+				addPoint(x[current], y[current], z[current]);
+			}
+			previous = current;
+			previousIn = currentIn;
+		}
+		if (count < 3){
+			count = 0;
+		}
+		return count;
+	}
+	
+	private void addPoint(double x, double y, double z){
+		this.x[count] = x;
+		this.y[count] = y;
+		this.z[count] = z;
+		double scale = FOV / -z;
+		screenX[count] = x * scale + centerX;
+		screenY[count] = y * scale + centerY;
+		count++;
+	}
+	
+	//Clips a face and adds what is left to the draw queue, with its average depth. Returns false if nothing was left
+	boolean addClipped(DrawQueue queue, double[] x, double[] y, double[] z, int[] indices, int from, int to,
+	                   int lineColor, int faceColor){
+		if (clip(x, y, z, indices, from, to) == 0){
+			return false;
+		}
+		double zSum = 0;
+		for (var i = 0; i < count; i++){
+			zSum += this.z[i];
+		}
+		queue.beginFace(zSum / count, lineColor, faceColor);
+		for (var i = 0; i < count; i++){
+			queue.addPoint(screenX[i], screenY[i], this.z[i]);
+		}
+		return true;
+	}
+}
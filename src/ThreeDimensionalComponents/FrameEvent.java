@@ -0,0 +1,49 @@
+package ThreeDimensionalComponents;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+//Flight Recorder event, committed for every presented frame while a recording has it enabled
+@Name("ThreeDimensionalComponents.Frame")
+@Label("Frame")
+@Category("3D Engine")
+@Description("Per-stage timings and face counters of one presented frame")
+final class FrameEvent extends jdk.jfr.Event {
+	
+	@Label("Transform")
+	@Timespan(Timespan.NANOSECONDS)
+	long transform;
+	
+	@Label("Queue")
+	@Timespan(Timespan.NANOSECONDS)
+	long queue;
+	
+	@Label("Sort")
+	@Timespan(Timespan.NANOSECONDS)
+	long sort;
+	
+	@Label("Raster")
+	@Timespan(Timespan.NANOSECONDS)
+	long raster;
+	
+	@Label("Present")
+	@Timespan(Timespan.NANOSECONDS)
+	long present;
+	
+	@Label("Frame Time")
+	@Description("Time since the previous presented frame, or -1 for the first frame")
+	@Timespan(Timespan.NANOSECONDS)
+	long frame;
+	
+	@Label("Faces Submitted")
+	int submitted;
+	
+	@Label("Faces Culled")
+	int culled;
+	
+	@Label("Faces Drawn")
+	int drawn;
+}
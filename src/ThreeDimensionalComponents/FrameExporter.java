@@ -0,0 +1,254 @@
+package ThreeDimensionalComponents;
+
+import org.jetbrains.annotations.NotNull;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+//Writes finished frames out without holding up the render thread. "capture" copies the target's pixels into a pooled
+//buffer and queues it; worker threads encode queued frames to numbered PNG or raw RGB files, or stream them to the
+//stdin of an encoder process. Capturing only blocks when every buffer is still waiting to be written.
+//Set on a canvas with "setFrameExporter(...)" to capture every presented frame
+public final class FrameExporter implements AutoCloseable {
+	
+	//Output formats
+	private static final int PNG = 0, RAW = 1, PIPE = 2;
+	
+	//A captured frame. Holders and their buffers are pooled, so capturing allocates nothing once the pool is full
+	private static final class Frame {
+		int[] pixels = new int[0];
+		int width;
+		int height;
+		int imageType;
+		long index;
+	}
+	
+	//Queued to stop a worker
+	private static final Frame END = new Frame();
+	
+	private final int format;
+	private final Path directory;
+	private final String pattern;
+	private final Process process;
+	private final OutputStream pipe;
+	
+	//Free frames, and frames waiting to be written. There are as many frames as the queue holds plus one per worker,
+	//so the queue itself never blocks
+	private final ArrayBlockingQueue<Frame> free;
+	private final ArrayBlockingQueue<Frame> pending;
+	private final Thread[] workers;
+	
+	private long captured = 0;
+	private final AtomicLong written = new AtomicLong();
+	
+	//First error a worker ran into, which is rethrown on the render thread
+	private volatile Throwable failure;
+	private boolean closed = false;
+	
+	private FrameExporter(int format, Path directory, String pattern, Process process, int threads, int queueSize){
+		if (threads < 1 || queueSize < 1){
+			throw new Error("A frame exporter needs AT LEAST one thread and room for one frame");
+		}
+		this.format = format;
+		this.directory = directory;
+		this.pattern = pattern;
+		this.process = process;
+		pipe = process == null ? null : new BufferedOutputStream(process.getOutputStream(), 1 << 16);
+		
+		free = new ArrayBlockingQueue<>(queueSize + threads);
+		pending = new ArrayBlockingQueue<>(queueSize + threads + threads);
+		for (var i = 0; i < queueSize + threads; i++){
+			free.add(new Frame());
+		}
+		workers = new Thread[threads];
+		for (var i = 0; i < threads; i++){
+			workers[i] = new Thread(this::work, "Frame Export " + i);
+			workers[i].setDaemon(true);
+			workers[i].start();
+		}
+	}
+	
+	//Writes every frame to "directory" as a PNG file, named by formatting "pattern" (such as "frame%05d.png") with the
+	//frame number. Frames are encoded on "threads" threads, with up to "queueSize" frames waiting
+	public static FrameExporter png(@NotNull Path directory, @NotNull String pattern, int threads, int queueSize) throws IOException {
+		Files.createDirectories(directory);
+		return new FrameExporter(PNG, directory, pattern, null, threads, queueSize);
+	}
+	
+	//Writes every frame to "directory" as a raw file of 8-bit R, G and B values, row by row, with no header
+	public static FrameExporter raw(@NotNull Path directory, @NotNull String pattern, int threads, int queueSize) throws IOException {
+		Files.createDirectories(directory);
+		return new FrameExporter(RAW, directory, pattern, null, threads, queueSize);
+	}
+	
+	//Starts an encoder process (such as ffmpeg reading "-f rawvideo -pix_fmt rgb24" from "-") and streams every frame
+	//to its stdin as raw RGB. Frames have to arrive in order, so they are written by a single thread
+	public static FrameExporter pipe(@NotNull List<String> command, int queueSize) throws IOException {
+		final Process process = new ProcessBuilder(command)
+				.redirectOutput(ProcessBuilder.Redirect.INHERIT)
+				.redirectError(ProcessBuilder.Redirect.INHERIT)
+				.start();
+		return new FrameExporter(PIPE, null, null, process, 1, queueSize);
+	}
+	
+	//Queues the target's current pixels. Blocks only while every buffer is still waiting to be written
+	public void capture(@NotNull RenderTarget target){
+		checkFailure();
+		if (closed){
+			throw new Error("Frame exporter is closed!");
+		}
+		final int[] pixels = target.getPixels();
+		if (pixels == null){
+			throw new Error("Frames can only be exported from a target with pixels!");
+		}
+		
+		final Frame frame;
+		try {
+			frame = free.take();
+		} catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new Error("Interrupted while waiting for a free frame buffer!");
+		}
+		final int size = target.getWidth() * target.getHeight();
+		if (frame.pixels.length != size){
+			frame.pixels = new int[size];
+		}
+		System.arraycopy(pixels, 0, frame.pixels, 0, size);
+		frame.width = target.getWidth();
+		frame.height = target.getHeight();
+		frame.imageType = target.getImageType();
+		frame.index = captured++;
+		pending.add(frame);
+	}
+	
+	//Number of frames captured so far
+	public long getFramesCaptured(){
+		return captured;
+	}
+	
+	//Number of frames written so far
+	public long getFramesWritten(){
+		return written.get();
+	}
+	
+	//Writes every queued frame, stops the workers, and waits for the encoder process to exit, if there is one
+	@Override
+	public void close(){
+		if (closed){
+			return;
+		}
+		closed = true;
+		for (var i = 0; i < workers.length; i++){
+			pending.add(END);
+		}
+		final int exit;
+		try {
+			for (Thread worker : workers){
+				worker.join();
+			}
+			if (process != null){
+				try {
+					pipe.close();
+				} catch (IOException e){
+					fail(e);
+				}
+			}
+			exit = process == null ? 0 : process.waitFor();
+		} catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new Error("Interrupted while waiting for frames to be written!");
+		}
+		if (exit != 0 && failure == null){
+			throw new Error("Encoder process exited with code " + exit + "!");
+		}
+		checkFailure();
+	}
+	
+	private void checkFailure(){
+		final Throwable failure = this.failure;
+		if (failure != null){
+			throw new Error("Frame export failed!", failure);
+		}
+	}
+	
+	private synchronized void fail(Throwable e){
+		if (failure == null){
+			failure = e;
+		}
+	}
+	
+	//Worker loop. Each worker keeps its own image and byte buffer, and hands the frame buffer back to the pool as soon
+	//as it has been copied out. After an error, frames are still taken and freed, so capturing never blocks forever
+	private void work(){
+		BufferedImage image = null;
+		byte[] bytes = new byte[0];
+		while (true){
+			final Frame frame;
+			try {
+				frame = pending.take();
+			} catch (InterruptedException e){
+				return;
+			}
+			if (frame == END){
+				return;
+			}
+			try {
+				if (failure != null){
+					free.add(frame);
+					continue;
+				}
+				if (format == PNG){
+					if (image == null || image.getWidth() != frame.width || image.getHeight() != frame.height
+							|| image.getType() != frame.imageType){
+						image = new BufferedImage(frame.width, frame.height, frame.imageType);
+					}
+					final int[] data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+					System.arraycopy(frame.pixels, 0, data, 0, data.length);
+					final Path file = directory.resolve(String.format(pattern, frame.index));
+					free.add(frame);
+					if (!ImageIO.write(image, "png", file.toFile())){
+						throw new IOException("No PNG writer available!");
+					}
+				} else {
+					if (bytes.length != frame.pixels.length * 3){
+						bytes = new byte[frame.pixels.length * 3];
+					}
+					toRGB(frame.pixels, frame.imageType, bytes);
+					final long index = frame.index;
+					free.add(frame);
+					if (format == RAW){
+						Files.write(directory.resolve(String.format(pattern, index)), bytes);
+					} else {
+						pipe.write(bytes);
+					}
+				}
+				written.incrementAndGet();
+			} catch (Throwable e){
+				fail(e);
+			}
+		}
+	}
+	
+	//Unpacks pixels into 8-bit R, G and B values. Premultiplied pixels keep their color values as they are, which is
+	//the same as compositing them over black
+	private static void toRGB(int[] pixels, int imageType, byte[] bytes){
+		final boolean swapRedBlue = imageType == BufferedImage.TYPE_INT_BGR;
+		for (var i = 0; i < pixels.length; i++){
+			final int pixel = pixels[i];
+			final int red = swapRedBlue ? pixel & 0xFF : (pixel >> 16) & 0xFF;
+			final int blue = swapRedBlue ? (pixel >> 16) & 0xFF : pixel & 0xFF;
+			bytes[i * 3] = (byte) red;
+			bytes[i * 3 + 1] = (byte) (pixel >> 8);
+			bytes[i * 3 + 2] = (byte) blue;
+		}
+	}
+}
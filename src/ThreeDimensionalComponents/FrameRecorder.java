@@ -0,0 +1,273 @@
+package ThreeDimensionalComponents;
+
+import java.awt.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+//Appends every call that decides what a canvas draws to a binary log, so the session can be replayed by FrameReplay.
+//Recorded are the camera, cleared and drawn text, submitted shapes and instances, and the registered meshes, each
+//mesh's geometry only once. Static geometry, off-heap meshes and scene graphs are not recorded.
+//Commands are packed little-endian into a direct buffer, which is written to the file channel whenever it fills up
+final class FrameRecorder {
+	
+	//Log layout: magic, version, then the canvas FOV, width, height, center x and y, and background and text colors.
+	//After that, commands: one opcode byte, then the command's values
+	static final int LOG_MAGIC = 0x474C5246;
+	static final int LOG_VERSION = 1;
+	
+	//Opcodes
+	static final byte CAMERA = 1;
+	static final byte CLEAR = 2;
+	static final byte TEXT = 3;
+	static final byte ADD_SHAPE = 4;
+	static final byte DRAW_SHAPE = 5;
+	static final byte MESH = 6;
+	static final byte LOD = 7;
+	static final byte INSTANCES = 8;
+	static final byte REGISTER = 9;
+	static final byte MESH_STATE = 10;
+	static final byte UNREGISTER = 11;
+	static final byte DRAW_SHAPES = 12;
+	static final byte END_FRAME = 13;
+	
+	private final FileChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+	
+	//Camera version last recorded, or -1 before the first one
+	private int cameraVersion = -1;
+	
+	//Ids of recorded meshes and levels of detail, so their geometry is only written once
+	private final IdentityHashMap<Mesh, Integer> meshIds = new IdentityHashMap<>();
+	private final IdentityHashMap<LODMesh, Integer> lodIds = new IdentityHashMap<>();
+	
+	//Per recorded registered mesh: id, then the version and line and face colors last recorded
+	private final IdentityHashMap<MeshHandle, int[]> handles = new IdentityHashMap<>();
+	private int handleSequence = 0;
+	
+	private long frames = 0;
+	
+	FrameRecorder(Path path, double FOV, int width, int height, int centerX, int centerY, Color background, Color textColor) throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		buffer.putInt(LOG_MAGIC).putInt(LOG_VERSION)
+				.putDouble(FOV).putInt(width).putInt(height).putInt(centerX).putInt(centerY)
+				.putInt(background.getRGB()).putInt(textColor.getRGB());
+	}
+	
+	//Number of frames recorded so far
+	long getFrameCount(){
+		return frames;
+	}
+	
+	//Records the camera, if it changed since it was last recorded
+	void camera(int version, double camX, double camY, double camZ, double camRotX, double camRotY){
+		if (cameraVersion != version){
+			cameraVersion = version;
+			reserve(1 + 5 * 8);
+			buffer.put(CAMERA).putDouble(camX).putDouble(camY).putDouble(camZ).putDouble(camRotX).putDouble(camRotY);
+		}
+	}
+	
+	void clear(boolean clearShapes){
+		reserve(2);
+		buffer.put(CLEAR).put((byte) (clearShapes ? 1 : 0));
+	}
+	
+	void text(char[] text, int x, int y){
+		reserve(1 + 3 * 4);
+		buffer.put(TEXT).putInt(x).putInt(y).putInt(text.length);
+		for (var i = 0; i < text.length; i++){
+			reserve(2);
+			buffer.putChar(text[i]);
+		}
+	}
+	
+	void addShape(double[] x, double[] y, double[] z, int[][] faceList, double thetaX, double thetaY, double thetaZ, Color lineColor, Color faceColor){
+		reserve(1);
+		buffer.put(ADD_SHAPE);
+		putPoints(x, y, z);
+		putLists(faceList);
+		putTransform(thetaX, thetaY, thetaZ, 0, 0, 0);
+		putColors(lineColor.getRGB(), faceColor.getRGB());
+	}
+	
+	void drawShape(double[] x, double[] y, double[] z, int[][] lineList, int[][] faceList,
+	               double thetaX, double thetaY, double thetaZ, Color lineColor, Color faceColor){
+		reserve(1);
+		buffer.put(DRAW_SHAPE);
+		putPoints(x, y, z);
+		putLists(lineList);
+		putLists(faceList);
+		putTransform(thetaX, thetaY, thetaZ, 0, 0, 0);
+		putColors(lineColor.getRGB(), faceColor.getRGB());
+	}
+	
+	void instances(MeshInstances instances){
+		final int mesh = meshId(instances.getMesh());
+		final double[] transforms = instances.getTransforms();
+		final int[] colors = instances.getColors();
+		reserve(1 + 2 * 4);
+		buffer.put(INSTANCES).putInt(mesh).putInt(instances.size());
+		for (var i = 0; i < instances.size(); i++){
+			final int base = i * MeshInstances.STRIDE;
+			putTransform(transforms[base + MeshInstances.THETA_X], transforms[base + MeshInstances.THETA_Y], transforms[base + MeshInstances.THETA_Z],
+					transforms[base + MeshInstances.OFFSET_X], transforms[base + MeshInstances.OFFSET_Y], transforms[base + MeshInstances.OFFSET_Z]);
+			putColors(colors[i * 2], colors[i * 2 + 1]);
+		}
+	}
+	
+	//Records a "drawShapes" call, after whatever changed among the registered meshes since the last one
+	void drawShapes(ArrayList<MeshHandle> meshes, boolean clear){
+		//Unregistered meshes no longer belong to a canvas
+		for (Iterator<Map.Entry<MeshHandle, int[]>> entries = handles.entrySet().iterator(); entries.hasNext(); ){
+			Map.Entry<MeshHandle, int[]> entry = entries.next();
+			if (entry.getKey().owner == null){
+				reserve(1 + 4);
+				buffer.put(UNREGISTER).putInt(entry.getValue()[0]);
+				entries.remove();
+			}
+		}
+		for (var i = 0; i < meshes.size(); i++){
+			MeshHandle handle = meshes.get(i);
+			int[] state = handles.get(handle);
+			if (state == null){
+				final boolean lod = handle.getLOD() != null;
+				final int geometry = lod ? lodId(handle.getLOD()) : meshId(handle.getMesh());
+				state = new int[]{handleSequence++, 0, 0, 0};
+				handles.put(handle, state);
+				reserve(1 + 4 + 1 + 4);
+				buffer.put(REGISTER).putInt(state[0]).put((byte) (lod ? 1 : 0)).putInt(geometry);
+			} else if (state[1] == handle.getVersion() && state[2] == handle.lineARGB && state[3] == handle.faceARGB){
+				continue;
+			}
+			state[1] = handle.getVersion();
+			state[2] = handle.lineARGB;
+			state[3] = handle.faceARGB;
+			reserve(1 + 4);
+			buffer.put(MESH_STATE).putInt(state[0]);
+			putTransform(handle.getThetaX(), handle.getThetaY(), handle.getThetaZ(),
+					handle.getOffsetX(), handle.getOffsetY(), handle.getOffsetZ());
+			putColors(handle.lineARGB, handle.faceARGB);
+		}
+		reserve(2);
+		buffer.put(DRAW_SHAPES).put((byte) (clear ? 1 : 0));
+	}
+	
+	void endFrame(){
+		reserve(1);
+		buffer.put(END_FRAME);
+		frames++;
+	}
+	
+	//Writes out everything recorded, and closes the file
+	void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			channel.close();
+		}
+	}
+	
+	//Id of a mesh, writing its geometry the first time it is seen
+	private int meshId(Mesh mesh){
+		Integer id = meshIds.get(mesh);
+		if (id != null){
+			return id;
+		}
+		id = meshIds.size();
+		meshIds.put(mesh, id);
+		final int[] offsets = mesh.getFaceOffsets();
+		final int[] indices = mesh.getFaceIndices();
+		reserve(1 + 4);
+		buffer.put(MESH).putInt(id);
+		putPoints(mesh.getX(), mesh.getY(), mesh.getZ());
+		putInts(offsets);
+		putInts(indices);
+		return id;
+	}
+	
+	//Id of a set of levels of detail, writing its levels the first time it is seen
+	private int lodId(LODMesh lod){
+		Integer id = lodIds.get(lod);
+		if (id != null){
+			return id;
+		}
+		id = lodIds.size();
+		lodIds.put(lod, id);
+		final int[] levels = new int[lod.getLevelCount()];
+		for (var i = 0; i < levels.length; i++){
+			levels[i] = meshId(lod.getLevel(i));
+		}
+		reserve(1 + 2 * 4);
+		buffer.put(LOD).putInt(id).putInt(levels.length);
+		for (var i = 0; i < levels.length; i++){
+			reserve(4 + 8);
+			buffer.putInt(levels[i]).putDouble(lod.getMinScreenRadius(i));
+		}
+		return id;
+	}
+	
+	private void putPoints(double[] x, double[] y, double[] z){
+		reserve(3 * 4);
+		buffer.putInt(x.length).putInt(y.length).putInt(z.length);
+		for (double[] values : new double[][]{x, y, z}){
+			for (var i = 0; i < values.length; i++){
+				reserve(8);
+				buffer.putDouble(values[i]);
+			}
+		}
+	}
+	
+	private void putLists(int[][] lists){
+		reserve(4);
+		buffer.putInt(lists.length);
+		for (var i = 0; i < lists.length; i++){
+			putInts(lists[i]);
+		}
+	}
+	
+	private void putInts(int[] values){
+		reserve(4);
+		buffer.putInt(values.length);
+		for (var i = 0; i < values.length; i++){
+			reserve(4);
+			buffer.putInt(values[i]);
+		}
+	}
+	
+	private void putTransform(double thetaX, double thetaY, double thetaZ, double offsetX, double offsetY, double offsetZ){
+		reserve(6 * 8);
+		buffer.putDouble(thetaX).putDouble(thetaY).putDouble(thetaZ).putDouble(offsetX).putDouble(offsetY).putDouble(offsetZ);
+	}
+	
+	private void putColors(int lineARGB, int faceARGB){
+		reserve(2 * 4);
+		buffer.putInt(lineARGB).putInt(faceARGB);
+	}
+	
+	//Makes room for "bytes" more bytes, writing out the buffer if it is too full
+	private void reserve(int bytes){
+		if (buffer.remaining() < bytes){
+			try {
+				flush();
+			} catch (IOException e){
+				throw new Error("Could not write frame recording!", e);
+			}
+		}
+	}
+	
+	private void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()){
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+}
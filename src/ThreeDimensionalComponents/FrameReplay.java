@@ -0,0 +1,294 @@
+package ThreeDimensionalComponents;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.awt.*;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Consumer;
+
+//A session recorded with "startRecording(...)" on a canvas, loaded for replay. The whole log is decoded up front, so
+//replaying only runs the recorded canvas calls, as fast as they go, and times every frame. No input or physics is
+//involved, so every replay of a log draws the same frames, which makes it a regression test for frame times.
+//Run headless from the command line with the log's path, and optionally how many times to replay it
+public final class FrameReplay {
+	
+	//Canvas the session was recorded on
+	private final double FOV;
+	private final int width;
+	private final int height;
+	private final int centerX;
+	private final int centerY;
+	private final Color background;
+	private final Color textColor;
+	
+	//Recorded calls, frame by frame. Every frame ends with "update()"
+	private final ArrayList<List<Consumer<ThreeDimensionalCanvas>>> frames = new ArrayList<>();
+	
+	//Registered meshes of the replay running, by recorded id
+	private final HashMap<Integer, MeshHandle> handles = new HashMap<>();
+	
+	private FrameReplay(double FOV, int width, int height, int centerX, int centerY, Color background, Color textColor){
+		this.FOV = FOV;
+		this.width = width;
+		this.height = height;
+		this.centerX = centerX;
+		this.centerY = centerY;
+		this.background = background;
+		this.textColor = textColor;
+	}
+	
+	//Loads a recorded session. A log cut short, such as by a crash, is replayed up to its last complete frame
+	public static FrameReplay load(@NotNull Path path) throws IOException {
+		final MappedByteBuffer data;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+			data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		data.order(ByteOrder.LITTLE_ENDIAN);
+		final FrameReplay replay;
+		try {
+			if (data.getInt() != FrameRecorder.LOG_MAGIC || data.getInt() != FrameRecorder.LOG_VERSION){
+				throw new Error("Not a frame recording, or one of another version: " + path.getFileName() + "!");
+			}
+			replay = new FrameReplay(data.getDouble(), data.getInt(), data.getInt(), data.getInt(), data.getInt(),
+					new Color(data.getInt(), true), new Color(data.getInt(), true));
+		} catch (BufferUnderflowException e){
+			throw new Error("Frame recording is too short: " + path.getFileName() + "!");
+		}
+		
+		final ArrayList<Mesh> meshes = new ArrayList<>();
+		final ArrayList<LODMesh> lods = new ArrayList<>();
+		final ArrayList<Consumer<ThreeDimensionalCanvas>> frame = new ArrayList<>();
+		try {
+			while (data.hasRemaining()){
+				final byte opcode = data.get();
+				switch (opcode){
+					case FrameRecorder.CAMERA: {
+						final double camX = data.getDouble(), camY = data.getDouble(), camZ = data.getDouble();
+						final double camRotX = data.getDouble(), camRotY = data.getDouble();
+						frame.add(canvas -> {
+							canvas.setCamX(camX);
+							canvas.setCamY(camY);
+							canvas.setCamZ(camZ);
+							canvas.setCamRotX(camRotX);
+							canvas.setCamRotY(camRotY);
+						});
+						break;
+					}
+					case FrameRecorder.CLEAR: {
+						final boolean clearShapes = data.get() != 0;
+						frame.add(canvas -> canvas.clear(clearShapes));
+						break;
+					}
+					case FrameRecorder.TEXT: {
+						final int x = data.getInt(), y = data.getInt();
+						final char[] text = new char[data.getInt()];
+						for (var i = 0; i < text.length; i++){
+							text[i] = data.getChar();
+						}
+						frame.add(canvas -> canvas.drawText(text, x, y));
+						break;
+					}
+					case FrameRecorder.ADD_SHAPE: {
+						final double[][] points = getPoints(data);
+						final int[][] faceList = getLists(data);
+						final double thetaX = data.getDouble(), thetaY = data.getDouble(), thetaZ = data.getDouble();
+						data.position(data.position() + 3 * 8);
+						final Color lineColor = new Color(data.getInt(), true), faceColor = new Color(data.getInt(), true);
+						frame.add(canvas -> canvas.add3DShape(points[0], points[1], points[2], faceList, thetaX, thetaY, thetaZ, lineColor, faceColor));
+						break;
+					}
+					case FrameRecorder.DRAW_SHAPE: {
+						final double[][] points = getPoints(data);
+						final int[][] lineList = getLists(data);
+						final int[][] faceList = getLists(data);
+						final double thetaX = data.getDouble(), thetaY = data.getDouble(), thetaZ = data.getDouble();
+						data.position(data.position() + 3 * 8);
+						final Color lineColor = new Color(data.getInt(), true), faceColor = new Color(data.getInt(), true);
+						frame.add(canvas -> canvas.draw3DShape(points[0], points[1], points[2], lineList, faceList,
+								thetaX, thetaY, thetaZ, lineColor, faceColor));
+						break;
+					}
+					case FrameRecorder.MESH: {
+						data.getInt();
+						final double[][] points = getPoints(data);
+						final int[] offsets = getInts(data);
+						final int[] indices = getInts(data);
+						final int[][] faceList = new int[offsets.length - 1][];
+						for (var i = 0; i < faceList.length; i++){
+							faceList[i] = Arrays.copyOfRange(indices, offsets[i], offsets[i + 1]);
+						}
+						meshes.add(new Mesh(points[0], points[1], points[2], faceList));
+						break;
+					}
+					case FrameRecorder.LOD: {
+						data.getInt();
+						final Mesh[] levels = new Mesh[data.getInt()];
+						final double[] minScreenRadius = new double[levels.length];
+						for (var i = 0; i < levels.length; i++){
+							levels[i] = meshes.get(data.getInt());
+							minScreenRadius[i] = data.getDouble();
+						}
+						lods.add(new LODMesh(levels, minScreenRadius));
+						break;
+					}
+					case FrameRecorder.INSTANCES: {
+						final MeshInstances instances = new MeshInstances(meshes.get(data.getInt()), 1);
+						final int count = data.getInt();
+						for (var i = 0; i < count; i++){
+							instances.add(data.getDouble(), data.getDouble(), data.getDouble(), data.getDouble(), data.getDouble(), data.getDouble(),
+									new Color(data.getInt(), true), new Color(data.getInt(), true));
+						}
+						frame.add(canvas -> canvas.addInstances(instances));
+						break;
+					}
+					case FrameRecorder.REGISTER: {
+						final int id = data.getInt();
+						final boolean lod = data.get() != 0;
+						final int geometry = data.getInt();
+						final Mesh mesh = lod ? null : meshes.get(geometry);
+						final LODMesh levels = lod ? lods.get(geometry) : null;
+						frame.add(canvas -> replay.handles.put(id, lod
+								? canvas.registerMesh(levels, 0, 0, 0, Color.WHITE, Color.WHITE)
+								: canvas.registerMesh(mesh, 0, 0, 0, Color.WHITE, Color.WHITE)));
+						break;
+					}
+					case FrameRecorder.MESH_STATE: {
+						final int id = data.getInt();
+						final double thetaX = data.getDouble(), thetaY = data.getDouble(), thetaZ = data.getDouble();
+						final double offsetX = data.getDouble(), offsetY = data.getDouble(), offsetZ = data.getDouble();
+						final Color lineColor = new Color(data.getInt(), true), faceColor = new Color(data.getInt(), true);
+						frame.add(canvas -> {
+							MeshHandle handle = replay.handles.get(id);
+							handle.setRotation(thetaX, thetaY, thetaZ);
+							handle.setOffset(offsetX, offsetY, offsetZ);
+							handle.setColors(lineColor, faceColor);
+						});
+						break;
+					}
+					case FrameRecorder.UNREGISTER: {
+						final int id = data.getInt();
+						frame.add(canvas -> canvas.unregisterMesh(replay.handles.remove(id)));
+						break;
+					}
+					case FrameRecorder.DRAW_SHAPES: {
+						final boolean clear = data.get() != 0;
+						frame.add(canvas -> canvas.drawShapes(clear));
+						break;
+					}
+					case FrameRecorder.END_FRAME: {
+						frame.add(ThreeDimensionalCanvas::update);
+						replay.frames.add(List.copyOf(frame));
+						frame.clear();
+						break;
+					}
+					default:
+						throw new Error("Frame recording is damaged: " + path.getFileName() + "!");
+				}
+			}
+		} catch (BufferUnderflowException e){
+			//Cut short in the middle of a frame, which is dropped
+		}
+		return replay;
+	}
+	
+	private static double[][] getPoints(MappedByteBuffer data){
+		final double[][] points = new double[][]{new double[data.getInt()], new double[data.getInt()], new double[data.getInt()]};
+		for (double[] values : points){
+			for (var i = 0; i < values.length; i++){
+				values[i] = data.getDouble();
+			}
+		}
+		return points;
+	}
+	
+	private static int[][] getLists(MappedByteBuffer data){
+		final int[][] lists = new int[data.getInt()][];
+		for (var i = 0; i < lists.length; i++){
+			lists[i] = getInts(data);
+		}
+		return lists;
+	}
+	
+	private static int[] getInts(MappedByteBuffer data){
+		final int[] values = new int[data.getInt()];
+		for (var i = 0; i < values.length; i++){
+			values[i] = data.getInt();
+		}
+		return values;
+	}
+	
+	public int getFrameCount(){
+		return frames.size();
+	}
+	
+	//Creates an offscreen canvas like the one the session was recorded on
+	public ThreeDimensionalCanvas createCanvas(){
+		return new ThreeDimensionalCanvas(FOV, new OffscreenRenderTarget(width, height), centerX, centerY, background, textColor);
+	}
+	
+	//Replays every frame on "canvas", and returns how long each took, in nanoseconds. Meshes registered by the replay
+	//are unregistered again at the end, so a canvas can replay the same session more than once
+	public long[] replay(@NotNull ThreeDimensionalCanvas canvas){
+		final long[] frameNanos = new long[frames.size()];
+		handles.clear();
+		for (var i = 0; i < frames.size(); i++){
+			final List<Consumer<ThreeDimensionalCanvas>> calls = frames.get(i);
+			final long start = System.nanoTime();
+			for (Consumer<ThreeDimensionalCanvas> call : calls){
+				call.accept(canvas);
+			}
+			frameNanos[i] = System.nanoTime() - start;
+		}
+		for (MeshHandle handle : handles.values()){
+			canvas.unregisterMesh(handle);
+		}
+		handles.clear();
+		return frameNanos;
+	}
+	
+	//Replays a log headlessly and prints its frame times. Arguments: the log's path, and how many times to replay it
+	//(1 by default). Later runs show the times once the JIT compiler has warmed up
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1){
+			System.out.println("Usage: FrameReplay <recording> [runs]");
+			return;
+		}
+		System.setProperty("java.awt.headless", "true");
+		final FrameReplay replay = load(Paths.get(args[0]));
+		final int runs = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+		final ThreeDimensionalCanvas canvas = replay.createCanvas();
+		for (var run = 1; run <= runs; run++){
+			canvas.getFrameStats().reset();
+			final long[] frameNanos = replay.replay(canvas);
+			final long[] sorted = frameNanos.clone();
+			Arrays.sort(sorted);
+			long total = 0;
+			for (long nanos : frameNanos){
+				total += nanos;
+			}
+			System.out.printf("Run %d: %d frames in %.1f ms, mean %.3f ms, p50 %.3f ms, p99 %.3f ms, max %.3f ms%n",
+					run, frameNanos.length, total / 1e6, frameNanos.length == 0 ? 0 : total / 1e6 / frameNanos.length,
+					percentile(sorted, 50) / 1e6, percentile(sorted, 99) / 1e6,
+					(sorted.length == 0 ? 0 : sorted[sorted.length - 1]) / 1e6);
+		}
+		System.out.println(canvas.getFrameStats());
+	}
+	
+	private static long percentile(long[] sorted, double percentile){
+		if (sorted.length == 0){
+			return 0;
+		}
+		return sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile / 100 * sorted.length) - 1)];
+	}
+}
@@ -0,0 +1,142 @@
+package ThreeDimensionalComponents;
+
+//Per-stage frame timings and face counters of a canvas. Every frame is recorded when it is presented
+//("update()"), into one histogram per stage, so percentiles and breakdowns are available at any time without
+//logging. All methods are safe to call from any thread while the canvas is rendering
+public final class FrameStats {
+	
+	//Stages, by index. TRANSFORM is the model-view transform and projection of shapes and registered meshes,
+	//QUEUE copies projected faces into the draw queue, SORT is the depth sort, RASTER fills and strokes the faces
+	//(including immediately drawn shapes), and PRESENT hands the frame to the render target (and frame exporter).
+	//FRAME is the time between two presented frames, so it includes everything else the loop did
+	public static final int TRANSFORM = 0;
+	public static final int QUEUE = 1;
+	public static final int SORT = 2;
+	public static final int RASTER = 3;
+	public static final int PRESENT = 4;
+	public static final int FRAME = 5;
+	public static final int STAGE_COUNT = 6;
+	
+	private static final String[] STAGE_NAMES = new String[]{"transform", "queue", "sort", "raster", "present", "frame"};
+	
+	//Timings of every recorded frame, in nanoseconds, by stage
+	private final Histogram[] stages = new Histogram[STAGE_COUNT];
+	
+	//Timings of the last recorded frame, in nanoseconds, by stage
+	private final long[] lastNanos = new long[STAGE_COUNT];
+	
+	//Face counters of the last frame, and of all recorded frames
+	private int lastSubmitted, lastCulled, lastDrawn;
+	private long totalSubmitted, totalCulled, totalDrawn;
+	
+	private long frameCount = 0;
+	
+	public FrameStats(){
+		for (var i = 0; i < STAGE_COUNT; i++){
+			stages[i] = new Histogram();
+		}
+	}
+	
+	//Records one frame. A negative frame time means there was no previous frame to measure from, and is skipped
+	synchronized void record(long[] stageNanos, long frameNanos, int submitted, int culled, int drawn){
+		for (var i = 0; i < FRAME; i++){
+			stages[i].record(stageNanos[i]);
+			lastNanos[i] = stageNanos[i];
+		}
+		if (frameNanos >= 0){
+			stages[FRAME].record(frameNanos);
+			lastNanos[FRAME] = frameNanos;
+		}
+		lastSubmitted = submitted;
+		lastCulled = culled;
+		lastDrawn = drawn;
+		totalSubmitted += submitted;
+		totalCulled += culled;
+		totalDrawn += drawn;
+		frameCount++;
+	}
+	
+	//Forgets every recorded frame
+	public synchronized void reset(){
+		for (var i = 0; i < STAGE_COUNT; i++){
+			stages[i].reset();
+			lastNanos[i] = 0;
+		}
+		lastSubmitted = lastCulled = lastDrawn = 0;
+		totalSubmitted = totalCulled = totalDrawn = 0;
+		frameCount = 0;
+	}
+	
+	public static String getStageName(int stage){
+		return STAGE_NAMES[stage];
+	}
+	
+	public synchronized long getFrameCount(){
+		return frameCount;
+	}
+	
+	//Gets the time of a stage at a percentile (0 to 100) of all recorded frames, in nanoseconds
+	public synchronized long getPercentileNanos(int stage, double percentile){
+		return stages[stage].getValueAtPercentile(percentile);
+	}
+	
+	public synchronized double getMeanNanos(int stage){
+		return stages[stage].getMean();
+	}
+	
+	public synchronized long getMaxNanos(int stage){
+		return stages[stage].getMax();
+	}
+	
+	//Gets the time of a stage in the last recorded frame, in nanoseconds
+	public synchronized long getLastNanos(int stage){
+		return lastNanos[stage];
+	}
+	
+	//Gets a copy of the histogram of a stage, for further analysis
+	public synchronized Histogram getHistogram(int stage){
+		return new Histogram(stages[stage]);
+	}
+	
+	//Faces handed to the canvas in the last frame, by shapes and registered meshes
+	public synchronized int getLastSubmitted(){
+		return lastSubmitted;
+	}
+	
+	//Faces dropped before rasterizing in the last frame, because they were clipped
+	public synchronized int getLastCulled(){
+		return lastCulled;
+	}
+	
+	//Faces rasterized in the last frame
+	public synchronized int getLastDrawn(){
+		return lastDrawn;
+	}
+	
+	public synchronized long getTotalSubmitted(){
+		return totalSubmitted;
+	}
+	
+	public synchronized long getTotalCulled(){
+		return totalCulled;
+	}
+	
+	public synchronized long getTotalDrawn(){
+		return totalDrawn;
+	}
+	
+	//Summary of all recorded frames, one line per stage, with times in milliseconds
+	@Override
+	public synchronized String toString(){
+		StringBuilder builder = new StringBuilder();
+		builder.append("frames: ").append(frameCount)
+				.append(", faces submitted/culled/drawn (last frame): ")
+				.append(lastSubmitted).append('/').append(lastCulled).append('/').append(lastDrawn);
+		for (var i = 0; i < STAGE_COUNT; i++){
+			builder.append(String.format("%n%-9s mean %8.3f  p50 %8.3f  p99 %8.3f  max %8.3f ms", STAGE_NAMES[i],
+					stages[i].getMean() / 1e6, stages[i].getValueAtPercentile(50) / 1e6,
+					stages[i].getValueAtPercentile(99) / 1e6, stages[i].getMax() / 1e6));
+		}
+		return builder.toString();
+	}
+}
@@ -0,0 +1,154 @@
+package ThreeDimensionalComponents;
+
+//View frustum in view space, built from the same projection the transform stage uses: the camera sits at the origin
+//looking down -z, and a point lands on screen when x * FOV / -z + centerX is within the width (same for y).
+//There is no far plane. Used to skip whole meshes before any of their points are transformed, and, in world space,
+//whole branches of the scene's bounding volume hierarchy
+final class Frustum {
+	
+	//Plane count: near, left, right, top, bottom
+	private static final int PLANES = 5;
+	
+	//Planes as a * x + b * y + c * z + d, normalized, with points inside the frustum on the positive side
+	private final double[] a = new double[PLANES];
+	private final double[] b = new double[PLANES];
+	private final double[] c = new double[PLANES];
+	private final double[] d = new double[PLANES];
+	
+	//The same planes in world space, for the view matrix last passed to "setView"
+	private final double[] worldA = new double[PLANES];
+	private final double[] worldB = new double[PLANES];
+	private final double[] worldC = new double[PLANES];
+	private final double[] worldD = new double[PLANES];
+	
+	//Scratch space for box corners
+	private final double[] cornerX = new double[8];
+	private final double[] cornerY = new double[8];
+	private final double[] cornerZ = new double[8];
+	
+	//Sets up the planes for a projection and screen size. "near" is the distance of the near plane
+	void set(double FOV, int centerX, int centerY, int width, int height, double near){
+		setPlane(0, 0, 0, -1, -near);
+		setPlane(1, FOV, 0, -centerX, 0);
+		setPlane(2, -FOV, 0, -(width - centerX), 0);
+		setPlane(3, 0, FOV, -centerY, 0);
+		setPlane(4, 0, -FOV, -(height - centerY), 0);
+	}
+	
+	//Moves the planes into world space. A point p is inside a view-space plane if plane . (view * p) >= 0, so the
+	//world-space plane is the view-space plane times the view matrix
+	void setView(Matrix4 view){
+		final double[] m = view.m;
+		for (var i = 0; i < PLANES; i++){
+			worldA[i] = a[i] * m[0] + b[i] * m[4] + c[i] * m[8];
+			worldB[i] = a[i] * m[1] + b[i] * m[5] + c[i] * m[9];
+			worldC[i] = a[i] * m[2] + b[i] * m[6] + c[i] * m[10];
+			worldD[i] = a[i] * m[3] + b[i] * m[7] + c[i] * m[11] + d[i];
+		}
+	}
+	
+	private void setPlane(int plane, double a, double b, double c, double d){
+		double length = Math.sqrt(a * a + b * b + c * c);
+		this.a[plane] = a / length;
+		this.b[plane] = b / length;
+		this.c[plane] = c / length;
+		this.d[plane] = d / length;
+	}
+	
+	//Returns if a sphere (in view space) is entirely outside the frustum
+	boolean isSphereOutside(double x, double y, double z, double radius){
+		for (var i = 0; i < PLANES; i++){
+			if (a[i] * x + b[i] * y + c[i] * z + d[i] < -radius){
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	//Returns if a sphere (in view space) is entirely inside the frustum
+	boolean isSphereInside(double x, double y, double z, double radius){
+		for (var i = 0; i < PLANES; i++){
+			if (a[i] * x + b[i] * y + c[i] * z + d[i] < radius){
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	//Returns if a world-space axis-aligned box is entirely outside the frustum, by testing the corner furthest along
+	//every plane's normal
+	boolean isBoxOutside(double minX, double minY, double minZ, double maxX, double maxY, double maxZ){
+		for (var i = 0; i < PLANES; i++){
+			double x = worldA[i] > 0 ? maxX : minX;
+			double y = worldB[i] > 0 ? maxY : minY;
+			double z = worldC[i] > 0 ? maxZ : minZ;
+			if (worldA[i] * x + worldB[i] * y + worldC[i] * z + worldD[i] < 0){
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	//Returns if a world-space axis-aligned box is entirely inside the frustum, by testing the corner furthest against
+	//every plane's normal
+	boolean isBoxInside(double minX, double minY, double minZ, double maxX, double maxY, double maxZ){
+		for (var i = 0; i < PLANES; i++){
+			double x = worldA[i] > 0 ? minX : maxX;
+			double y = worldB[i] > 0 ? minY : maxY;
+			double z = worldC[i] > 0 ? minZ : maxZ;
+			if (worldA[i] * x + worldB[i] * y + worldC[i] * z + worldD[i] < 0){
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	//Returns if a mesh is entirely outside the frustum, once placed by the given model-view matrix. The bounding
+	//sphere is tried first; if it crosses a plane, the mesh's bounding box is tested corner by corner, which is much
+	//tighter for long or flat meshes
+	boolean isOutside(Mesh mesh, Matrix4 modelView){
+		return isOutside(mesh.getCenterX(), mesh.getCenterY(), mesh.getCenterZ(), mesh.getRadius(),
+				mesh.getMinX(), mesh.getMinY(), mesh.getMinZ(), mesh.getMaxX(), mesh.getMaxY(), mesh.getMaxZ(), modelView);
+	}
+	
+	boolean isOutside(OffHeapMesh mesh, Matrix4 modelView){
+		return isOutside(mesh.getCenterX(), mesh.getCenterY(), mesh.getCenterZ(), mesh.getRadius(),
+				mesh.getMinX(), mesh.getMinY(), mesh.getMinZ(), mesh.getMaxX(), mesh.getMaxY(), mesh.getMaxZ(), modelView);
+	}
+	
+	//Same test, from local-space bounds
+	private boolean isOutside(double centerX, double centerY, double centerZ, double radius,
+	                          double minX, double minY, double minZ, double maxX, double maxY, double maxZ,
+	                          Matrix4 modelView){
+		final double x = modelView.transformX(centerX, centerY, centerZ);
+		final double y = modelView.transformY(centerX, centerY, centerZ);
+		final double z = modelView.transformZ(centerX, centerY, centerZ);
+		if (isSphereOutside(x, y, z, radius)){
+			return true;
+		}
+		if (isSphereInside(x, y, z, radius)){
+			return false;
+		}
+		
+		for (var i = 0; i < 8; i++){
+			double cornerX = (i & 1) == 0 ? minX : maxX;
+			double cornerY = (i & 2) == 0 ? minY : maxY;
+			double cornerZ = (i & 4) == 0 ? minZ : maxZ;
+			this.cornerX[i] = modelView.transformX(cornerX, cornerY, cornerZ);
+			this.cornerY[i] = modelView.transformY(cornerX, cornerY, cornerZ);
+			this.cornerZ[i] = modelView.transformZ(cornerX, cornerY, cornerZ);
+		}
+		for (var i = 0; i < PLANES; i++){
+			int outside = 0;
+			for (var j = 0; j < 8; j++){
+				if (a[i] * cornerX[j] + b[i] * cornerY[j] + c[i] * cornerZ[j] + d[i] < 0){
+					outside++;
+				}
+			}
+			if (outside == 8){
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -4,9 +4,33 @@ public final class Globals {
 	public static class Camera {
 		
 		//PURPOSE OF STRICTCLIP:
-		//If any points pass behind the camera, they cause the entire shape
-		//they are attached to not be rendered
-		public static final boolean strictClip = true;
+		//If any points pass behind the near plane, they cause the entire shape
+		//they are attached to not be rendered. If false, shapes are clipped
+		//at the near plane instead
+		public static final boolean strictClip = false;
+		
+		//PURPOSE OF NEARPLANE:
+		//Distance in front of the camera that points have to be at to be drawn
+		public static final double nearPlane = 10;
+		
+		//PURPOSE OF BODYRADIUS, BODYHALFHEIGHT AND EYEHEIGHT:
+		//The camera collides as an upright capsule this wide and twice this tall,
+		//with the eye this far above the capsule's center
+		public static final double bodyRadius = 250;
+		public static final double bodyHalfHeight = 800;
+		public static final double eyeHeight = 700;
+	}
+	public static class Physics {
+		
+		//PURPOSE OF CELLSIZE:
+		//Size of the cubes the collision grid divides space into. Best
+		//around the size of the things the camera collides with
+		public static final double cellSize = 2000;
+		
+		//PURPOSE OF FLOORY:
+		//Height of a floor under the whole world, so the camera never falls
+		//forever once it walks off the colliders
+		public static final double floorY = -2000;
 	}
 	public static class Numbers {
 		
@@ -0,0 +1,46 @@
+package ThreeDimensionalComponents;
+
+import java.awt.*;
+
+//Default backend: painter's algorithm through Graphics2D. Faces are sorted by average z and drawn back to front,
+//which can result in undesirable clipping, but works with any render target
+public class Graphics2DRasterizer extends Rasterizer {
+	
+	//Point storage, reused for every face
+	private int[] xPoints = new int[16];
+	private int[] yPoints = new int[16];
+	
+	//Colors, cached by packed value
+	private final ColorCache colors = new ColorCache();
+	
+	//Faces are recorded here first, so faces sharing colors are drawn in one call
+	private final DrawCommands commands = new DrawCommands();
+	
+	@Override
+	boolean needsSortedFaces() {
+		return true;
+	}
+	
+	@Override
+	int drawFaces(RenderTarget target, DrawQueue queue, int[] order) {
+		final Graphics2D Graphics = target.getGraphics();
+		commands.clear();
+		int drawn = 0;
+		for (var i = 0; i < queue.faceCount; i++){
+			int face = order[i];
+			//Draws face if Average Z index is in front of camera
+			if (queue.faceZ[face] < 0) {
+				final int size = queue.faceSize[face];
+				if (xPoints.length < size){
+					xPoints = new int[size * 2];
+					yPoints = new int[size * 2];
+				}
+				queue.getPolygon(face, xPoints, yPoints);
+				commands.addPolygon(xPoints, yPoints, size, queue.faceColors[face], queue.lineColors[face]);
+				drawn++;
+			}
+		}
+		commands.draw(Graphics, colors);
+		return drawn;
+	}
+}
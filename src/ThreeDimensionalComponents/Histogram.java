@@ -0,0 +1,131 @@
+package ThreeDimensionalComponents;
+
+import java.util.Arrays;
+
+//Fixed-size percentile histogram for non-negative long values (usually nanoseconds), in the style of an HDR
+//histogram: small values get one bucket each, and every power of two above that is split into the same number of
+//linear sub-buckets. Recorded values are kept within 1/64 (about 1.6%) of their real value across the whole long
+//range, recording is a few shifts and an increment, and nothing is allocated after construction.
+//Not thread-safe on its own; FrameStats guards its histograms
+public final class Histogram {
+	
+	//Sub-buckets per power of two are 2^SUB_BITS. Values below 2^(SUB_BITS + 1) get a bucket each
+	private static final int SUB_BITS = 6;
+	private static final int HALF = 1 << SUB_BITS;
+	private static final int LINEAR = HALF << 1;
+	
+	//Enough buckets for every power of two up to Long.MAX_VALUE
+	private static final int BUCKET_COUNT = LINEAR + (63 - SUB_BITS - 1) * HALF;
+	
+	private final long[] counts = new long[BUCKET_COUNT];
+	private long count = 0;
+	private long min = Long.MAX_VALUE;
+	private long max = 0;
+	private double sum = 0;
+	
+	public Histogram(){
+	
+	}
+	
+	//Copy constructor
+	public Histogram(Histogram other){
+		add(other);
+	}
+	
+	//Records one value. Negative values are recorded as 0
+	public void record(long value){
+		if (value < 0){
+			value = 0;
+		}
+		counts[bucketIndex(value)]++;
+		count++;
+		sum += value;
+		min = Math.min(min, value);
+		max = Math.max(max, value);
+	}
+	
+	//Adds every value recorded by another histogram to this one
+	public void add(Histogram other){
+		for (var i = 0; i < BUCKET_COUNT; i++){
+			counts[i] += other.counts[i];
+		}
+		count += other.count;
+		sum += other.sum;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+	}
+	
+	public void reset(){
+		Arrays.fill(counts, 0);
+		count = 0;
+		min = Long.MAX_VALUE;
+		max = 0;
+		sum = 0;
+	}
+	
+	public long getCount(){
+		return count;
+	}
+	
+	//Exact smallest recorded value, or 0 if nothing was recorded
+	public long getMin(){
+		return count == 0 ? 0 : min;
+	}
+	
+	//Exact largest recorded value, or 0 if nothing was recorded
+	public long getMax(){
+		return max;
+	}
+	
+	//Exact mean of the recorded values, or 0 if nothing was recorded
+	public double getMean(){
+		return count == 0 ? 0 : sum / count;
+	}
+	
+	//Gets the value at a percentile (0 to 100), or 0 if nothing was recorded. The result is the upper end of the
+	//bucket holding that percentile, but never more than the largest recorded value
+	public long getValueAtPercentile(double percentile){
+		if (count == 0){
+			return 0;
+		}
+		if (!(percentile >= 0 && percentile <= 100)){
+			throw new Error("Percentile must be between 0 and 100");
+		}
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+		long seen = 0;
+		for (var i = 0; i < BUCKET_COUNT; i++){
+			seen += counts[i];
+			if (seen >= rank){
+				return Math.min(highestValue(i), max);
+			}
+		}
+		return max;
+	}
+	
+	//Maps a value to its bucket
+	static int bucketIndex(long value){
+		if (value < LINEAR){
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int shift = exponent - SUB_BITS;
+		return LINEAR + (shift - 1) * HALF + (int) (value >>> shift) - HALF;
+	}
+	
+	//Smallest value that maps to a bucket
+	static long lowestValue(int index){
+		if (index < LINEAR){
+			return index;
+		}
+		int offset = index - LINEAR;
+		return (long) (HALF + offset % HALF) << (offset / HALF + 1);
+	}
+	
+	//Largest value that maps to a bucket
+	static long highestValue(int index){
+		if (index == BUCKET_COUNT - 1){
+			return Long.MAX_VALUE;
+		}
+		return lowestValue(index + 1) - 1;
+	}
+}
@@ -0,0 +1,77 @@
+package ThreeDimensionalComponents;
+
+import java.awt.event.KeyEvent;
+
+//Immutable snapshot of the keyboard and mouse. Input listeners publish a new snapshot for every change, and the
+//render thread reads whichever one is latest, so neither side ever waits on the other
+public final class InputState {
+	
+	//Keys tracked by the default loop, by index: UP, RIGHT, DOWN, LEFT, SPACE
+	private static final int[] KEY_CODES = new int[]{KeyEvent.VK_UP, KeyEvent.VK_RIGHT, KeyEvent.VK_DOWN, KeyEvent.VK_LEFT, KeyEvent.VK_SPACE};
+	
+	//Nothing pressed, mouse never moved
+	static final InputState INITIAL = new InputState(0, -1, -1);
+	
+	//Keybind Booleans, one bit per key index
+	private final int keys;
+	
+	//Mouse Position, -1 until the mouse has moved
+	private final double mouseX;
+	private final double mouseY;
+	
+	private InputState(int keys, double mouseX, double mouseY){
+		this.keys = keys;
+		this.mouseX = mouseX;
+		this.mouseY = mouseY;
+	}
+	
+	//Gets the key index of a key code, or -1 if the key is not tracked
+	static int keyIndex(int keyCode){
+		for (var i = 0; i < KEY_CODES.length; i++){
+			if (KEY_CODES[i] == keyCode){
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	//Returns a snapshot with a key changed, or this snapshot if nothing changed
+	InputState withKey(int keyIndex, boolean down){
+		int changed = down ? keys | (1 << keyIndex) : keys & ~(1 << keyIndex);
+		return changed == keys ? this : new InputState(changed, mouseX, mouseY);
+	}
+	
+	//Returns a snapshot with the mouse moved, or this snapshot if nothing changed
+	InputState withMouse(double mouseX, double mouseY){
+		if (mouseX == this.mouseX && mouseY == this.mouseY){
+			return this;
+		}
+		return new InputState(keys, mouseX, mouseY);
+	}
+	
+	//Whether the key with the given index (UP, RIGHT, DOWN, LEFT, SPACE) is down
+	public boolean isKeyDown(int keyIndex){
+		return (keys & (1 << keyIndex)) != 0;
+	}
+	
+	//Copy of all key states, by index
+	public boolean[] getKeyValues(){
+		boolean[] values = new boolean[KEY_CODES.length];
+		for (var i = 0; i < values.length; i++){
+			values[i] = isKeyDown(i);
+		}
+		return values;
+	}
+	
+	public double getMouseX(){
+		return mouseX;
+	}
+	
+	public double getMouseY(){
+		return mouseY;
+	}
+	
+	public boolean hasMouse(){
+		return mouseX != -1 && mouseY != -1;
+	}
+}
@@ -0,0 +1,73 @@
+package ThreeDimensionalComponents;
+
+import org.jetbrains.annotations.NotNull;
+
+//The same shape at several levels of detail, finest first. Registered with "registerMesh(LODMesh, ...)", a mesh
+//switches level every frame from how big it is on screen, so far away meshes cost a handful of faces.
+//Levels are plain meshes, so one LODMesh can be shared by any number of registered meshes
+public final class LODMesh {
+	
+	//Fraction a screen radius has to move past a threshold before the level changes, so a mesh sitting right at a
+	//threshold does not switch back and forth every frame
+	static final double HYSTERESIS = 0.15;
+	
+	private final Mesh[] levels;
+	private final double[] minScreenRadius;
+	private final int maxPointCount;
+	private final int maxFaceCount;
+	
+	//Constructor. Level i is used while the mesh's bounding sphere is at least minScreenRadius[i] pixels in radius on
+	//screen; the last level is used below every threshold. Thresholds have to be decreasing
+	public LODMesh(@NotNull Mesh[] levels, @NotNull double[] minScreenRadius){
+		if (levels.length == 0 || levels.length != minScreenRadius.length){
+			throw new Error("A LODMesh needs AT LEAST one level, and one threshold per level!");
+		}
+		for (var i = 1; i < levels.length; i++){
+			if (minScreenRadius[i] >= minScreenRadius[i - 1]){
+				throw new Error("Level thresholds have to be decreasing!");
+			}
+		}
+		this.levels = levels.clone();
+		this.minScreenRadius = minScreenRadius.clone();
+		
+		int points = 0, faces = 0;
+		for (Mesh level : levels){
+			points = Math.max(points, level.getPointCount());
+			faces = Math.max(faces, level.getFaceCount());
+		}
+		maxPointCount = points;
+		maxFaceCount = faces;
+	}
+	
+	public int getLevelCount(){
+		return levels.length;
+	}
+	
+	public Mesh getLevel(int level){
+		return levels[level];
+	}
+	
+	public double getMinScreenRadius(int level){
+		return minScreenRadius[level];
+	}
+	
+	public int getMaxPointCount(){
+		return maxPointCount;
+	}
+	
+	public int getMaxFaceCount(){
+		return maxFaceCount;
+	}
+	
+	//Picks the level for a screen radius, in pixels, starting from the current level
+	int selectLevel(double screenRadius, int current){
+		int level = current;
+		while (level > 0 && screenRadius >= minScreenRadius[level - 1] * (1 + HYSTERESIS)){
+			level--;
+		}
+		while (level < levels.length - 1 && screenRadius < minScreenRadius[level] * (1 - HYSTERESIS)){
+			level++;
+		}
+		return level;
+	}
+}
@@ -0,0 +1,189 @@
+package ThreeDimensionalComponents;
+
+import static java.lang.Math.*;
+
+//4x4 transformation matrix, stored row-major. Rotations follow the same conventions "processShape" always used, so
+//composing the matrices gives exactly the same result as the old per-axis passes.
+//All operations post-multiply (this = this * operation), so they read in the order they are applied to a point,
+//last to first
+public final class Matrix4 {
+	
+	//Row-major elements, m[row * 4 + column]
+	final double[] m = new double[16];
+	
+	public Matrix4(){
+		setIdentity();
+	}
+	
+	public Matrix4 setIdentity(){
+		for (var i = 0; i < 16; i++){
+			m[i] = (i % 5 == 0) ? 1 : 0;
+		}
+		return this;
+	}
+	
+	public Matrix4 set(Matrix4 other){
+		System.arraycopy(other.m, 0, m, 0, 16);
+		return this;
+	}
+	
+	//Sets this to left * right. Either side may be this matrix
+	public Matrix4 multiply(Matrix4 left, Matrix4 right){
+		final double[] a = left.m;
+		final double[] b = right.m;
+		double r00 = a[0] * b[0] + a[1] * b[4] + a[2] * b[8] + a[3] * b[12];
+		double r01 = a[0] * b[1] + a[1] * b[5] + a[2] * b[9] + a[3] * b[13];
+		double r02 = a[0] * b[2] + a[1] * b[6] + a[2] * b[10] + a[3] * b[14];
+		double r03 = a[0] * b[3] + a[1] * b[7] + a[2] * b[11] + a[3] * b[15];
+		double r10 = a[4] * b[0] + a[5] * b[4] + a[6] * b[8] + a[7] * b[12];
+		double r11 = a[4] * b[1] + a[5] * b[5] + a[6] * b[9] + a[7] * b[13];
+		double r12 = a[4] * b[2] + a[5] * b[6] + a[6] * b[10] + a[7] * b[14];
+		double r13 = a[4] * b[3] + a[5] * b[7] + a[6] * b[11] + a[7] * b[15];
+		double r20 = a[8] * b[0] + a[9] * b[4] + a[10] * b[8] + a[11] * b[12];
+		double r21 = a[8] * b[1] + a[9] * b[5] + a[10] * b[9] + a[11] * b[13];
+		double r22 = a[8] * b[2] + a[9] * b[6] + a[10] * b[10] + a[11] * b[14];
+		double r23 = a[8] * b[3] + a[9] * b[7] + a[10] * b[11] + a[11] * b[15];
+		double r30 = a[12] * b[0] + a[13] * b[4] + a[14] * b[8] + a[15] * b[12];
+		double r31 = a[12] * b[1] + a[13] * b[5] + a[14] * b[9] + a[15] * b[13];
+		double r32 = a[12] * b[2] + a[13] * b[6] + a[14] * b[10] + a[15] * b[14];
+		double r33 = a[12] * b[3] + a[13] * b[7] + a[14] * b[11] + a[15] * b[15];
+		m[0] = r00; m[1] = r01; m[2] = r02; m[3] = r03;
+		m[4] = r10; m[5] = r11; m[6] = r12; m[7] = r13;
+		m[8] = r20; m[9] = r21; m[10] = r22; m[11] = r23;
+		m[12] = r30; m[13] = r31; m[14] = r32; m[15] = r33;
+		return this;
+	}
+	
+	//Applies a translation
+	public Matrix4 translate(double x, double y, double z){
+		for (var row = 0; row < 16; row += 4){
+			m[row + 3] += m[row] * x + m[row + 1] * y + m[row + 2] * z;
+		}
+		return this;
+	}
+	
+	//Applies a scale along each axis
+	public Matrix4 scale(double x, double y, double z){
+		for (var row = 0; row < 16; row += 4){
+			m[row] *= x;
+			m[row + 1] *= y;
+			m[row + 2] *= z;
+		}
+		return this;
+	}
+	
+	//Applies a rotation (in radians) on the x-axis
+	public Matrix4 rotateX(double theta){
+		final double sin = sin(theta), cos = cos(theta);
+		return mixColumns(1, 2, cos, -sin, sin, cos);
+	}
+	
+	//Applies a rotation (in radians) on the y-axis
+	public Matrix4 rotateY(double theta){
+		final double sin = sin(theta), cos = cos(theta);
+		return mixColumns(0, 2, cos, -sin, sin, cos);
+	}
+	
+	//Applies a rotation (in radians) on the z-axis
+	public Matrix4 rotateZ(double theta){
+		final double sin = sin(theta), cos = cos(theta);
+		return mixColumns(0, 1, cos, -sin, sin, cos);
+	}
+	
+	//Applies the camera's x-axis (pitch) rotation. This flips y and z as well, as the camera always has
+	Matrix4 rotateCameraX(double theta){
+		final double sin = sin(theta), cos = cos(theta);
+		return mixColumns(1, 2, -cos, -sin, sin, -cos);
+	}
+	
+	//Applies the camera's y-axis (yaw) rotation. This flips z as well, as the camera always has
+	Matrix4 rotateCameraY(double theta){
+		final double sin = sin(theta), cos = cos(theta);
+		return mixColumns(0, 2, cos, -sin, -sin, -cos);
+	}
+	
+	//Post-multiplies by a matrix that is the identity except for rows/columns a and b, which hold
+	//[aa ab]
+	//[ba bb]
+	private Matrix4 mixColumns(int a, int b, double aa, double ab, double ba, double bb){
+		for (var row = 0; row < 16; row += 4){
+			double columnA = m[row + a];
+			double columnB = m[row + b];
+			m[row + a] = columnA * aa + columnB * ba;
+			m[row + b] = columnA * ab + columnB * bb;
+		}
+		return this;
+	}
+	
+	//Sets this to the inverse of an affine matrix (one whose bottom row is 0, 0, 0, 1). Other may be this matrix
+	public Matrix4 invertAffine(Matrix4 other){
+		final double[] a = other.m;
+		final double c00 = a[5] * a[10] - a[6] * a[9];
+		final double c01 = a[2] * a[9] - a[1] * a[10];
+		final double c02 = a[1] * a[6] - a[2] * a[5];
+		final double c10 = a[6] * a[8] - a[4] * a[10];
+		final double c11 = a[0] * a[10] - a[2] * a[8];
+		final double c12 = a[2] * a[4] - a[0] * a[6];
+		final double c20 = a[4] * a[9] - a[5] * a[8];
+		final double c21 = a[1] * a[8] - a[0] * a[9];
+		final double c22 = a[0] * a[5] - a[1] * a[4];
+		final double determinant = a[0] * c00 + a[1] * c10 + a[2] * c20;
+		if (determinant == 0){
+			throw new Error("Matrix can not be inverted!");
+		}
+		final double inverse = 1 / determinant;
+		final double tX = a[3], tY = a[7], tZ = a[11];
+		m[0] = c00 * inverse; m[1] = c01 * inverse; m[2] = c02 * inverse;
+		m[4] = c10 * inverse; m[5] = c11 * inverse; m[6] = c12 * inverse;
+		m[8] = c20 * inverse; m[9] = c21 * inverse; m[10] = c22 * inverse;
+		m[3] = -(m[0] * tX + m[1] * tY + m[2] * tZ);
+		m[7] = -(m[4] * tX + m[5] * tY + m[6] * tZ);
+		m[11] = -(m[8] * tX + m[9] * tY + m[10] * tZ);
+		m[12] = 0; m[13] = 0; m[14] = 0; m[15] = 1;
+		return this;
+	}
+	
+	//Sets this to left * right, where right is an affine matrix packed as its top three rows, 12 values from "offset"
+	//on. Left may be this matrix
+	Matrix4 multiplyAffine(Matrix4 left, double[] right, int offset){
+		final double[] a = left.m;
+		for (var row = 0; row < 16; row += 4){
+			final double a0 = a[row], a1 = a[row + 1], a2 = a[row + 2], a3 = a[row + 3];
+			for (var column = 0; column < 4; column++){
+				m[row + column] = a0 * right[offset + column] + a1 * right[offset + 4 + column] + a2 * right[offset + 8 + column]
+						+ (column == 3 ? a3 : 0);
+			}
+		}
+		return this;
+	}
+	
+	//Sets this to the model-view matrix of a shape: offset, and rotation (in radians) around the given center,
+	//followed by the view matrix
+	Matrix4 setModelView(Matrix4 view, double centerX, double centerY, double centerZ,
+	                     double offsetX, double offsetY, double offsetZ,
+	                     double thetaX, double thetaY, double thetaZ){
+		return set(view)
+				.translate(centerX + offsetX, centerY + offsetY, centerZ + offsetZ)
+				.rotateZ(thetaZ)
+				.rotateY(thetaY)
+				.rotateX(thetaX)
+				.translate(-centerX, -centerY, -centerZ);
+	}
+	
+	//Transforms a single point, returning one coord
+	public double transformX(double x, double y, double z){
+		return m[0] * x + m[1] * y + m[2] * z + m[3];
+	}
+	
+	public double transformY(double x, double y, double z){
+		return m[4] * x + m[5] * y + m[6] * z + m[7];
+	}
+	
+	public double transformZ(double x, double y, double z){
+		return m[8] * x + m[9] * y + m[10] * z + m[11];
+	}
+	
+	public double get(int row, int column){
+		return m[row * 4 + column];
+	}
+}
@@ -0,0 +1,213 @@
+package ThreeDimensionalComponents;
+
+import org.jetbrains.annotations.NotNull;
+
+//Immutable, pre-validated local-space geometry. Built once and registered with a canvas through
+//"registerMesh(...)", so static geometry never has to be re-checked or re-allocated each frame
+public final class Mesh {
+	
+	//Local-space point coords. Never modified after construction
+	private final double[] x;
+	private final double[] y;
+	private final double[] z;
+	
+	//Faces, flattened. Face i uses faceIndices[faceOffsets[i]] up to (but not including) faceIndices[faceOffsets[i + 1]]
+	private final int[] faceIndices;
+	private final int[] faceOffsets;
+	
+	//Cached average of all points
+	private final double centerX;
+	private final double centerY;
+	private final double centerZ;
+	
+	//Cached axis-aligned bounds
+	private final double minX, minY, minZ;
+	private final double maxX, maxY, maxZ;
+	
+	//Cached distance from the center to the furthest point
+	private final double radius;
+	
+	//Float32 copies of x, y and z, made on first use when the transform kernel works on floats
+	private volatile float[][] floatPoints;
+	
+	//Constructor. Accepts lists of the x, y, and z coords of various points, and a list of shape groups.
+	//All arrays are copied, so the caller is free to reuse them afterwards
+	public Mesh(double[] x, double[] y, double[] z, @NotNull int[][] faceList){
+		this(x.clone(), y.clone(), z.clone(), flattenIndices(faceList), flattenOffsets(faceList));
+	}
+	//Constructor for geometry that is already flattened, such as loaded geometry. The arrays are taken over, not
+	//copied, so the caller must not write to them afterwards
+	Mesh(double[] x, double[] y, double[] z, @NotNull int[] faceIndices, @NotNull int[] faceOffsets){
+		
+		//Checks if point arrays are properly set up
+		if (!(x.length == y.length && y.length == z.length)){
+			throw new Error("Lengths of point arrays do not equal each other!");
+		}
+		if (x.length == 0){
+			throw new Error("A mesh needs AT LEAST one point");
+		}
+		
+		//Checks if faces each reference AT LEAST three existing points by index
+		if (faceOffsets.length == 0 || faceOffsets[0] != 0 || faceOffsets[faceOffsets.length - 1] != faceIndices.length){
+			throw new Error("Face offsets do not cover the face indices!");
+		}
+		for (var i = 0; i < faceOffsets.length - 1; i++){
+			if (faceOffsets[i + 1] - faceOffsets[i] < 3){
+				throw new Error("Not all faces consist of AT LEAST three points defined by index");
+			}
+		}
+		for (var i = 0; i < faceIndices.length; i++){
+			if (faceIndices[i] < 0 || faceIndices[i] >= x.length){
+				throw new Error("One of your faces references a non-existient point!");
+			}
+		}
+		
+		this.x = x;
+		this.y = y;
+		this.z = z;
+		this.faceIndices = faceIndices;
+		this.faceOffsets = faceOffsets;
+		
+		//Computes average of points and bounds
+		double sumX = 0, sumY = 0, sumZ = 0;
+		double lowX = Globals.Numbers.infinity, lowY = Globals.Numbers.infinity, lowZ = Globals.Numbers.infinity;
+		double highX = -Globals.Numbers.infinity, highY = -Globals.Numbers.infinity, highZ = -Globals.Numbers.infinity;
+		for (var i = 0; i < x.length; i++){
+			sumX += x[i];
+			sumY += y[i];
+			sumZ += z[i];
+			lowX = Math.min(lowX, x[i]);
+			lowY = Math.min(lowY, y[i]);
+			lowZ = Math.min(lowZ, z[i]);
+			highX = Math.max(highX, x[i]);
+			highY = Math.max(highY, y[i]);
+			highZ = Math.max(highZ, z[i]);
+		}
+		centerX = sumX / x.length;
+		centerY = sumY / y.length;
+		centerZ = sumZ / z.length;
+		minX = lowX;
+		minY = lowY;
+		minZ = lowZ;
+		maxX = highX;
+		maxY = highY;
+		maxZ = highZ;
+		
+		//Computes bounding sphere radius around the center
+		double furthest = 0;
+		for (var i = 0; i < x.length; i++){
+			double dX = x[i] - centerX;
+			double dY = y[i] - centerY;
+			double dZ = z[i] - centerZ;
+			furthest = Math.max(furthest, dX * dX + dY * dY + dZ * dZ);
+		}
+		radius = Math.sqrt(furthest);
+	}
+	
+	//Flattens faces into one index array
+	private static int[] flattenIndices(@NotNull int[][] faceList){
+		int indexCount = 0;
+		for (var i = 0; i < faceList.length; i++){
+			indexCount += faceList[i].length;
+		}
+		final int[] faceIndices = new int[indexCount];
+		int offset = 0;
+		for (var i = 0; i < faceList.length; i++){
+			System.arraycopy(faceList[i], 0, faceIndices, offset, faceList[i].length);
+			offset += faceList[i].length;
+		}
+		return faceIndices;
+	}
+	
+	private static int[] flattenOffsets(@NotNull int[][] faceList){
+		final int[] faceOffsets = new int[faceList.length + 1];
+		for (var i = 0; i < faceList.length; i++){
+			faceOffsets[i + 1] = faceOffsets[i] + faceList[i].length;
+		}
+		return faceOffsets;
+	}
+	
+	public int getPointCount(){
+		return x.length;
+	}
+	
+	public int getFaceCount(){
+		return faceOffsets.length - 1;
+	}
+	
+	public double getCenterX(){
+		return centerX;
+	}
+	
+	public double getCenterY(){
+		return centerY;
+	}
+	
+	public double getCenterZ(){
+		return centerZ;
+	}
+	
+	public double getMinX(){
+		return minX;
+	}
+	
+	public double getMinY(){
+		return minY;
+	}
+	
+	public double getMinZ(){
+		return minZ;
+	}
+	
+	public double getMaxX(){
+		return maxX;
+	}
+	
+	public double getMaxY(){
+		return maxY;
+	}
+	
+	public double getMaxZ(){
+		return maxZ;
+	}
+	
+	public double getRadius(){
+		return radius;
+	}
+	
+	//Internal accessors. The arrays are shared, not copied, so they must never be written to
+	double[] getX(){
+		return x;
+	}
+	
+	double[] getY(){
+		return y;
+	}
+	
+	double[] getZ(){
+		return z;
+	}
+	
+	//Float32 copies of the point coords, as {x, y, z}. Threads racing to make them each make equal copies
+	float[][] getFloatPoints(){
+		float[][] points = floatPoints;
+		if (points == null){
+			points = new float[3][x.length];
+			for (var i = 0; i < x.length; i++){
+				points[0][i] = (float) x[i];
+				points[1][i] = (float) y[i];
+				points[2][i] = (float) z[i];
+			}
+			floatPoints = points;
+		}
+		return points;
+	}
+	
+	int[] getFaceIndices(){
+		return faceIndices;
+	}
+	
+	int[] getFaceOffsets(){
+		return faceOffsets;
+	}
+}
@@ -0,0 +1,439 @@
+package ThreeDimensionalComponents;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//Bounding volume hierarchy over registered meshes, in world space. Every mesh is bounded by the box around its
+//bounding sphere, which does not change when the mesh rotates, so only offset changes have to touch the tree.
+//Moving a mesh refits its leaf and the nodes above it in O(log n). Adding a mesh puts it on a short pending list,
+//which queries search linearly, and removing one leaves an empty leaf behind; the tree is only rebuilt once enough
+//of those have piled up, so frustum, ray and radius queries stay sublinear in the number of meshes
+final class MeshBVH {
+	
+	//Pending meshes are searched linearly until there are more than this many, or more than an eighth of the tree
+	private static final int MAX_PENDING = 64;
+	
+	//Meshes in the tree, by item index, in registration order. Removed meshes leave a null behind
+	private MeshHandle[] items = new MeshHandle[0];
+	private int itemCount = 0;
+	private int removedCount = 0;
+	
+	//Bounding sphere centers of the items, as of the last rebuild. Only used to split nodes
+	private double[] centerX = new double[0];
+	private double[] centerY = new double[0];
+	private double[] centerZ = new double[0];
+	
+	//Meshes added since the last rebuild
+	private final ArrayList<MeshHandle> pending = new ArrayList<>();
+	
+	//Leaf refits since the last rebuild. Refits keep the tree correct, but loosen it over time
+	private int refitCount = 0;
+	
+	//Node bounds. Empty nodes have min > max
+	private double[] minX = new double[0], minY = new double[0], minZ = new double[0];
+	private double[] maxX = new double[0], maxY = new double[0], maxZ = new double[0];
+	
+	//Node links. Leaves have no children (-1), and hold one item
+	private int[] left = new int[0];
+	private int[] right = new int[0];
+	private int[] parent = new int[0];
+	private int[] item = new int[0];
+	private int nodeCount = 0;
+	private int root = -1;
+	
+	//Item indices, reordered while building
+	private int[] order = new int[0];
+	
+	//Traversal stack, reused by every query
+	private int[] stack = new int[64];
+	
+	//Adds a mesh. It is searched linearly until the next rebuild
+	void add(MeshHandle handle){
+		handle.treeItem = -1;
+		handle.treeLeaf = -1;
+		pending.add(handle);
+	}
+	
+	//Removes a mesh. Its leaf stays in the tree, empty, until the next rebuild
+	void remove(MeshHandle handle){
+		if (handle.treeItem < 0){
+			pending.remove(handle);
+			return;
+		}
+		items[handle.treeItem] = null;
+		setEmpty(handle.treeLeaf);
+		refitAbove(handle.treeLeaf);
+		removedCount++;
+		handle.treeItem = -1;
+		handle.treeLeaf = -1;
+	}
+	
+	//Updates the bounds of a mesh whose offset changed
+	void moved(MeshHandle handle){
+		if (handle.treeItem < 0){
+			return;
+		}
+		setBounds(handle.treeLeaf, handle);
+		refitAbove(handle.treeLeaf);
+		refitCount++;
+	}
+	
+	//Rebuilds the tree if too many meshes were added, removed or moved since the last rebuild. Called before queries
+	void update(){
+		final int live = itemCount - removedCount;
+		if (pending.size() > Math.max(MAX_PENDING, live / 8) || removedCount > live / 4 || refitCount > live * 2 + MAX_PENDING){
+			rebuild();
+		}
+	}
+	
+	int size(){
+		return itemCount - removedCount + pending.size();
+	}
+	
+	//Builds the tree from scratch, out of every live and pending mesh, keeping registration order
+	void rebuild(){
+		final int count = itemCount - removedCount + pending.size();
+		if (items.length < count){
+			int size = Math.max(count, items.length * 2);
+			MeshHandle[] grown = new MeshHandle[size];
+			System.arraycopy(items, 0, grown, 0, itemCount);
+			items = grown;
+			centerX = new double[size];
+			centerY = new double[size];
+			centerZ = new double[size];
+			order = new int[size];
+		}
+		
+		//Compacts the live items, then appends the pending ones
+		int live = 0;
+		for (var i = 0; i < itemCount; i++){
+			if (items[i] != null){
+				items[live++] = items[i];
+			}
+		}
+		for (var i = 0; i < pending.size(); i++){
+			items[live++] = pending.get(i);
+		}
+		for (var i = live; i < itemCount; i++){
+			items[i] = null;
+		}
+		pending.clear();
+		itemCount = count;
+		removedCount = 0;
+		refitCount = 0;
+		
+		for (var i = 0; i < count; i++){
+			MeshHandle handle = items[i];
+			handle.treeItem = i;
+			centerX[i] = handle.getMesh().getCenterX() + handle.getOffsetX();
+			centerY[i] = handle.getMesh().getCenterY() + handle.getOffsetY();
+			centerZ[i] = handle.getMesh().getCenterZ() + handle.getOffsetZ();
+			order[i] = i;
+		}
+		
+		//A binary tree with one item per leaf has 2n - 1 nodes
+		final int nodes = Math.max(0, count * 2 - 1);
+		if (left.length < nodes){
+			int size = Math.max(nodes, left.length * 2);
+			minX = new double[size];
+			minY = new double[size];
+			minZ = new double[size];
+			maxX = new double[size];
+			maxY = new double[size];
+			maxZ = new double[size];
+			left = new int[size];
+			right = new int[size];
+			parent = new int[size];
+			item = new int[size];
+		}
+		nodeCount = 0;
+		root = count == 0 ? -1 : build(0, count, -1);
+	}
+	
+	//Builds the subtree over order[from] up to (but not including) order[to], splitting at the median center along
+	//the widest axis. Returns the subtree's node
+	private int build(int from, int to, int parentNode){
+		final int node = nodeCount++;
+		parent[node] = parentNode;
+		if (to - from == 1){
+			left[node] = -1;
+			right[node] = -1;
+			item[node] = order[from];
+			items[order[from]].treeLeaf = node;
+			setBounds(node, items[order[from]]);
+			return node;
+		}
+		
+		double lowX = Globals.Numbers.infinity, lowY = Globals.Numbers.infinity, lowZ = Globals.Numbers.infinity;
+		double highX = -Globals.Numbers.infinity, highY = -Globals.Numbers.infinity, highZ = -Globals.Numbers.infinity;
+		for (var i = from; i < to; i++){
+			int index = order[i];
+			lowX = Math.min(lowX, centerX[index]);
+			lowY = Math.min(lowY, centerY[index]);
+			lowZ = Math.min(lowZ, centerZ[index]);
+			highX = Math.max(highX, centerX[index]);
+			highY = Math.max(highY, centerY[index]);
+			highZ = Math.max(highZ, centerZ[index]);
+		}
+		final double[] keys;
+		if (highX - lowX >= highY - lowY && highX - lowX >= highZ - lowZ){
+			keys = centerX;
+		} else if (highY - lowY >= highZ - lowZ){
+			keys = centerY;
+		} else {
+			keys = centerZ;
+		}
+		
+		final int middle = (from + to) >>> 1;
+		select(keys, from, to, middle);
+		item[node] = -1;
+		left[node] = build(from, middle, node);
+		right[node] = build(middle, to, node);
+		union(node);
+		return node;
+	}
+	
+	//Partially sorts order[from] up to order[to] by key, so that order[k] is in its sorted place, with nothing
+	//greater before it and nothing smaller after it
+	private void select(double[] keys, int from, int to, int k){
+		int low = from;
+		int high = to - 1;
+		while (high > low){
+			double pivot = keys[order[(low + high) >>> 1]];
+			int i = low;
+			int j = high;
+			while (i <= j){
+				while (keys[order[i]] < pivot){
+					i++;
+				}
+				while (keys[order[j]] > pivot){
+					j--;
+				}
+				if (i <= j){
+					int temp = order[i];
+					order[i] = order[j];
+					order[j] = temp;
+					i++;
+					j--;
+				}
+			}
+			if (k <= j){
+				high = j;
+			} else if (k >= i){
+				low = i;
+			} else {
+				return;
+			}
+		}
+	}
+	
+	//Sets a leaf's bounds to the box around its mesh's bounding sphere
+	private void setBounds(int node, MeshHandle handle){
+		final Mesh mesh = handle.getMesh();
+		final double x = mesh.getCenterX() + handle.getOffsetX();
+		final double y = mesh.getCenterY() + handle.getOffsetY();
+		final double z = mesh.getCenterZ() + handle.getOffsetZ();
+		final double radius = mesh.getRadius();
+		minX[node] = x - radius;
+		minY[node] = y - radius;
+		minZ[node] = z - radius;
+		maxX[node] = x + radius;
+		maxY[node] = y + radius;
+		maxZ[node] = z + radius;
+	}
+	
+	private void setEmpty(int node){
+		minX[node] = minY[node] = minZ[node] = Globals.Numbers.infinity;
+		maxX[node] = maxY[node] = maxZ[node] = -Globals.Numbers.infinity;
+	}
+	
+	//Sets an inner node's bounds to the union of its children
+	private void union(int node){
+		final int a = left[node];
+		final int b = right[node];
+		minX[node] = Math.min(minX[a], minX[b]);
+		minY[node] = Math.min(minY[a], minY[b]);
+		minZ[node] = Math.min(minZ[a], minZ[b]);
+		maxX[node] = Math.max(maxX[a], maxX[b]);
+		maxY[node] = Math.max(maxY[a], maxY[b]);
+		maxZ[node] = Math.max(maxZ[a], maxZ[b]);
+	}
+	
+	//Refits every node above a leaf
+	private void refitAbove(int node){
+		for (var current = parent[node]; current >= 0; current = parent[current]){
+			union(current);
+		}
+	}
+	
+	private boolean isEmpty(int node){
+		return minX[node] > maxX[node];
+	}
+	
+	//Pushes a node on the traversal stack, growing it if needed
+	private int push(int top, int node){
+		if (top == stack.length){
+			int[] grown = new int[stack.length * 2];
+			System.arraycopy(stack, 0, grown, 0, top);
+			stack = grown;
+		}
+		stack[top] = node;
+		return top + 1;
+	}
+	
+	//Adds every mesh whose bounds are not entirely outside the frustum. The frustum must have been moved into world
+	//space with "setView". Subtrees entirely inside the frustum are added without testing them any further
+	void queryFrustum(Frustum frustum, List<MeshHandle> result){
+		int top = 0;
+		if (root >= 0){
+			top = push(top, root);
+		}
+		while (top > 0){
+			int node = stack[--top];
+			
+			//Nodes known to be inside are pushed inverted
+			boolean inside = node < 0;
+			if (inside){
+				node = ~node;
+			} else {
+				if (isEmpty(node) || frustum.isBoxOutside(minX[node], minY[node], minZ[node], maxX[node], maxY[node], maxZ[node])){
+					continue;
+				}
+				inside = frustum.isBoxInside(minX[node], minY[node], minZ[node], maxX[node], maxY[node], maxZ[node]);
+			}
+			if (left[node] < 0){
+				if (items[item[node]] != null){
+					result.add(items[item[node]]);
+				}
+				continue;
+			}
+			top = push(top, inside ? ~left[node] : left[node]);
+			top = push(top, inside ? ~right[node] : right[node]);
+		}
+		
+		for (var i = 0; i < pending.size(); i++){
+			MeshHandle handle = pending.get(i);
+			final Mesh mesh = handle.getMesh();
+			final double x = mesh.getCenterX() + handle.getOffsetX();
+			final double y = mesh.getCenterY() + handle.getOffsetY();
+			final double z = mesh.getCenterZ() + handle.getOffsetZ();
+			final double radius = mesh.getRadius();
+			if (!frustum.isBoxOutside(x - radius, y - radius, z - radius, x + radius, y + radius, z + radius)){
+				result.add(handle);
+			}
+		}
+	}
+	
+	//Adds every mesh whose bounding sphere is within "radius" of a world-space point
+	void queryRadius(double x, double y, double z, double radius, List<MeshHandle> result){
+		int top = 0;
+		if (root >= 0){
+			top = push(top, root);
+		}
+		while (top > 0){
+			int node = stack[--top];
+			if (isEmpty(node)){
+				continue;
+			}
+			//Distance from the point to the box
+			double dX = Math.max(0, Math.max(minX[node] - x, x - maxX[node]));
+			double dY = Math.max(0, Math.max(minY[node] - y, y - maxY[node]));
+			double dZ = Math.max(0, Math.max(minZ[node] - z, z - maxZ[node]));
+			if (dX * dX + dY * dY + dZ * dZ > radius * radius){
+				continue;
+			}
+			if (left[node] < 0){
+				MeshHandle handle = items[item[node]];
+				if (handle != null && isWithin(handle, x, y, z, radius)){
+					result.add(handle);
+				}
+				continue;
+			}
+			top = push(top, left[node]);
+			top = push(top, right[node]);
+		}
+		
+		for (var i = 0; i < pending.size(); i++){
+			if (isWithin(pending.get(i), x, y, z, radius)){
+				result.add(pending.get(i));
+			}
+		}
+	}
+	
+	private static boolean isWithin(MeshHandle handle, double x, double y, double z, double radius){
+		final Mesh mesh = handle.getMesh();
+		double dX = mesh.getCenterX() + handle.getOffsetX() - x;
+		double dY = mesh.getCenterY() + handle.getOffsetY() - y;
+		double dZ = mesh.getCenterZ() + handle.getOffsetZ() - z;
+		double reach = radius + mesh.getRadius();
+		return dX * dX + dY * dY + dZ * dZ <= reach * reach;
+	}
+	
+	//Adds every mesh whose bounding sphere is hit by a world-space ray, in front of its origin
+	void queryRay(double originX, double originY, double originZ, double dirX, double dirY, double dirZ,
+	              List<MeshHandle> result){
+		final double inverseX = 1 / dirX;
+		final double inverseY = 1 / dirY;
+		final double inverseZ = 1 / dirZ;
+		int top = 0;
+		if (root >= 0){
+			top = push(top, root);
+		}
+		while (top > 0){
+			int node = stack[--top];
+			if (isEmpty(node)){
+				continue;
+			}
+			//Slab test
+			double near = 0;
+			double far = Globals.Numbers.infinity;
+			double t0 = (minX[node] - originX) * inverseX, t1 = (maxX[node] - originX) * inverseX;
+			near = Math.max(near, Math.min(t0, t1));
+			far = Math.min(far, Math.max(t0, t1));
+			t0 = (minY[node] - originY) * inverseY;
+			t1 = (maxY[node] - originY) * inverseY;
+			near = Math.max(near, Math.min(t0, t1));
+			far = Math.min(far, Math.max(t0, t1));
+			t0 = (minZ[node] - originZ) * inverseZ;
+			t1 = (maxZ[node] - originZ) * inverseZ;
+			near = Math.max(near, Math.min(t0, t1));
+			far = Math.min(far, Math.max(t0, t1));
+			if (!(near <= far)){
+				continue;
+			}
+			if (left[node] < 0){
+				MeshHandle handle = items[item[node]];
+				if (handle != null && isHit(handle, originX, originY, originZ, dirX, dirY, dirZ)){
+					result.add(handle);
+				}
+				continue;
+			}
+			top = push(top, left[node]);
+			top = push(top, right[node]);
+		}
+		
+		for (var i = 0; i < pending.size(); i++){
+			if (isHit(pending.get(i), originX, originY, originZ, dirX, dirY, dirZ)){
+				result.add(pending.get(i));
+			}
+		}
+	}
+	
+	//Returns if a ray hits a mesh's bounding sphere, in front of its origin
+	private static boolean isHit(MeshHandle handle, double originX, double originY, double originZ,
+	                             double dirX, double dirY, double dirZ){
+		final Mesh mesh = handle.getMesh();
+		double toX = mesh.getCenterX() + handle.getOffsetX() - originX;
+		double toY = mesh.getCenterY() + handle.getOffsetY() - originY;
+		double toZ = mesh.getCenterZ() + handle.getOffsetZ() - originZ;
+		double radius = mesh.getRadius();
+		double lengthSquared = dirX * dirX + dirY * dirY + dirZ * dirZ;
+		double along = (toX * dirX + toY * dirY + toZ * dirZ) / lengthSquared;
+		double distanceSquared = toX * toX + toY * toY + toZ * toZ;
+		//Origin inside the sphere, or the sphere is ahead and the closest approach is within the radius
+		if (distanceSquared <= radius * radius){
+			return true;
+		}
+		return along > 0 && distanceSquared - along * along * lengthSquared <= radius * radius;
+	}
+}
@@ -0,0 +1,324 @@
+package ThreeDimensionalComponents;
+
+import java.awt.*;
+
+//A registered instance of a Mesh. Holds the per-instance transform (rotation about the mesh center, and an offset)
+//and colors, as well as the cached result of the last transform. The cache is only rebuilt when the instance
+//transform or the camera changes
+public final class MeshHandle {
+	
+	//Shared, immutable geometry. For a mesh with levels of detail, the level in use
+	private Mesh mesh;
+	
+	//Levels of detail, or null if the mesh has only one, and which one is in use
+	private final LODMesh lod;
+	private int level;
+	
+	//Per-instance transform. Rotation values are in radians
+	private double thetaX;
+	private double thetaY;
+	private double thetaZ;
+	private double offsetX;
+	private double offsetY;
+	private double offsetZ;
+	
+	//Per-instance colors, and their packed ARGB values
+	private Color lineColor;
+	private Color faceColor;
+	int lineARGB;
+	int faceARGB;
+	
+	//Bumped whenever the instance transform changes
+	private int version = 0;
+	
+	//Canvas owning this handle, or null once unregistered
+	ThreeDimensionalCanvas owner;
+	
+	//Collider in the owner's collision grid, or -1 while unregistered
+	int collider = -1;
+	
+	//Registration order, so meshes are drawn in the order they were registered whatever order they are found in
+	int sequence;
+	
+	//Item and leaf in the owner's bounding volume hierarchy, or -1 while pending
+	int treeItem = -1;
+	int treeLeaf = -1;
+	
+	//Versions the cache was built from. -1 means "never built"
+	int builtVersion = -1;
+	int builtCameraVersion = -1;
+	
+	//Whether the cache was built by culling the whole mesh, in which case the vertices were never transformed
+	boolean culled = false;
+	
+	//Cached transform results, reused across rebuilds
+	final Matrix4 modelView = new Matrix4();
+	final VertexBuffer vertices = new VertexBuffer();
+	final double[] zList;
+	
+	//Faces entirely in front of the near plane, and how many there are
+	final int[] visibleFaces;
+	int visibleCount = 0;
+	
+	//Faces crossing the near plane, which still have to be clipped, and how many there are
+	final int[] clippedFaces;
+	int clippedCount = 0;
+	
+	MeshHandle(Mesh mesh, double thetaX, double thetaY, double thetaZ, Color lineColor, Color faceColor){
+		this(mesh, null, thetaX, thetaY, thetaZ, lineColor, faceColor);
+	}
+	//Starts out at the coarsest level; the first frame picks the right one
+	MeshHandle(LODMesh lod, double thetaX, double thetaY, double thetaZ, Color lineColor, Color faceColor){
+		this(lod.getLevel(lod.getLevelCount() - 1), lod, thetaX, thetaY, thetaZ, lineColor, faceColor);
+		level = lod.getLevelCount() - 1;
+	}
+	
+	private MeshHandle(Mesh mesh, LODMesh lod, double thetaX, double thetaY, double thetaZ, Color lineColor, Color faceColor){
+		this.mesh = mesh;
+		this.lod = lod;
+		this.thetaX = thetaX;
+		this.thetaY = thetaY;
+		this.thetaZ = thetaZ;
+		setColors(lineColor, faceColor);
+		
+		//Sized for the finest level, so switching levels never allocates
+		final int faceCount = lod == null ? mesh.getFaceCount() : lod.getMaxFaceCount();
+		vertices.resize(lod == null ? mesh.getPointCount() : lod.getMaxPointCount());
+		zList = new double[faceCount];
+		visibleFaces = new int[faceCount];
+		clippedFaces = new int[faceCount];
+	}
+	
+	public Mesh getMesh(){
+		return mesh;
+	}
+	
+	//Levels of detail, or null if the mesh has only one
+	public LODMesh getLOD(){
+		return lod;
+	}
+	
+	public int getLevel(){
+		return level;
+	}
+	
+	//Sets rotation values (in radians) along the X, Y, and Z axis. Only invalidates the cache if something changed
+	public void setRotation(double thetaX, double thetaY, double thetaZ){
+		if (this.thetaX != thetaX || this.thetaY != thetaY || this.thetaZ != thetaZ){
+			this.thetaX = thetaX;
+			this.thetaY = thetaY;
+			this.thetaZ = thetaZ;
+			version++;
+			if (owner != null){
+				owner.meshRotated(this);
+			}
+		}
+	}
+	
+	//Sets the offset applied to every point of the mesh. Only invalidates the cache if something changed
+	public void setOffset(double offsetX, double offsetY, double offsetZ){
+		if (this.offsetX != offsetX || this.offsetY != offsetY || this.offsetZ != offsetZ){
+			this.offsetX = offsetX;
+			this.offsetY = offsetY;
+			this.offsetZ = offsetZ;
+			version++;
+			//Only the offset moves the mesh's bounds; rotation is around its center
+			if (owner != null){
+				owner.meshMoved(this);
+			}
+		}
+	}
+	
+	//Colors do not affect the transform, so changing them never invalidates the cache
+	public void setColors(Color lineColor, Color faceColor){
+		this.lineColor = lineColor;
+		this.faceColor = faceColor;
+		lineARGB = lineColor.getRGB();
+		faceARGB = faceColor.getRGB();
+	}
+	
+	public double getThetaX(){
+		return thetaX;
+	}
+	
+	public double getThetaY(){
+		return thetaY;
+	}
+	
+	public double getThetaZ(){
+		return thetaZ;
+	}
+	
+	public double getOffsetX(){
+		return offsetX;
+	}
+	
+	public double getOffsetY(){
+		return offsetY;
+	}
+	
+	public double getOffsetZ(){
+		return offsetZ;
+	}
+	
+	public Color getLineColor(){
+		return lineColor;
+	}
+	
+	public Color getFaceColor(){
+		return faceColor;
+	}
+	
+	public boolean isRegistered(){
+		return owner != null;
+	}
+	
+	int getVersion(){
+		return version;
+	}
+	
+	//Picks the level of detail from the projected radius of the mesh's bounding sphere. Returns true, and invalidates
+	//the cache, if the level changed
+	boolean selectLevel(Matrix4 view, double FOV){
+		if (lod == null){
+			return false;
+		}
+		final double centerX = mesh.getCenterX() + offsetX;
+		final double centerY = mesh.getCenterY() + offsetY;
+		final double centerZ = mesh.getCenterZ() + offsetZ;
+		final double depth = -view.transformZ(centerX, centerY, centerZ);
+		
+		//Finest level if the camera is inside the bounds, or about to be
+		final double screenRadius = depth <= mesh.getRadius() + Globals.Camera.nearPlane
+				? Globals.Numbers.infinity
+				: FOV * mesh.getRadius() / depth;
+		final int selected = lod.selectLevel(screenRadius, level);
+		if (selected == level){
+			return false;
+		}
+		level = selected;
+		mesh = lod.getLevel(selected);
+		version++;
+		return true;
+	}
+	
+	//Whether the cache is out of date for the given camera version
+	boolean needsRebuild(int cameraVersion){
+		return builtVersion != version || builtCameraVersion != cameraVersion;
+	}
+	
+	//Rebuilds the whole cache on the calling thread
+	void rebuild(Matrix4 view, double FOV, int centerX, int centerY, int cameraVersion, boolean cullBackFaces){
+		beginRebuild(view);
+		transformRange(0, mesh.getPointCount(), FOV, centerX, centerY);
+		endRebuild(cameraVersion, cullBackFaces);
+	}
+	
+	//Rebuilding is split in three steps, so the transform of a large mesh can be split across threads. Only the
+	//handle's own state is written, so separate handles can be rebuilt on separate threads.
+	//The model-view matrix is ready after this step, so the mesh can be culled before any point is transformed
+	void beginRebuild(Matrix4 view){
+		modelView.setModelView(view, mesh.getCenterX(), mesh.getCenterY(), mesh.getCenterZ(),
+				offsetX, offsetY, offsetZ, thetaX, thetaY, thetaZ);
+		vertices.resize(mesh.getPointCount());
+	}
+	
+	void transformRange(int from, int to, double FOV, int centerX, int centerY){
+		vertices.transform(modelView, mesh, from, to, FOV, centerX, centerY);
+	}
+	
+	//Computes face depths. Faces behind the near plane are dropped, and so are faces crossing it if strict clipping
+	//is on; otherwise they are kept aside to be clipped. Back faces are dropped if asked to
+	void endRebuild(int cameraVersion, boolean cullBackFaces){
+		final double[] z = vertices.z;
+		final int[] indices = mesh.getFaceIndices();
+		final int[] offsets = mesh.getFaceOffsets();
+		
+		visibleCount = 0;
+		clippedCount = 0;
+		for (var i = 0; i < mesh.getFaceCount(); i++){
+			final int from = offsets[i];
+			final int to = offsets[i + 1];
+			int position = FaceClipper.classify(z, indices, from, to);
+			if (position == FaceClipper.OUTSIDE || (position == FaceClipper.CROSSING && Globals.Camera.strictClip)){
+				continue;
+			}
+			if (cullBackFaces && FaceClipper.isBackFace(vertices.x, vertices.y, z, indices, from, to)){
+				continue;
+			}
+			if (position == FaceClipper.CROSSING){
+				clippedFaces[clippedCount++] = i;
+				continue;
+			}
+			double zSum = 0;
+			for (var j = from; j < to; j++){
+				zSum += z[indices[j]];
+			}
+			visibleFaces[visibleCount] = i;
+			zList[visibleCount] = zSum / (to - from);
+			visibleCount++;
+		}
+		
+		builtVersion = version;
+		builtCameraVersion = cameraVersion;
+		culled = false;
+	}
+	
+	//Marks the cache as built for a mesh that is entirely outside the view, without transforming anything
+	void cull(int cameraVersion){
+		visibleCount = 0;
+		clippedCount = 0;
+		builtVersion = version;
+		builtCameraVersion = cameraVersion;
+		culled = true;
+	}
+	
+	//Intersects a view-space ray from the camera, in direction (dirX, dirY, -1), with every face of the transformed
+	//mesh, split into triangle fans. Returns the distance along the ray (which is also the depth) of the nearest
+	//hit in front of the near plane, or infinity if there is none
+	double intersectRay(double dirX, double dirY){
+		final double[] x = vertices.x;
+		final double[] y = vertices.y;
+		final double[] z = vertices.z;
+		final int[] indices = mesh.getFaceIndices();
+		final int[] offsets = mesh.getFaceOffsets();
+		final double dirZ = -1;
+		
+		double nearest = Globals.Numbers.infinity;
+		for (var i = 0; i < mesh.getFaceCount(); i++){
+			final int first = indices[offsets[i]];
+			for (var j = offsets[i] + 1; j < offsets[i + 1] - 1; j++){
+				//Moller-Trumbore, with the ray starting at the origin
+				final int b = indices[j];
+				final int c = indices[j + 1];
+				double edge1X = x[b] - x[first], edge1Y = y[b] - y[first], edge1Z = z[b] - z[first];
+				double edge2X = x[c] - x[first], edge2Y = y[c] - y[first], edge2Z = z[c] - z[first];
+				double pX = dirY * edge2Z - dirZ * edge2Y;
+				double pY = dirZ * edge2X - dirX * edge2Z;
+				double pZ = dirX * edge2Y - dirY * edge2X;
+				double determinant = edge1X * pX + edge1Y * pY + edge1Z * pZ;
+				if (determinant == 0){
+					continue;
+				}
+				double inverse = 1 / determinant;
+				double toX = -x[first], toY = -y[first], toZ = -z[first];
+				double u = (toX * pX + toY * pY + toZ * pZ) * inverse;
+				if (u < 0 || u > 1){
+					continue;
+				}
+				double qX = toY * edge1Z - toZ * edge1Y;
+				double qY = toZ * edge1X - toX * edge1Z;
+				double qZ = toX * edge1Y - toY * edge1X;
+				double v = (dirX * qX + dirY * qY + dirZ * qZ) * inverse;
+				if (v < 0 || u + v > 1){
+					continue;
+				}
+				double t = (edge2X * qX + edge2Y * qY + edge2Z * qZ) * inverse;
+				if (t >= Globals.Camera.nearPlane && t < nearest){
+					nearest = t;
+				}
+			}
+		}
+		return nearest;
+	}
+}
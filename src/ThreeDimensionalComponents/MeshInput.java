@@ -0,0 +1,243 @@
+package ThreeDimensionalComponents;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Locale;
+
+//Buffered reader over the bytes of a mesh file. Text is tokenized and numbers are parsed straight from the buffer, so
+//nothing is allocated per line or per number; binary values are read through a ByteBuffer view of the same buffer
+final class MeshInput {
+	
+	//Powers of ten that are exact as doubles
+	private static final double[] POWERS_OF_TEN = {
+			1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+	
+	//End of input
+	static final int END = -1;
+	
+	private final InputStream in;
+	private final byte[] buffer = new byte[1 << 16];
+	private final ByteBuffer view = ByteBuffer.wrap(buffer);
+	private int position = 0;
+	private int limit = 0;
+	
+	//Line being read, for error messages
+	private int line = 1;
+	
+	//Scratch space for tokens that have to become Strings
+	private final StringBuilder token = new StringBuilder();
+	
+	MeshInput(InputStream in){
+		this.in = in;
+	}
+	
+	int getLine(){
+		return line;
+	}
+	
+	//Makes sure "count" bytes are buffered. Returns false if the input ends first
+	private boolean fill(int count) throws IOException {
+		if (limit - position >= count){
+			return true;
+		}
+		System.arraycopy(buffer, position, buffer, 0, limit - position);
+		limit -= position;
+		position = 0;
+		while (limit < count){
+			int read = in.read(buffer, limit, buffer.length - limit);
+			if (read < 0){
+				return false;
+			}
+			limit += read;
+		}
+		return true;
+	}
+	
+	//Returns the next byte without consuming it, or END
+	int peek() throws IOException {
+		return fill(1) ? buffer[position] & 0xFF : END;
+	}
+	
+	//Consumes and returns the next byte, or END
+	int read() throws IOException {
+		if (!fill(1)){
+			return END;
+		}
+		int value = buffer[position++] & 0xFF;
+		if (value == '\n'){
+			line++;
+		}
+		return value;
+	}
+	
+	//Skips spaces and tabs, but not line ends
+	void skipSpaces() throws IOException {
+		int value;
+		while ((value = peek()) == ' ' || value == '\t' || value == '\r'){
+			position++;
+		}
+	}
+	
+	//Skips the rest of the line, including its end
+	void skipLine() throws IOException {
+		int value;
+		while ((value = read()) != END && value != '\n'){
+			//Skipped
+		}
+	}
+	
+	//Whether only spaces are left on the line
+	boolean atLineEnd() throws IOException {
+		skipSpaces();
+		int value = peek();
+		return value == '\n' || value == END;
+	}
+	
+	//Reads the next token on the line as a String. Only meant for headers and keywords, which are rare
+	String readToken() throws IOException {
+		skipSpaces();
+		token.setLength(0);
+		int value;
+		while ((value = peek()) != END && value > ' '){
+			token.append((char) value);
+			position++;
+		}
+		return token.toString();
+	}
+	
+	//Reads a decimal integer
+	long readLong() throws IOException {
+		skipSpaces();
+		boolean negative = false;
+		int value = peek();
+		if (value == '-' || value == '+'){
+			negative = value == '-';
+			position++;
+		}
+		long result = 0;
+		int digits = 0;
+		while ((value = peek()) >= '0' && value <= '9'){
+			result = result * 10 + (value - '0');
+			position++;
+			digits++;
+		}
+		if (digits == 0){
+			throw new Error("Expected a number on line " + line + "!");
+		}
+		return negative ? -result : result;
+	}
+	
+	//Reads a decimal number. Numbers with up to 18 significant digits and small exponents are parsed exactly in place;
+	//anything else goes through Double.parseDouble
+	double readDouble() throws IOException {
+		skipSpaces();
+		token.setLength(0);
+		boolean negative = false;
+		int value = peek();
+		if (value == '-' || value == '+'){
+			negative = value == '-';
+			token.append((char) value);
+			position++;
+		}
+		long mantissa = 0;
+		int digits = 0;
+		int exponent = 0;
+		boolean exact = true;
+		boolean point = false;
+		while ((value = peek()) != END){
+			if (value >= '0' && value <= '9'){
+				if (digits < 18){
+					mantissa = mantissa * 10 + (value - '0');
+					if (mantissa != 0){
+						digits++;
+					}
+					if (point){
+						exponent--;
+					}
+				} else {
+					exact = false;
+				}
+			} else if (value == '.' && !point){
+				point = true;
+			} else {
+				break;
+			}
+			token.append((char) value);
+			position++;
+		}
+		if (value == 'e' || value == 'E'){
+			token.append((char) value);
+			position++;
+			boolean negativeExponent = false;
+			value = peek();
+			if (value == '-' || value == '+'){
+				negativeExponent = value == '-';
+				token.append((char) value);
+				position++;
+			}
+			int written = 0;
+			while ((value = peek()) >= '0' && value <= '9'){
+				written = Math.min(written * 10 + (value - '0'), 100000);
+				token.append((char) value);
+				position++;
+			}
+			exponent += negativeExponent ? -written : written;
+		}
+		
+		//Not a plain decimal: the words exporters write for special values, in any case and after an optional sign
+		if (token.length() == 0 || (token.length() == 1 && !Character.isDigit(token.charAt(0)))){
+			final double special;
+			switch (readToken().toLowerCase(Locale.ROOT)){
+				case "nan":
+					special = Double.NaN;
+					break;
+				case "inf":
+				case "infinity":
+					special = Double.POSITIVE_INFINITY;
+					break;
+				default:
+					throw new Error("Expected a number on line " + line + "!");
+			}
+			return negative ? -special : special;
+		}
+		if (exact && mantissa < (1L << 53) && Math.abs(exponent) < POWERS_OF_TEN.length){
+			double result = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+			return negative ? -result : result;
+		}
+		return Double.parseDouble(token.toString());
+	}
+	
+	//Binary values, in the given byte order
+	private ByteBuffer binary(int size, ByteOrder order) throws IOException {
+		if (!fill(size)){
+			throw new Error("Mesh data ends early!");
+		}
+		view.order(order);
+		position += size;
+		return view;
+	}
+	
+	int readUnsignedByte() throws IOException {
+		return binary(1, ByteOrder.BIG_ENDIAN).get(position - 1) & 0xFF;
+	}
+	
+	short readShort(ByteOrder order) throws IOException {
+		return binary(2, order).getShort(position - 2);
+	}
+	
+	int readInt(ByteOrder order) throws IOException {
+		return binary(4, order).getInt(position - 4);
+	}
+	
+	float readFloat(ByteOrder order) throws IOException {
+		return binary(4, order).getFloat(position - 4);
+	}
+	
+	double readDouble(ByteOrder order) throws IOException {
+		return binary(8, order).getDouble(position - 8);
+	}
+}
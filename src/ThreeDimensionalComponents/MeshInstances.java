@@ -0,0 +1,190 @@
+package ThreeDimensionalComponents;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.awt.*;
+import java.util.Arrays;
+
+//Many copies of one mesh, each with its own transform and colors, drawn with a single "addInstances(...)" call.
+//The mesh's topology and local points are shared by every instance; instances only take a packed slice of a primitive
+//buffer, so thousands of them cost no more memory than their transforms
+public final class MeshInstances {
+	
+	//Values per instance in the transform buffer: rotation (in radians) about the mesh center, then the offset
+	static final int STRIDE = 6;
+	static final int THETA_X = 0, THETA_Y = 1, THETA_Z = 2;
+	static final int OFFSET_X = 3, OFFSET_Y = 4, OFFSET_Z = 5;
+	
+	//Shared, immutable geometry
+	private final Mesh mesh;
+	
+	//Packed per-instance transforms, STRIDE values each, and packed ARGB line and face colors, two values each
+	private double[] transforms;
+	private int[] colors;
+	private int count = 0;
+	
+	//Collision grid every instance is a collider in, and the collider of each instance, or null if not collidable
+	CollisionGrid collisionGrid = null;
+	int[] colliders = new int[0];
+	int colliderCount = 0;
+	
+	public MeshInstances(@NotNull Mesh mesh){
+		this(mesh, 16);
+	}
+	//Constructor. Reserves room for "capacity" instances, so adding that many never grows the buffers
+	public MeshInstances(@NotNull Mesh mesh, int capacity){
+		this.mesh = mesh;
+		transforms = new double[Math.max(1, capacity) * STRIDE];
+		colors = new int[Math.max(1, capacity) * 2];
+	}
+	
+	public Mesh getMesh(){
+		return mesh;
+	}
+	
+	public int size(){
+		return count;
+	}
+	
+	//Adds an instance, and returns its index. Rotation values are in radians
+	public int add(double thetaX, double thetaY, double thetaZ, double offsetX, double offsetY, double offsetZ,
+	               Color lineColor, Color faceColor){
+		if (count * STRIDE == transforms.length){
+			transforms = Arrays.copyOf(transforms, transforms.length * 2);
+			colors = Arrays.copyOf(colors, colors.length * 2);
+		}
+		final int instance = count++;
+		setRotation(instance, thetaX, thetaY, thetaZ);
+		setOffset(instance, offsetX, offsetY, offsetZ);
+		setColors(instance, lineColor, faceColor);
+		if (collisionGrid != null){
+			addCollider(instance);
+		}
+		return instance;
+	}
+	
+	//Removes an instance. The last instance takes its index, so indices of other instances are only stable until then
+	public void remove(int instance){
+		check(instance);
+		final int last = --count;
+		System.arraycopy(transforms, last * STRIDE, transforms, instance * STRIDE, STRIDE);
+		colors[instance * 2] = colors[last * 2];
+		colors[instance * 2 + 1] = colors[last * 2 + 1];
+		if (collisionGrid != null){
+			collisionGrid.remove(colliders[instance]);
+			colliders[instance] = colliders[last];
+			colliderCount--;
+		}
+	}
+	
+	//Removes every instance, keeping the buffers
+	public void clear(){
+		if (collisionGrid != null){
+			for (var i = 0; i < colliderCount; i++){
+				collisionGrid.remove(colliders[i]);
+			}
+			colliderCount = 0;
+		}
+		count = 0;
+	}
+	
+	//Sets rotation values (in radians) along the X, Y, and Z axis of an instance
+	public void setRotation(int instance, double thetaX, double thetaY, double thetaZ){
+		check(instance);
+		final int base = instance * STRIDE;
+		transforms[base + THETA_X] = thetaX;
+		transforms[base + THETA_Y] = thetaY;
+		transforms[base + THETA_Z] = thetaZ;
+		moveCollider(instance);
+	}
+	
+	//Sets the offset applied to every point of an instance
+	public void setOffset(int instance, double offsetX, double offsetY, double offsetZ){
+		check(instance);
+		final int base = instance * STRIDE;
+		transforms[base + OFFSET_X] = offsetX;
+		transforms[base + OFFSET_Y] = offsetY;
+		transforms[base + OFFSET_Z] = offsetZ;
+		moveCollider(instance);
+	}
+	
+	public void setColors(int instance, Color lineColor, Color faceColor){
+		check(instance);
+		colors[instance * 2] = lineColor.getRGB();
+		colors[instance * 2 + 1] = faceColor.getRGB();
+	}
+	
+	public double getThetaX(int instance){
+		check(instance);
+		return transforms[instance * STRIDE + THETA_X];
+	}
+	
+	public double getThetaY(int instance){
+		check(instance);
+		return transforms[instance * STRIDE + THETA_Y];
+	}
+	
+	public double getThetaZ(int instance){
+		check(instance);
+		return transforms[instance * STRIDE + THETA_Z];
+	}
+	
+	public double getOffsetX(int instance){
+		check(instance);
+		return transforms[instance * STRIDE + OFFSET_X];
+	}
+	
+	public double getOffsetY(int instance){
+		check(instance);
+		return transforms[instance * STRIDE + OFFSET_Y];
+	}
+	
+	public double getOffsetZ(int instance){
+		check(instance);
+		return transforms[instance * STRIDE + OFFSET_Z];
+	}
+	
+	public Color getLineColor(int instance){
+		check(instance);
+		return new Color(colors[instance * 2], true);
+	}
+	
+	public Color getFaceColor(int instance){
+		check(instance);
+		return new Color(colors[instance * 2 + 1], true);
+	}
+	
+	//Adds a collider for an instance
+	void addCollider(int instance){
+		if (colliderCount == colliders.length){
+			colliders = Arrays.copyOf(colliders, Math.max(16, colliderCount * 2));
+		}
+		final int base = instance * STRIDE;
+		colliders[colliderCount++] = collisionGrid.add(mesh, transforms[base + THETA_X], transforms[base + THETA_Y], transforms[base + THETA_Z],
+				transforms[base + OFFSET_X], transforms[base + OFFSET_Y], transforms[base + OFFSET_Z]);
+	}
+	
+	//Keeps an instance's collider where the instance is. Instances being added get theirs once they are set up
+	private void moveCollider(int instance){
+		if (collisionGrid != null && instance < colliderCount){
+			final int base = instance * STRIDE;
+			collisionGrid.move(colliders[instance], transforms[base + THETA_X], transforms[base + THETA_Y], transforms[base + THETA_Z],
+					transforms[base + OFFSET_X], transforms[base + OFFSET_Y], transforms[base + OFFSET_Z]);
+		}
+	}
+	
+	private void check(int instance){
+		if (instance < 0 || instance >= count){
+			throw new Error("Instance " + instance + " does not exist!");
+		}
+	}
+	
+	//Internal accessors. The buffers are shared, not copied, and only their first "size()" instances are valid
+	double[] getTransforms(){
+		return transforms;
+	}
+	
+	int[] getColors(){
+		return colors;
+	}
+}
@@ -0,0 +1,379 @@
+package ThreeDimensionalComponents;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Locale;
+
+//Loads meshes from Wavefront OBJ and PLY (ASCII and binary) files. Files are streamed straight into the primitive
+//arrays a Mesh is made of, without building an object per point or face. Loaded meshes can be written to a binary
+//cache, which loads again through a memory-mapped file with no parsing at all. Coords are used as they are in the file
+public final class MeshLoader {
+	
+	//Binary cache layout: magic, version, point count, face count, index count, then x, y and z of every point as
+	//doubles, the face offsets and the face indices as ints, all little-endian
+	private static final int CACHE_MAGIC = 0x4853454D;
+	private static final int CACHE_VERSION = 1;
+	private static final int CACHE_HEADER = 5 * 4;
+	
+	//PLY property types
+	private static final int INT8 = 0, UINT8 = 1, INT16 = 2, UINT16 = 3, INT32 = 4, UINT32 = 5, FLOAT32 = 6, FLOAT64 = 7;
+	
+	private MeshLoader(){
+	}
+	
+	//Loads a mesh, picking the format from the file extension: ".obj", ".ply", or ".mesh" for the binary cache
+	public static Mesh load(@NotNull Path path) throws IOException {
+		final String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+		if (name.endsWith(".mesh")){
+			return readCache(path);
+		}
+		try (InputStream in = Files.newInputStream(path)){
+			if (name.endsWith(".obj")){
+				return loadOBJ(in);
+			}
+			if (name.endsWith(".ply")){
+				return loadPLY(in);
+			}
+		}
+		throw new Error("Unknown mesh format: " + path.getFileName() + "!");
+	}
+	
+	//Loads a mesh through the binary cache at "cache". The source file is only parsed if the cache is missing or older
+	//than it, in which case the cache is written again
+	public static Mesh loadCached(@NotNull Path source, @NotNull Path cache) throws IOException {
+		if (Files.exists(cache) && Files.getLastModifiedTime(cache).compareTo(Files.getLastModifiedTime(source)) >= 0){
+			return readCache(cache);
+		}
+		final Mesh mesh = load(source);
+		writeCache(mesh, cache);
+		return mesh;
+	}
+	
+	//Streams a Wavefront OBJ file. Only points ("v") and faces ("f") are read; texture coords, normals, groups and
+	//materials are skipped. Faces with less than three points are skipped too
+	public static Mesh loadOBJ(@NotNull InputStream in) throws IOException {
+		final MeshInput input = new MeshInput(in);
+		final Points points = new Points();
+		final Faces faces = new Faces();
+		int value;
+		while ((value = input.peek()) != MeshInput.END){
+			input.skipSpaces();
+			value = input.read();
+			if (value == '\n'){
+				continue;
+			}
+			final int next = input.peek();
+			final boolean keyword = next == ' ' || next == '\t';
+			if (value == 'v' && keyword){
+				points.add(input.readDouble(), input.readDouble(), input.readDouble());
+			} else if (value == 'f' && keyword){
+				while (!input.atLineEnd()){
+					long index = input.readLong();
+					//Texture coord and normal indices ("a/b/c", "a//c") are not used
+					while ((value = input.peek()) != MeshInput.END && value > ' '){
+						input.read();
+					}
+					//Indices start at 1, and negative indices count back from the last point
+					faces.add(index < 0 ? points.count + index : index - 1);
+				}
+				faces.end();
+			}
+			input.skipLine();
+		}
+		return faces.toMesh(points);
+	}
+	
+	//Streams a PLY file, in any of its three formats. Points are read from the "x", "y" and "z" properties of the
+	//"vertex" element, and faces from the "vertex_indices" (or "vertex_index") list of the "face" element; every other
+	//element and property is skipped
+	public static Mesh loadPLY(@NotNull InputStream in) throws IOException {
+		final MeshInput input = new MeshInput(in);
+		if (!"ply".equals(input.readToken())){
+			throw new Error("Not a PLY file!");
+		}
+		input.skipLine();
+		
+		//Header
+		ByteOrder order = null;
+		final ArrayList<Element> elements = new ArrayList<>();
+		while (true){
+			final String keyword = input.readToken();
+			if (keyword.equals("end_header")){
+				input.skipLine();
+				break;
+			}
+			if (keyword.isEmpty() && input.peek() == MeshInput.END){
+				throw new Error("PLY header never ends!");
+			}
+			if (keyword.equals("format")){
+				String format = input.readToken();
+				if (format.equals("binary_little_endian")){
+					order = ByteOrder.LITTLE_ENDIAN;
+				} else if (format.equals("binary_big_endian")){
+					order = ByteOrder.BIG_ENDIAN;
+				} else if (!format.equals("ascii")){
+					throw new Error("Unknown PLY format: " + format + "!");
+				}
+			} else if (keyword.equals("element")){
+				String name = input.readToken();
+				elements.add(new Element(name, input.readLong()));
+			} else if (keyword.equals("property")){
+				if (elements.isEmpty()){
+					throw new Error("PLY property outside of an element on line " + input.getLine() + "!");
+				}
+				String type = input.readToken();
+				int countType = -1;
+				if (type.equals("list")){
+					countType = propertyType(input.readToken());
+					type = input.readToken();
+				}
+				elements.get(elements.size() - 1).addProperty(propertyType(type), countType, input.readToken());
+			}
+			input.skipLine();
+		}
+		
+		//Body
+		final Points points = new Points();
+		final Faces faces = new Faces();
+		for (Element element : elements){
+			final boolean vertex = element.name.equals("vertex");
+			final boolean face = element.name.equals("face");
+			final double[] coords = new double[3];
+			for (var i = 0L; i < element.count; i++){
+				for (var j = 0; j < element.propertyCount; j++){
+					final int type = element.types[j];
+					final int countType = element.countTypes[j];
+					final String name = element.names[j];
+					if (countType < 0){
+						double value = readValue(input, type, order);
+						if (vertex && name.length() == 1 && name.charAt(0) >= 'x' && name.charAt(0) <= 'z'){
+							coords[name.charAt(0) - 'x'] = value;
+						}
+						continue;
+					}
+					final boolean indices = face && (name.equals("vertex_indices") || name.equals("vertex_index"));
+					final long count = (long) readValue(input, countType, order);
+					for (var k = 0L; k < count; k++){
+						double value = readValue(input, type, order);
+						if (indices){
+							faces.add((long) value);
+						}
+					}
+					if (indices){
+						faces.end();
+					}
+				}
+				if (vertex){
+					points.add(coords[0], coords[1], coords[2]);
+				}
+				if (order == null){
+					input.skipLine();
+				}
+			}
+		}
+		return faces.toMesh(points);
+	}
+	
+	private static int propertyType(String name){
+		switch (name){
+			case "char": case "int8": return INT8;
+			case "uchar": case "uint8": return UINT8;
+			case "short": case "int16": return INT16;
+			case "ushort": case "uint16": return UINT16;
+			case "int": case "int32": return INT32;
+			case "uint": case "uint32": return UINT32;
+			case "float": case "float32": return FLOAT32;
+			case "double": case "float64": return FLOAT64;
+			default: throw new Error("Unknown PLY property type: " + name + "!");
+		}
+	}
+	
+	//Reads one property value. A null order means the file is ASCII
+	private static double readValue(MeshInput input, int type, ByteOrder order) throws IOException {
+		if (order == null){
+			return type >= FLOAT32 ? input.readDouble() : input.readLong();
+		}
+		switch (type){
+			case INT8: return (byte) input.readUnsignedByte();
+			case UINT8: return input.readUnsignedByte();
+			case INT16: return input.readShort(order);
+			case UINT16: return input.readShort(order) & 0xFFFF;
+			case INT32: return input.readInt(order);
+			case UINT32: return input.readInt(order) & 0xFFFFFFFFL;
+			case FLOAT32: return input.readFloat(order);
+			default: return input.readDouble(order);
+		}
+	}
+	
+	//Writes a mesh to the binary cache format. The file is written next to "cache" first and then moved over it, so a
+	//cache is never seen half written
+	public static void writeCache(@NotNull Mesh mesh, @NotNull Path cache) throws IOException {
+		final Path temporary = cache.resolveSibling(cache.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)){
+			final int[] indices = mesh.getFaceIndices();
+			final int[] offsets = mesh.getFaceOffsets();
+			final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+			buffer.putInt(CACHE_MAGIC).putInt(CACHE_VERSION)
+					.putInt(mesh.getPointCount()).putInt(mesh.getFaceCount()).putInt(indices.length);
+			for (double[] values : new double[][]{mesh.getX(), mesh.getY(), mesh.getZ()}){
+				for (var i = 0; i < values.length; i++){
+					if (buffer.remaining() < 8){
+						flush(channel, buffer);
+					}
+					buffer.putDouble(values[i]);
+				}
+			}
+			for (int[] values : new int[][]{offsets, indices}){
+				for (var i = 0; i < values.length; i++){
+					if (buffer.remaining() < 4){
+						flush(channel, buffer);
+					}
+					buffer.putInt(values[i]);
+				}
+			}
+			flush(channel, buffer);
+		}
+		Files.move(temporary, cache, StandardCopyOption.REPLACE_EXISTING);
+	}
+	
+	private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()){
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+	
+	//Reads a mesh from the binary cache format. The file is memory-mapped, and its arrays are copied out in bulk
+	public static Mesh readCache(@NotNull Path cache) throws IOException {
+		try (FileChannel channel = FileChannel.open(cache, StandardOpenOption.READ)){
+			final long size = channel.size();
+			if (size < CACHE_HEADER){
+				throw new Error("Mesh cache is too short: " + cache.getFileName() + "!");
+			}
+			final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+			if (buffer.getInt() != CACHE_MAGIC || buffer.getInt() != CACHE_VERSION){
+				throw new Error("Not a mesh cache, or one of another version: " + cache.getFileName() + "!");
+			}
+			final int pointCount = buffer.getInt();
+			final int faceCount = buffer.getInt();
+			final int indexCount = buffer.getInt();
+			if (pointCount < 0 || faceCount < 0 || indexCount < 0
+					|| size != CACHE_HEADER + pointCount * 24L + (faceCount + 1) * 4L + indexCount * 4L){
+				throw new Error("Mesh cache is damaged: " + cache.getFileName() + "!");
+			}
+			final double[] x = new double[pointCount];
+			final double[] y = new double[pointCount];
+			final double[] z = new double[pointCount];
+			final int[] offsets = new int[faceCount + 1];
+			final int[] indices = new int[indexCount];
+			buffer.asDoubleBuffer().get(x);
+			buffer.position(buffer.position() + pointCount * 8);
+			buffer.asDoubleBuffer().get(y);
+			buffer.position(buffer.position() + pointCount * 8);
+			buffer.asDoubleBuffer().get(z);
+			buffer.position(buffer.position() + pointCount * 8);
+			buffer.asIntBuffer().get(offsets);
+			buffer.position(buffer.position() + (faceCount + 1) * 4);
+			buffer.asIntBuffer().get(indices);
+			return new Mesh(x, y, z, indices, offsets);
+		}
+	}
+	
+	//PLY element, and its properties. A count type of -1 marks a property that is not a list
+	private static final class Element {
+		final String name;
+		final long count;
+		int[] types = new int[4];
+		int[] countTypes = new int[4];
+		String[] names = new String[4];
+		int propertyCount = 0;
+		
+		Element(String name, long count){
+			this.name = name;
+			this.count = count;
+		}
+		
+		void addProperty(int type, int countType, String name){
+			if (propertyCount == types.length){
+				types = Arrays.copyOf(types, propertyCount * 2);
+				countTypes = Arrays.copyOf(countTypes, propertyCount * 2);
+				names = Arrays.copyOf(names, propertyCount * 2);
+			}
+			types[propertyCount] = type;
+			countTypes[propertyCount] = countType;
+			names[propertyCount] = name;
+			propertyCount++;
+		}
+	}
+	
+	//Growable point arrays
+	private static final class Points {
+		double[] x = new double[1024];
+		double[] y = new double[1024];
+		double[] z = new double[1024];
+		int count = 0;
+		
+		void add(double x, double y, double z){
+			if (count == this.x.length){
+				int size = count * 2;
+				this.x = Arrays.copyOf(this.x, size);
+				this.y = Arrays.copyOf(this.y, size);
+				this.z = Arrays.copyOf(this.z, size);
+			}
+			this.x[count] = x;
+			this.y[count] = y;
+			this.z[count] = z;
+			count++;
+		}
+	}
+	
+	//Growable, flattened faces. Indices are added one by one, and "end()" closes the face; faces with less than three
+	//points are dropped
+	private static final class Faces {
+		int[] indices = new int[4096];
+		int[] offsets = new int[1025];
+		int indexCount = 0;
+		int faceCount = 0;
+		
+		void add(long index){
+			if (index < 0 || index > Integer.MAX_VALUE){
+				throw new Error("One of your faces references a non-existient point!");
+			}
+			if (indexCount == indices.length){
+				indices = Arrays.copyOf(indices, indexCount * 2);
+			}
+			indices[indexCount++] = (int) index;
+		}
+		
+		void end(){
+			if (indexCount - offsets[faceCount] < 3){
+				indexCount = offsets[faceCount];
+				return;
+			}
+			if (faceCount + 2 > offsets.length){
+				offsets = Arrays.copyOf(offsets, offsets.length * 2);
+			}
+			offsets[++faceCount] = indexCount;
+		}
+		
+		Mesh toMesh(Points points){
+			return new Mesh(Arrays.copyOf(points.x, points.count), Arrays.copyOf(points.y, points.count),
+					Arrays.copyOf(points.z, points.count), Arrays.copyOf(indices, indexCount), Arrays.copyOf(offsets, faceCount + 1));
+		}
+	}
+}
@@ -0,0 +1,109 @@
+package ThreeDimensionalComponents;
+
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+//Rebuilds a list of registered meshes on a ForkJoinPool. The list is split by point count rather than by number of
+//meshes, so a few big meshes and many small ones balance the same way, and a single mesh that is too big on its own
+//has its transform split into point ranges. Every mesh must already have had "beginRebuild" called
+final class MeshTransformTask extends RecursiveAction {
+	
+	private static final long serialVersionUID = 1L;
+	
+	//Below this many points in total, rebuilding in parallel is not worth it
+	static final int MIN_PARALLEL_POINTS = 4096;
+	
+	//Work units are split until they have at most this many points
+	private static final int CHUNK_POINTS = 16384;
+	
+	private final List<MeshHandle> meshes;
+	private final int from;
+	private final int to;
+	
+	//Shared, read-only frame constants
+	private final double FOV;
+	private final int centerX;
+	private final int centerY;
+	private final int cameraVersion;
+	private final boolean cullBackFaces;
+	
+	//Running point count at the start of every mesh, shared by all subtasks
+	private final long[] pointStart;
+	
+	//Constructor. Accepts the meshes to rebuild, and the frame constants they are rebuilt with
+	MeshTransformTask(List<MeshHandle> meshes, double FOV, int centerX, int centerY, int cameraVersion, boolean cullBackFaces){
+		this(meshes, 0, meshes.size(), FOV, centerX, centerY, cameraVersion, cullBackFaces, pointStarts(meshes));
+	}
+	
+	private MeshTransformTask(List<MeshHandle> meshes, int from, int to, double FOV, int centerX, int centerY,
+	                          int cameraVersion, boolean cullBackFaces, long[] pointStart){
+		this.meshes = meshes;
+		this.from = from;
+		this.to = to;
+		this.FOV = FOV;
+		this.centerX = centerX;
+		this.centerY = centerY;
+		this.cameraVersion = cameraVersion;
+		this.cullBackFaces = cullBackFaces;
+		this.pointStart = pointStart;
+	}
+	
+	private static long[] pointStarts(List<MeshHandle> meshes){
+		long[] starts = new long[meshes.size() + 1];
+		for (var i = 0; i < meshes.size(); i++){
+			starts[i + 1] = starts[i] + meshes.get(i).getMesh().getPointCount();
+		}
+		return starts;
+	}
+	
+	@Override
+	protected void compute() {
+		//Splits at the mesh closest to half of the points
+		if (to - from > 1 && pointStart[to] - pointStart[from] > CHUNK_POINTS){
+			long half = (pointStart[from] + pointStart[to]) / 2;
+			int middle = from + 1;
+			while (middle < to - 1 && pointStart[middle + 1] <= half){
+				middle++;
+			}
+			invokeAll(new MeshTransformTask(meshes, from, middle, FOV, centerX, centerY, cameraVersion, cullBackFaces, pointStart),
+					new MeshTransformTask(meshes, middle, to, FOV, centerX, centerY, cameraVersion, cullBackFaces, pointStart));
+			return;
+		}
+		
+		for (var i = from; i < to; i++){
+			MeshHandle handle = meshes.get(i);
+			int pointCount = handle.getMesh().getPointCount();
+			if (pointCount > CHUNK_POINTS){
+				new RangeTask(handle, 0, pointCount).invoke();
+			} else {
+				handle.transformRange(0, pointCount, FOV, centerX, centerY);
+			}
+			handle.endRebuild(cameraVersion, cullBackFaces);
+		}
+	}
+	
+	//Transforms a range of the points of one mesh, splitting it in half until it is small enough
+	private class RangeTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		
+		private final MeshHandle handle;
+		private final int from;
+		private final int to;
+		
+		RangeTask(MeshHandle handle, int from, int to){
+			this.handle = handle;
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected void compute() {
+			if (to - from > CHUNK_POINTS){
+				int middle = (from + to) >>> 1;
+				invokeAll(new RangeTask(handle, from, middle), new RangeTask(handle, middle, to));
+				return;
+			}
+			handle.transformRange(from, to, FOV, centerX, centerY);
+		}
+	}
+}
@@ -0,0 +1,285 @@
+package ThreeDimensionalComponents;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+//Immutable local-space geometry kept outside the Java heap: point coords as packed float32 arrays, and faces as flat
+//index and offset arrays, all in one direct or memory-mapped buffer. The heap only holds this object and a few buffer
+//views, so the garbage collector never marks or copies the geometry, however big the scene gets.
+//Added to a frame with "addMesh(...)" on a canvas, which reads the buffers in place
+public final class OffHeapMesh {
+	
+	//File layout: magic, version, point count, face count, index count, then x, y and z of every point as floats, the
+	//face offsets and the face indices as ints, all little-endian. Every section starts on a 4 byte boundary, so a
+	//mapped file is used as it is
+	private static final int FILE_MAGIC = 0x4648534D;
+	private static final int FILE_VERSION = 1;
+	private static final int FILE_HEADER = 5 * 4;
+	
+	//Whole geometry, and views of its sections. Only ever read through absolute gets, so views can be shared by threads
+	private final ByteBuffer data;
+	private final FloatBuffer x;
+	private final FloatBuffer y;
+	private final FloatBuffer z;
+	private final IntBuffer faceOffsets;
+	private final IntBuffer faceIndices;
+	
+	private final int pointCount;
+	private final int faceCount;
+	
+	//Whether the geometry is a mapped file rather than allocated memory
+	private final boolean mapped;
+	
+	//Cached average of all points
+	private final double centerX;
+	private final double centerY;
+	private final double centerZ;
+	
+	//Cached axis-aligned bounds
+	private final double minX, minY, minZ;
+	private final double maxX, maxY, maxZ;
+	
+	//Cached distance from the center to the furthest point
+	private final double radius;
+	
+	//Takes over "data", which holds the sections back to back from its position on
+	private OffHeapMesh(ByteBuffer data, int pointCount, int faceCount, int indexCount, boolean mapped){
+		if (pointCount <= 0){
+			throw new Error("A mesh needs AT LEAST one point");
+		}
+		if (faceCount < 0 || indexCount < 0){
+			throw new Error("Negative face or index count!");
+		}
+		final int position = data.position();
+		this.data = data;
+		this.pointCount = pointCount;
+		this.faceCount = faceCount;
+		this.mapped = mapped;
+		x = section(data, position, pointCount * 4).asFloatBuffer();
+		y = section(data, position + pointCount * 4, pointCount * 4).asFloatBuffer();
+		z = section(data, position + pointCount * 8, pointCount * 4).asFloatBuffer();
+		faceOffsets = section(data, position + pointCount * 12, (faceCount + 1) * 4).asIntBuffer();
+		faceIndices = section(data, position + pointCount * 12 + (faceCount + 1) * 4, indexCount * 4).asIntBuffer();
+		
+		//Checks if faces each reference AT LEAST three existing points by index
+		if (faceOffsets.get(0) != 0 || faceOffsets.get(faceCount) != indexCount){
+			throw new Error("Face offsets do not cover the face indices!");
+		}
+		for (var i = 0; i < faceCount; i++){
+			if (faceOffsets.get(i + 1) - faceOffsets.get(i) < 3){
+				throw new Error("Not all faces consist of AT LEAST three points defined by index");
+			}
+		}
+		for (var i = 0; i < indexCount; i++){
+			final int index = faceIndices.get(i);
+			if (index < 0 || index >= pointCount){
+				throw new Error("One of your faces references a non-existient point!");
+			}
+		}
+		
+		//Computes average of points and bounds
+		double sumX = 0, sumY = 0, sumZ = 0;
+		double lowX = Globals.Numbers.infinity, lowY = Globals.Numbers.infinity, lowZ = Globals.Numbers.infinity;
+		double highX = -Globals.Numbers.infinity, highY = -Globals.Numbers.infinity, highZ = -Globals.Numbers.infinity;
+		for (var i = 0; i < pointCount; i++){
+			final double pointX = x.get(i);
+			final double pointY = y.get(i);
+			final double pointZ = z.get(i);
+			sumX += pointX;
+			sumY += pointY;
+			sumZ += pointZ;
+			lowX = Math.min(lowX, pointX);
+			lowY = Math.min(lowY, pointY);
+			lowZ = Math.min(lowZ, pointZ);
+			highX = Math.max(highX, pointX);
+			highY = Math.max(highY, pointY);
+			highZ = Math.max(highZ, pointZ);
+		}
+		centerX = sumX / pointCount;
+		centerY = sumY / pointCount;
+		centerZ = sumZ / pointCount;
+		minX = lowX;
+		minY = lowY;
+		minZ = lowZ;
+		maxX = highX;
+		maxY = highY;
+		maxZ = highZ;
+		
+		//Computes bounding sphere radius around the center
+		double furthest = 0;
+		for (var i = 0; i < pointCount; i++){
+			double dX = x.get(i) - centerX;
+			double dY = y.get(i) - centerY;
+			double dZ = z.get(i) - centerZ;
+			furthest = Math.max(furthest, dX * dX + dY * dY + dZ * dZ);
+		}
+		radius = Math.sqrt(furthest);
+	}
+	
+	//Little-endian view of "bytes" bytes of "data" from "position" on
+	private static ByteBuffer section(ByteBuffer data, int position, int bytes){
+		final ByteBuffer section = data.duplicate();
+		section.limit(position + bytes).position(position);
+		return section.slice().order(ByteOrder.LITTLE_ENDIAN);
+	}
+	
+	//Bytes taken by the sections of a mesh. Buffers are indexed by int, so a mesh is limited to 2 GB
+	private static int dataSize(long pointCount, long faceCount, long indexCount){
+		final long size = pointCount * 12 + (faceCount + 1) * 4 + indexCount * 4;
+		if (size > Integer.MAX_VALUE - FILE_HEADER){
+			throw new Error("Mesh is too big to be kept in one buffer!");
+		}
+		return (int) size;
+	}
+	
+	//Copies a mesh into newly allocated direct memory. Coords are rounded to floats. The memory is freed once the
+	//OffHeapMesh is garbage collected
+	public static OffHeapMesh copyOf(@NotNull Mesh mesh){
+		final int[] indices = mesh.getFaceIndices();
+		final int[] offsets = mesh.getFaceOffsets();
+		final ByteBuffer data = ByteBuffer.allocateDirect(dataSize(mesh.getPointCount(), mesh.getFaceCount(), indices.length))
+				.order(ByteOrder.LITTLE_ENDIAN);
+		for (double[] values : new double[][]{mesh.getX(), mesh.getY(), mesh.getZ()}){
+			for (var i = 0; i < values.length; i++){
+				data.putFloat((float) values[i]);
+			}
+		}
+		data.asIntBuffer().put(offsets);
+		data.position(data.position() + offsets.length * 4);
+		data.asIntBuffer().put(indices);
+		data.position(0);
+		return new OffHeapMesh(data, mesh.getPointCount(), mesh.getFaceCount(), indices.length, false);
+	}
+	
+	//Maps a mesh file written by "write(...)". The file is read through once to be checked and measured; after that
+	//its pages are loaded by the operating system as they are used, and can be dropped again under memory pressure
+	public static OffHeapMesh map(@NotNull Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+			final long size = channel.size();
+			if (size < FILE_HEADER){
+				throw new Error("Mesh file is too short: " + path.getFileName() + "!");
+			}
+			final MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			data.order(ByteOrder.LITTLE_ENDIAN);
+			if (data.getInt() != FILE_MAGIC || data.getInt() != FILE_VERSION){
+				throw new Error("Not a mesh file, or one of another version: " + path.getFileName() + "!");
+			}
+			final int pointCount = data.getInt();
+			final int faceCount = data.getInt();
+			final int indexCount = data.getInt();
+			if (pointCount < 0 || faceCount < 0 || indexCount < 0
+					|| size != FILE_HEADER + (long) dataSize(pointCount, faceCount, indexCount)){
+				throw new Error("Mesh file is damaged: " + path.getFileName() + "!");
+			}
+			return new OffHeapMesh(data, pointCount, faceCount, indexCount, true);
+		}
+	}
+	
+	//Writes the mesh to a file that "map(...)" can open. The file is written next to "path" first and then moved over
+	//it, so it is never seen half written
+	public void write(@NotNull Path path) throws IOException {
+		final Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)){
+			final ByteBuffer header = ByteBuffer.allocate(FILE_HEADER).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(FILE_MAGIC).putInt(FILE_VERSION)
+					.putInt(pointCount).putInt(faceCount).putInt(faceIndices.limit());
+			header.flip();
+			final ByteBuffer body = section(data, data.position(), dataSize(pointCount, faceCount, faceIndices.limit()));
+			while (header.hasRemaining() || body.hasRemaining()){
+				channel.write(new ByteBuffer[]{header, body});
+			}
+		}
+		Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+	}
+	
+	public int getPointCount(){
+		return pointCount;
+	}
+	
+	public int getFaceCount(){
+		return faceCount;
+	}
+	
+	//Whether the geometry is a mapped file
+	public boolean isMapped(){
+		return mapped;
+	}
+	
+	//Bytes of geometry held outside the heap
+	public long getByteSize(){
+		return dataSize(pointCount, faceCount, faceIndices.limit());
+	}
+	
+	public double getCenterX(){
+		return centerX;
+	}
+	
+	public double getCenterY(){
+		return centerY;
+	}
+	
+	public double getCenterZ(){
+		return centerZ;
+	}
+	
+	public double getMinX(){
+		return minX;
+	}
+	
+	public double getMinY(){
+		return minY;
+	}
+	
+	public double getMinZ(){
+		return minZ;
+	}
+	
+	public double getMaxX(){
+		return maxX;
+	}
+	
+	public double getMaxY(){
+		return maxY;
+	}
+	
+	public double getMaxZ(){
+		return maxZ;
+	}
+	
+	public double getRadius(){
+		return radius;
+	}
+	
+	//Internal accessors. The views are shared, so they must only be read, and only through absolute gets
+	FloatBuffer getX(){
+		return x;
+	}
+	
+	FloatBuffer getY(){
+		return y;
+	}
+	
+	FloatBuffer getZ(){
+		return z;
+	}
+	
+	IntBuffer getFaceIndices(){
+		return faceIndices;
+	}
+	
+	IntBuffer getFaceOffsets(){
+		return faceOffsets;
+	}
+}
@@ -0,0 +1,71 @@
+package ThreeDimensionalComponents;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+//Render target that draws into a BufferedImage. Needs no display, so it works with java.awt.headless=true
+public class OffscreenRenderTarget implements RenderTarget {
+	
+	private final BufferedImage image;
+	private final Graphics2D Graphics;
+	private final int[] pixels;
+	
+	//Constructor. Accepts the image width and height, and a BufferedImage int pixel format: TYPE_INT_RGB,
+	//TYPE_INT_ARGB, TYPE_INT_ARGB_PRE or TYPE_INT_BGR
+	public OffscreenRenderTarget(int width, int height, int imageType){
+		if (imageType != BufferedImage.TYPE_INT_RGB && imageType != BufferedImage.TYPE_INT_ARGB
+				&& imageType != BufferedImage.TYPE_INT_ARGB_PRE && imageType != BufferedImage.TYPE_INT_BGR){
+			throw new Error("Offscreen targets only support int pixel formats!");
+		}
+		image = new BufferedImage(width, height, imageType);
+		Graphics = image.createGraphics();
+		pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+	}
+	
+	//Constructor. Defaults to TYPE_INT_RGB
+	public OffscreenRenderTarget(int width, int height){
+		this(width, height, BufferedImage.TYPE_INT_RGB);
+	}
+	
+	@Override
+	public Graphics2D getGraphics() {
+		return Graphics;
+	}
+	
+	@Override
+	public int getWidth() {
+		return image.getWidth();
+	}
+	
+	@Override
+	public int getHeight() {
+		return image.getHeight();
+	}
+	
+	//The image always holds the latest frame, so there is nothing to do
+	@Override
+	public void present() {
+	
+	}
+	
+	@Override
+	public Component getComponent() {
+		return null;
+	}
+	
+	//Pixels of the image, in the image's pixel format. Writes show up in the image directly
+	@Override
+	public int[] getPixels() {
+		return pixels;
+	}
+	
+	public BufferedImage getImage() {
+		return image;
+	}
+	
+	@Override
+	public int getImageType() {
+		return image.getType();
+	}
+}
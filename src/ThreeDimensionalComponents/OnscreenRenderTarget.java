@@ -0,0 +1,74 @@
+package ThreeDimensionalComponents;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+//Render target that draws straight onto a Canvas inside its own JFrame
+public class OnscreenRenderTarget implements RenderTarget {
+	
+	//AWT and SWING components
+	private final JFrame frame;
+	private final Canvas canvas;
+	private final Graphics2D Graphics;
+	
+	//Constructor. Accepts the canvas width and height
+	public OnscreenRenderTarget(int width, int height){
+		//Make a frame to hold display, configure
+		frame = new JFrame("3D Display");
+		frame.setSize(width, height);
+		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+		
+		//Make a canvas to draw on, configure
+		canvas = new Canvas();
+		canvas.setSize(width, height);
+		
+		//Add canvas to frame
+		frame.add(canvas);
+		frame.setVisible(true);
+		
+		//Get canvas graphics
+		Graphics = (Graphics2D) canvas.getGraphics();
+	}
+	
+	@Override
+	public Graphics2D getGraphics() {
+		return Graphics;
+	}
+	
+	@Override
+	public int getWidth() {
+		return canvas.getWidth();
+	}
+	
+	@Override
+	public int getHeight() {
+		return canvas.getHeight();
+	}
+	
+	//Basic update
+	@Override
+	public void present() {
+		frame.repaint();
+	}
+	
+	@Override
+	public Component getComponent() {
+		return canvas;
+	}
+	
+	//Drawing goes straight to the screen, so there are no pixels to hand out
+	@Override
+	public int[] getPixels() {
+		return null;
+	}
+	
+	@Override
+	public int getImageType() {
+		return BufferedImage.TYPE_CUSTOM;
+	}
+	
+	public JFrame getFrame() {
+		return frame;
+	}
+}
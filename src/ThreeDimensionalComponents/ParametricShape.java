@@ -0,0 +1,71 @@
+package ThreeDimensionalComponents;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+//Shape defined by a few parameters, tessellated into a Mesh at any number of segments around it. Every shape has a
+//LODMesh of the same few detail levels, built on first use and shared by every equal shape.
+//Only the most recently used shapes keep their tessellations cached, so animated or random sizes do not pile up;
+//a LODMesh already handed out stays valid after it leaves the cache, it just is not shared anymore
+public abstract class ParametricShape {
+	
+	//Detail levels, finest first: segments around the shape, and the smallest screen radius (in pixels) each is used at
+	private static final int[] LEVEL_SEGMENTS = {64, 32, 16, 8, 4};
+	private static final double[] LEVEL_SCREEN_RADIUS = {192, 72, 24, 8, 0};
+	
+	//Most shapes whose tessellations are kept cached
+	private static final int CACHE_SIZE = 64;
+	
+	//Tessellations of recently used shapes, least recently used first. Shapes compare by their parameters
+	private static final LinkedHashMap<ParametricShape, LODMesh> lods = new LinkedHashMap<>(16, 0.75f, true){
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<ParametricShape, LODMesh> eldest){
+			return size() > CACHE_SIZE;
+		}
+	};
+	
+	//Tessellates the shape with "segments" segments around it
+	public abstract Mesh tessellate(int segments);
+	
+	//Returns the shape's levels of detail. Equal shapes get the same instance while it is cached, so their meshes are
+	//only built once
+	public final LODMesh getLOD(){
+		synchronized (lods){
+			LODMesh lod = lods.get(this);
+			if (lod != null){
+				return lod;
+			}
+		}
+		
+		//Tessellated outside the lock, so other shapes are not held up. If another thread got there first, its
+		//result is used
+		Mesh[] levels = new Mesh[LEVEL_SEGMENTS.length];
+		for (var i = 0; i < levels.length; i++){
+			levels[i] = tessellate(LEVEL_SEGMENTS[i]);
+		}
+		synchronized (lods){
+			return lods.computeIfAbsent(this, shape -> new LODMesh(levels, LEVEL_SCREEN_RADIUS));
+		}
+	}
+	
+	//Drops the shape's tessellations from the cache, once nothing is going to draw it again
+	public final void releaseLOD(){
+		synchronized (lods){
+			lods.remove(this);
+		}
+	}
+	
+	//Drops every cached tessellation
+	public static void clearLODs(){
+		synchronized (lods){
+			lods.clear();
+		}
+	}
+	
+	//Subclasses compare by their parameters, so equal shapes share their tessellations
+	@Override
+	public abstract boolean equals(Object other);
+	
+	@Override
+	public abstract int hashCode();
+}
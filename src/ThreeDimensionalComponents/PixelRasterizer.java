@@ -0,0 +1,83 @@
+package ThreeDimensionalComponents;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+//Shared plumbing for backends that write pixels themselves: picks the buffer to draw into and owns the depth buffer.
+//Targets without pixels of their own (like the onscreen target) are drawn through a private image, which is copied
+//over the target when the frame is finished
+abstract class PixelRasterizer extends Rasterizer {
+	
+	//Depth buffer, reused between frames
+	private float[] depth = new float[0];
+	
+	//Private image for targets without pixels
+	private BufferedImage image;
+	private int[] imagePixels;
+	
+	//Pixels and layout picked by the last "beginPixels" call
+	int[] pixels;
+	int imageType;
+	
+	//Clip of the target's Graphics when "beginPixels" was called, or the whole target. The max values are exclusive
+	int clipX0, clipY0, clipX1, clipY1;
+	
+	//Picks the pixels to draw into for this frame
+	void beginPixels(RenderTarget target){
+		final int width = target.getWidth();
+		final int height = target.getHeight();
+		pixels = target.getPixels();
+		imageType = target.getImageType();
+		final Rectangle clip = target.getGraphics().getClipBounds();
+		clipX0 = clip == null ? 0 : clip.x;
+		clipY0 = clip == null ? 0 : clip.y;
+		clipX1 = clip == null ? width : clip.x + clip.width;
+		clipY1 = clip == null ? height : clip.y + clip.height;
+		if (pixels == null){
+			if (image == null || image.getWidth() != width || image.getHeight() != height){
+				image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+				imagePixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+			}
+			Arrays.fill(imagePixels, 0);
+			pixels = imagePixels;
+			imageType = BufferedImage.TYPE_INT_ARGB_PRE;
+		}
+	}
+	
+	//Clears the depth buffer to "nothing drawn" inside the clip rectangle, growing it if needed, and returns it.
+	//Nothing outside the clip is drawn or read, so a small repaint does not pay for clearing the whole screen
+	float[] clearDepth(int width, int height){
+		if (depth.length < width * height){
+			depth = new float[width * height];
+			return depth;
+		}
+		final int x0 = Math.max(0, clipX0), y0 = Math.max(0, clipY0);
+		final int x1 = Math.min(width, clipX1), y1 = Math.min(height, clipY1);
+		if (x0 >= x1 || y0 >= y1){
+			return depth;
+		}
+		if (x0 == 0 && x1 == width){
+			Arrays.fill(depth, y0 * width, y1 * width, 0);
+			return depth;
+		}
+		for (var y = y0; y < y1; y++){
+			Arrays.fill(depth, y * width + x0, y * width + x1, 0);
+		}
+		return depth;
+	}
+	
+	//Copies the private image over the target, if it was used
+	void endPixels(RenderTarget target){
+		if (pixels == imagePixels){
+			target.getGraphics().drawImage(image, 0, 0, null);
+		}
+	}
+	
+	//Gets the depth buffer of the last frame, as 1 / distance per pixel (0 where nothing was drawn). Only the pixels
+	//inside the last clip rectangle are up to date
+	public float[] getDepthBuffer() {
+		return depth;
+	}
+}
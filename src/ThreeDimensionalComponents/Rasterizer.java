@@ -0,0 +1,12 @@
+package ThreeDimensionalComponents;
+
+//Backend that turns the queued faces into pixels. Selected per canvas with "setRasterizer(...)"
+public abstract class Rasterizer {
+	
+	//Whether faces have to be handed over back to front. If false, "drawFaces" gets them in submission order
+	abstract boolean needsSortedFaces();
+	
+	//Draws the faces of the queue, in the given order. "order" is null when the faces are not sorted.
+	//Nothing outside the clip of the target's Graphics may be drawn. Returns the number of faces that were drawn
+	abstract int drawFaces(RenderTarget target, DrawQueue queue, int[] order);
+}
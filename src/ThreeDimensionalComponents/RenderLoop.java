@@ -0,0 +1,92 @@
+package ThreeDimensionalComponents;
+
+import java.util.concurrent.locks.LockSupport;
+
+//Drives a canvas from its own thread, instead of a Swing Timer on the Event Dispatch Thread.
+//The simulation ("tick") runs on a fixed timestep, however long frames take: slow frames are caught up with extra
+//ticks (up to a limit), and fast frames wait for the next tick instead of drawing the same frame twice
+public class RenderLoop implements Runnable {
+	
+	//Most ticks run to catch up before a frame is drawn. Anything beyond that is dropped
+	private static final int MAX_TICKS_PER_FRAME = 5;
+	
+	private final ThreeDimensionalCanvas canvas;
+	private final long tickNanos;
+	
+	//Runs on the render thread after every frame, if set
+	private volatile Runnable frameListener;
+	
+	private volatile boolean running = false;
+	private Thread thread;
+	
+	//Constructor. Accepts the canvas to drive and the length of one simulation tick, in milliseconds
+	public RenderLoop(ThreeDimensionalCanvas canvas, double tickMillis){
+		if (!(tickMillis > 0)){
+			throw new Error("Tick length must be positive");
+		}
+		this.canvas = canvas;
+		this.tickNanos = (long) (tickMillis * 1e6);
+	}
+	
+	public void setFrameListener(Runnable frameListener){
+		this.frameListener = frameListener;
+	}
+	
+	//Starts the render thread
+	public synchronized void start(){
+		if (running){
+			throw new Error("Render loop is already running!");
+		}
+		running = true;
+		thread = new Thread(this, "3D Render Loop");
+		thread.start();
+	}
+	
+	//Stops the render thread, and waits for the current frame to finish. Called from the render thread itself (such as
+	//from the frame listener or "tick"), it only stops the loop after the current frame, as the thread can not wait
+	//for itself
+	public synchronized void stop() throws InterruptedException {
+		running = false;
+		if (thread != null && Thread.currentThread() != thread){
+			thread.join();
+			thread = null;
+		}
+	}
+	
+	public boolean isRunning(){
+		return running;
+	}
+	
+	@Override
+	public void run() {
+		long previous = System.nanoTime();
+		long accumulator = tickNanos;
+		while (running){
+			long now = System.nanoTime();
+			accumulator += now - previous;
+			previous = now;
+			
+			//Waits for the next tick, rather than drawing an identical frame
+			if (accumulator < tickNanos){
+				LockSupport.parkNanos(tickNanos - accumulator);
+				continue;
+			}
+			
+			int ticks = 0;
+			while (accumulator >= tickNanos && ticks < MAX_TICKS_PER_FRAME){
+				canvas.tick();
+				accumulator -= tickNanos;
+				ticks++;
+			}
+			if (accumulator >= tickNanos){
+				accumulator = 0;
+			}
+			
+			canvas.render();
+			Runnable listener = frameListener;
+			if (listener != null){
+				listener.run();
+			}
+		}
+	}
+}
@@ -0,0 +1,26 @@
+package ThreeDimensionalComponents;
+
+import java.awt.*;
+
+//Something a ThreeDimensionalCanvas can draw into. The same add3DShape/drawShapes pipeline renders into any target
+public interface RenderTarget {
+	
+	//Graphics to draw with. Always the same instance for the lifetime of the target
+	Graphics2D getGraphics();
+	
+	//Size of the drawable area
+	int getWidth();
+	int getHeight();
+	
+	//Makes the finished frame visible, if the target is visible at all
+	void present();
+	
+	//Component that receives mouse and key events, or null if the target is not on screen
+	Component getComponent();
+	
+	//Direct access to the pixels, one int per pixel in row-major order, or null if the target does not have any
+	int[] getPixels();
+	
+	//BufferedImage type the pixels are laid out in, or BufferedImage.TYPE_CUSTOM if the target has no pixels
+	int getImageType();
+}
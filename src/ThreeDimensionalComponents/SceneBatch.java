@@ -0,0 +1,126 @@
+package ThreeDimensionalComponents;
+
+import java.util.Arrays;
+
+//Scene graph flattened for drawing. Nodes are kept in depth-first order, so every node comes after its parent and one
+//pass updates the whole tree. Every node with a mesh is a part, whose world matrix and colors are packed into flat
+//arrays, so the transform stage reads every part of the scene from one contiguous batch.
+//The tree is only walked again when its structure changed; otherwise an update only checks each node's dirty flag,
+//and recomputes the world matrices of the nodes that moved and of everything below them
+final class SceneBatch {
+	
+	//Values per part in the matrix buffer: the top three rows of its world matrix
+	static final int MATRIX_STRIDE = 12;
+	
+	private final SceneNode root;
+	private int builtVersion = -1;
+	
+	//Nodes in depth-first order, the index of each one's parent (-1 for the root), whether its world matrix was
+	//recomputed by the current update, and its part, or -1 if it has no mesh
+	private SceneNode[] nodes = new SceneNode[16];
+	private int[] parents = new int[16];
+	private boolean[] recomputed = new boolean[16];
+	private int[] nodeParts = new int[16];
+	private int nodeCount = 0;
+	
+	//Per part: mesh, packed world matrix, and packed ARGB line and face colors, two values each
+	Mesh[] meshes = new Mesh[16];
+	double[] matrices = new double[16 * MATRIX_STRIDE];
+	int[] colors = new int[16 * 2];
+	int partCount = 0;
+	
+	//World matrices recomputed by the last update
+	int recomputedCount = 0;
+	
+	//Scratch space: the transform of the node being updated, and the traversal stack
+	private final Matrix4 local = new Matrix4();
+	private SceneNode[] stack = new SceneNode[16];
+	private int[] stackParents = new int[16];
+	
+	SceneBatch(SceneNode root){
+		this.root = root;
+	}
+	
+	//Brings every world matrix, mesh and color up to date
+	void update(){
+		final boolean rebuilt = builtVersion != root.structureVersion;
+		if (rebuilt){
+			flatten();
+			builtVersion = root.structureVersion;
+		}
+		
+		recomputedCount = 0;
+		for (var i = 0; i < nodeCount; i++){
+			final SceneNode node = nodes[i];
+			final int parent = parents[i];
+			recomputed[i] = rebuilt || node.dirty || (parent >= 0 && recomputed[parent]);
+			if (recomputed[i]){
+				node.getLocal(local);
+				if (parent < 0){
+					node.world.set(local);
+				} else {
+					node.world.multiply(nodes[parent].world, local);
+				}
+				node.dirty = false;
+				recomputedCount++;
+			}
+			final int part = nodeParts[i];
+			if (part >= 0){
+				if (recomputed[i]){
+					System.arraycopy(node.world.m, 0, matrices, part * MATRIX_STRIDE, MATRIX_STRIDE);
+				}
+				colors[part * 2] = node.getLineColor().getRGB();
+				colors[part * 2 + 1] = node.getFaceColor().getRGB();
+			}
+		}
+	}
+	
+	//Lists the nodes in depth-first order, and the parts among them
+	private void flatten(){
+		nodeCount = 0;
+		partCount = 0;
+		int top = 0;
+		stack[top] = root;
+		stackParents[top++] = -1;
+		while (top > 0){
+			final SceneNode node = stack[--top];
+			final int parent = stackParents[top];
+			if (nodeCount == nodes.length){
+				final int length = nodeCount * 2;
+				nodes = Arrays.copyOf(nodes, length);
+				parents = Arrays.copyOf(parents, length);
+				recomputed = Arrays.copyOf(recomputed, length);
+				nodeParts = Arrays.copyOf(nodeParts, length);
+			}
+			final int index = nodeCount++;
+			nodes[index] = node;
+			parents[index] = parent;
+			nodeParts[index] = -1;
+			if (node.getMesh() != null){
+				if (partCount == meshes.length){
+					final int length = partCount * 2;
+					meshes = Arrays.copyOf(meshes, length);
+					matrices = Arrays.copyOf(matrices, length * MATRIX_STRIDE);
+					colors = Arrays.copyOf(colors, length * 2);
+				}
+				meshes[partCount] = node.getMesh();
+				nodeParts[index] = partCount++;
+			}
+			
+			//Children are pushed last to first, so they come out in order
+			if (top + node.getChildCount() > stack.length){
+				final int length = Math.max(top + node.getChildCount(), stack.length * 2);
+				stack = Arrays.copyOf(stack, length);
+				stackParents = Arrays.copyOf(stackParents, length);
+			}
+			for (var i = node.getChildCount() - 1; i >= 0; i--){
+				stack[top] = node.getChild(i);
+				stackParents[top++] = index;
+			}
+		}
+		
+		//Drops nodes and meshes that are no longer in the tree, so they can be collected
+		Arrays.fill(nodes, nodeCount, nodes.length, null);
+		Arrays.fill(meshes, partCount, meshes.length, null);
+	}
+}
@@ -0,0 +1,175 @@
+package ThreeDimensionalComponents;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.awt.*;
+import java.util.ArrayList;
+
+//Node of a scene graph. Every node has a transform relative to its parent (a rotation about its origin, then a
+//position), any number of children, and optionally a mesh, drawn in the node's space. Composite objects are built as
+//trees of nodes, so moving a node moves everything below it.
+//A tree is drawn by passing its root to "addScene(...)" on a canvas. World transforms are cached per node, and only
+//recomputed for nodes that changed, or whose ancestors changed, since the last frame
+public final class SceneNode {
+	
+	//Transform relative to the parent. Rotation values are in radians
+	private double thetaX;
+	private double thetaY;
+	private double thetaZ;
+	private double positionX;
+	private double positionY;
+	private double positionZ;
+	
+	//Mesh drawn in the node's space and its colors, or null if the node only groups its children
+	private Mesh mesh;
+	private Color lineColor;
+	private Color faceColor;
+	
+	private SceneNode parent;
+	private final ArrayList<SceneNode> children = new ArrayList<>();
+	
+	//Whether the transform changed since the world matrix was last computed
+	boolean dirty = true;
+	
+	//World matrix, as of the last update of the tree
+	final Matrix4 world = new Matrix4();
+	
+	//Bumped on the root whenever nodes or meshes are added to or removed from the tree below it
+	int structureVersion = 0;
+	
+	//Flattened tree, if this node was drawn as a root
+	SceneBatch batch;
+	
+	//Constructor. A node without a mesh, only grouping its children
+	public SceneNode(){
+	}
+	//Constructor. A node drawing a mesh with the given colors
+	public SceneNode(@NotNull Mesh mesh, Color lineColor, Color faceColor){
+		setMesh(mesh, lineColor, faceColor);
+	}
+	
+	//Adds a child, and returns it. A node can only have one parent
+	public SceneNode add(@NotNull SceneNode child){
+		if (child.parent != null){
+			throw new Error("Scene node already has a parent!");
+		}
+		for (SceneNode node = this; node != null; node = node.parent){
+			if (node == child){
+				throw new Error("Scene node can not be its own descendant!");
+			}
+		}
+		child.parent = this;
+		child.dirty = true;
+		children.add(child);
+		structureChanged();
+		return child;
+	}
+	
+	public void remove(@NotNull SceneNode child){
+		if (child.parent != this){
+			throw new Error("Scene node is not a child of this node!");
+		}
+		children.remove(child);
+		child.parent = null;
+		child.dirty = true;
+		structureChanged();
+	}
+	
+	//Sets the mesh drawn in the node's space, or removes it with null
+	public void setMesh(Mesh mesh, Color lineColor, Color faceColor){
+		this.mesh = mesh;
+		setColors(lineColor, faceColor);
+		structureChanged();
+	}
+	
+	public void setColors(Color lineColor, Color faceColor){
+		this.lineColor = lineColor;
+		this.faceColor = faceColor;
+	}
+	
+	//Sets rotation values (in radians) along the X, Y, and Z axis. Only marks the node dirty if something changed
+	public void setRotation(double thetaX, double thetaY, double thetaZ){
+		if (this.thetaX != thetaX || this.thetaY != thetaY || this.thetaZ != thetaZ){
+			this.thetaX = thetaX;
+			this.thetaY = thetaY;
+			this.thetaZ = thetaZ;
+			dirty = true;
+		}
+	}
+	
+	//Sets the position relative to the parent. Only marks the node dirty if something changed
+	public void setPosition(double positionX, double positionY, double positionZ){
+		if (this.positionX != positionX || this.positionY != positionY || this.positionZ != positionZ){
+			this.positionX = positionX;
+			this.positionY = positionY;
+			this.positionZ = positionZ;
+			dirty = true;
+		}
+	}
+	
+	//Bumps the structure version of the root, so the tree is flattened again before it is next drawn
+	private void structureChanged(){
+		SceneNode root = this;
+		while (root.parent != null){
+			root = root.parent;
+		}
+		root.structureVersion++;
+	}
+	
+	//Sets "local" to the node's transform relative to its parent
+	void getLocal(Matrix4 local){
+		local.setIdentity()
+				.translate(positionX, positionY, positionZ)
+				.rotateZ(thetaZ)
+				.rotateY(thetaY)
+				.rotateX(thetaX);
+	}
+	
+	public Mesh getMesh(){
+		return mesh;
+	}
+	
+	public Color getLineColor(){
+		return lineColor;
+	}
+	
+	public Color getFaceColor(){
+		return faceColor;
+	}
+	
+	public SceneNode getParent(){
+		return parent;
+	}
+	
+	public int getChildCount(){
+		return children.size();
+	}
+	
+	public SceneNode getChild(int index){
+		return children.get(index);
+	}
+	
+	public double getThetaX(){
+		return thetaX;
+	}
+	
+	public double getThetaY(){
+		return thetaY;
+	}
+	
+	public double getThetaZ(){
+		return thetaZ;
+	}
+	
+	public double getPositionX(){
+		return positionX;
+	}
+	
+	public double getPositionY(){
+		return positionY;
+	}
+	
+	public double getPositionZ(){
+		return positionZ;
+	}
+}
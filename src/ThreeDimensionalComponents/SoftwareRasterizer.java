@@ -0,0 +1,292 @@
+package ThreeDimensionalComponents;
+
+import java.awt.image.BufferedImage;
+
+//Scan converts queued faces straight into an int[] color buffer, with an optional float[] depth buffer.
+//Faces are split into a triangle fan and filled with edge functions, stepped incrementally across each row. Shared
+//edges follow the top-left rule, so no pixel is blended twice. Depth is stored as 1 / distance, which is linear in
+//screen space; 0 means nothing has been drawn yet, and larger values are closer.
+//Everything is clipped to a rectangle, so several rasterizers can work on separate parts of the same buffers
+final class SoftwareRasterizer {
+	
+	//Lines are drawn if they are at most this much (relatively) behind the depth buffer, so outlines show on their face
+	private static final float LINE_DEPTH_BIAS = 1e-3f;
+	
+	//How blending treats the destination pixels
+	private static final int OPAQUE = 0;
+	private static final int PREMULTIPLIED = 1;
+	private static final int STRAIGHT = 2;
+	
+	//Buffers being drawn into
+	private int[] pixels;
+	private float[] depth;
+	private int width;
+	private int height;
+	private int blendMode;
+	private boolean swapRedBlue;
+	
+	//Clip rectangle. The max values are exclusive
+	private int clipX0, clipY0, clipX1, clipY1;
+	
+	//Scratch space for clipping lines: direction and distance to each side of the clip rectangle
+	private final double[] clipDirections = new double[4];
+	private final double[] clipDistances = new double[4];
+	
+	//Sets the buffers to draw into. "depth" may be null, in which case no depth testing is done.
+	//"imageType" is the BufferedImage type the pixels are laid out in
+	void setTarget(int[] pixels, float[] depth, int width, int height, int imageType){
+		this.pixels = pixels;
+		this.depth = depth;
+		this.width = width;
+		this.height = height;
+		switch (imageType){
+			case BufferedImage.TYPE_INT_ARGB_PRE:
+				blendMode = PREMULTIPLIED;
+				break;
+			case BufferedImage.TYPE_INT_ARGB:
+				blendMode = STRAIGHT;
+				break;
+			case BufferedImage.TYPE_INT_RGB:
+			case BufferedImage.TYPE_INT_BGR:
+				blendMode = OPAQUE;
+				break;
+			default:
+				throw new Error("Software rasterizer only supports int pixel formats!");
+		}
+		swapRedBlue = imageType == BufferedImage.TYPE_INT_BGR;
+		setClip(0, 0, width, height);
+	}
+	
+	//Restricts drawing to a rectangle. The max values are exclusive
+	void setClip(int x0, int y0, int x1, int y1){
+		clipX0 = Math.max(0, x0);
+		clipY0 = Math.max(0, y0);
+		clipX1 = Math.min(width, x1);
+		clipY1 = Math.min(height, y1);
+	}
+	
+	//Converts a straight ARGB color to the layout of the pixel buffer
+	private int toPixel(int argb){
+		if (swapRedBlue){
+			argb = (argb & 0xff00ff00) | ((argb >> 16) & 0xff) | ((argb & 0xff) << 16);
+		}
+		if (blendMode == PREMULTIPLIED){
+			int alpha = argb >>> 24;
+			argb = (alpha << 24)
+					| (((argb >> 16) & 0xff) * alpha / 255) << 16
+					| (((argb >> 8) & 0xff) * alpha / 255) << 8
+					| ((argb & 0xff) * alpha / 255);
+		}
+		return argb;
+	}
+	
+	//Blends a source pixel (already converted by "toPixel") with alpha over a destination pixel
+	private int blend(int dst, int src, int alpha){
+		if (alpha == 255){
+			return src;
+		}
+		switch (blendMode){
+			case PREMULTIPLIED: {
+				int inverse = 255 - alpha;
+				return src + ((((dst >>> 24) * inverse / 255) << 24)
+						| ((((dst >> 16) & 0xff) * inverse / 255) << 16)
+						| ((((dst >> 8) & 0xff) * inverse / 255) << 8)
+						| ((dst & 0xff) * inverse / 255));
+			}
+			case STRAIGHT: {
+				int dstAlpha = dst >>> 24;
+				int weight = dstAlpha * (255 - alpha) / 255;
+				int outAlpha = alpha + weight;
+				if (outAlpha == 0){
+					return 0;
+				}
+				return (outAlpha << 24)
+						| ((((src >> 16) & 0xff) * alpha + ((dst >> 16) & 0xff) * weight) / outAlpha) << 16
+						| ((((src >> 8) & 0xff) * alpha + ((dst >> 8) & 0xff) * weight) / outAlpha) << 8
+						| (((src & 0xff) * alpha + (dst & 0xff) * weight) / outAlpha);
+			}
+			default: {
+				int inverse = 255 - alpha;
+				return 0xff000000
+						| ((((src >> 16) & 0xff) * alpha + ((dst >> 16) & 0xff) * inverse) / 255) << 16
+						| ((((src >> 8) & 0xff) * alpha + ((dst >> 8) & 0xff) * inverse) / 255) << 8
+						| (((src & 0xff) * alpha + (dst & 0xff) * inverse) / 255);
+			}
+		}
+	}
+	
+	//Fills a face with its face color. Opaque faces write depth, translucent faces only test against it
+	void fillFace(DrawQueue queue, int face){
+		final int argb = queue.faceColors[face];
+		final int alpha = argb >>> 24;
+		if (alpha == 0){
+			return;
+		}
+		final int color = toPixel(argb);
+		final int start = queue.faceStart[face];
+		final int end = start + queue.faceSize[face];
+		for (var i = start + 1; i < end - 1; i++){
+			fillTriangle(queue, start, i, i + 1, color, alpha);
+		}
+	}
+	
+	private void fillTriangle(DrawQueue queue, int a, int b, int c, int color, int alpha){
+		double x0 = queue.pointX[a], y0 = queue.pointY[a], w0 = 1 / -queue.pointZ[a];
+		double x1 = queue.pointX[b], y1 = queue.pointY[b], w1 = 1 / -queue.pointZ[b];
+		double x2 = queue.pointX[c], y2 = queue.pointY[c], w2 = 1 / -queue.pointZ[c];
+		
+		//Makes the winding consistent, so "inside" is always positive
+		double area = (x1 - x0) * (y2 - y0) - (y1 - y0) * (x2 - x0);
+		if (area == 0 || Double.isNaN(area)){
+			return;
+		}
+		if (area < 0){
+			double temp = x1; x1 = x2; x2 = temp;
+			temp = y1; y1 = y2; y2 = temp;
+			temp = w1; w1 = w2; w2 = temp;
+			area = -area;
+		}
+		
+		//Bounding box, clipped
+		int minX = Math.max(clipX0, (int) Math.floor(Math.min(x0, Math.min(x1, x2))));
+		int minY = Math.max(clipY0, (int) Math.floor(Math.min(y0, Math.min(y1, y2))));
+		int maxX = Math.min(clipX1 - 1, (int) Math.ceil(Math.max(x0, Math.max(x1, x2))));
+		int maxY = Math.min(clipY1 - 1, (int) Math.ceil(Math.max(y0, Math.max(y1, y2))));
+		if (minX > maxX || minY > maxY){
+			return;
+		}
+		
+		//Per-pixel steps of each edge function
+		final double stepX12 = -(y2 - y1), stepY12 = x2 - x1;
+		final double stepX20 = -(y0 - y2), stepY20 = x0 - x2;
+		final double stepX01 = -(y1 - y0), stepY01 = x1 - x0;
+		
+		//Top-left rule: pixels exactly on an edge only belong to top and left edges
+		final boolean topLeft12 = isTopLeft(x1, y1, x2, y2);
+		final boolean topLeft20 = isTopLeft(x2, y2, x0, y0);
+		final boolean topLeft01 = isTopLeft(x0, y0, x1, y1);
+		
+		//Edge functions at the center of the first pixel
+		final double px = minX + 0.5, py = minY + 0.5;
+		double row12 = (x2 - x1) * (py - y1) - (y2 - y1) * (px - x1);
+		double row20 = (x0 - x2) * (py - y2) - (y0 - y2) * (px - x2);
+		double row01 = (x1 - x0) * (py - y0) - (y1 - y0) * (px - x0);
+		
+		//Depth, as a plane over the edge functions
+		final double inverseArea = 1 / area;
+		final double depthW0 = w0 * inverseArea, depthW1 = w1 * inverseArea, depthW2 = w2 * inverseArea;
+		final boolean writeDepth = alpha == 255;
+		
+		for (var y = minY; y <= maxY; y++){
+			double e12 = row12, e20 = row20, e01 = row01;
+			int index = y * width + minX;
+			for (var x = minX; x <= maxX; x++, index++){
+				if ((e12 > 0 || (e12 == 0 && topLeft12))
+						&& (e20 > 0 || (e20 == 0 && topLeft20))
+						&& (e01 > 0 || (e01 == 0 && topLeft01))){
+					if (depth == null){
+						pixels[index] = blend(pixels[index], color, alpha);
+					} else {
+						float w = (float) (e12 * depthW0 + e20 * depthW1 + e01 * depthW2);
+						if (w > depth[index]){
+							pixels[index] = blend(pixels[index], color, alpha);
+							if (writeDepth){
+								depth[index] = w;
+							}
+						}
+					}
+				}
+				e12 += stepX12;
+				e20 += stepX20;
+				e01 += stepX01;
+			}
+			row12 += stepY12;
+			row20 += stepY20;
+			row01 += stepY01;
+		}
+	}
+	
+	//Top edges are horizontal and go right, left edges go up
+	private static boolean isTopLeft(double ax, double ay, double bx, double by){
+		return (ay == by && bx > ax) || by < ay;
+	}
+	
+	//Draws the outline of a face with its line color
+	void strokeFace(DrawQueue queue, int face){
+		final int argb = queue.lineColors[face];
+		final int alpha = argb >>> 24;
+		if (alpha == 0){
+			return;
+		}
+		final int color = toPixel(argb);
+		final int start = queue.faceStart[face];
+		final int size = queue.faceSize[face];
+		for (var i = 0; i < size; i++){
+			drawLine(queue, start + i, start + (i + 1) % size, color, alpha);
+		}
+	}
+	
+	//Steps along a line one pixel at a time, interpolating depth in screen space
+	private void drawLine(DrawQueue queue, int a, int b, int color, int alpha){
+		final double x0 = queue.pointX[a], y0 = queue.pointY[a], w0 = 1 / -queue.pointZ[a];
+		final double x1 = queue.pointX[b], y1 = queue.pointY[b], w1 = 1 / -queue.pointZ[b];
+		final double length = Math.max(Math.abs(x1 - x0), Math.abs(y1 - y0));
+		if (Double.isNaN(length) || Double.isInfinite(length)){
+			return;
+		}
+		final int steps = Math.max(1, (int) Math.ceil(length));
+		
+		//Clips the line to the clip rectangle (Liang-Barsky), so only its visible part is stepped along. Edges of
+		//faces clipped at the near plane can reach far off screen. The range is widened by a step on each side, so
+		//rounding never drops a pixel the per-pixel test below would keep
+		final double dx = x1 - x0, dy = y1 - y0;
+		double tMin = 0, tMax = 1;
+		final double[] p = clipDirections;
+		final double[] q = clipDistances;
+		p[0] = -dx; q[0] = x0 - clipX0;
+		p[1] = dx; q[1] = clipX1 - x0;
+		p[2] = -dy; q[2] = y0 - clipY0;
+		p[3] = dy; q[3] = clipY1 - y0;
+		for (var i = 0; i < 4; i++){
+			if (p[i] == 0){
+				if (q[i] < 0){
+					return;
+				}
+			} else {
+				double t = q[i] / p[i];
+				if (p[i] < 0){
+					tMin = Math.max(tMin, t);
+				} else {
+					tMax = Math.min(tMax, t);
+				}
+			}
+		}
+		if (tMin > tMax){
+			return;
+		}
+		final int first = (int) Math.max(0, Math.floor(tMin * steps) - 1);
+		final int last = (int) Math.min(steps, Math.ceil(tMax * steps) + 1);
+		
+		int lastIndex = -1;
+		for (var i = first; i <= last; i++){
+			double t = (double) i / steps;
+			int x = (int) Math.floor(x0 + dx * t);
+			int y = (int) Math.floor(y0 + dy * t);
+			if (x < clipX0 || x >= clipX1 || y < clipY0 || y >= clipY1){
+				continue;
+			}
+			int index = y * width + x;
+			if (index == lastIndex){
+				continue;
+			}
+			lastIndex = index;
+			if (depth != null){
+				float w = (float) (w0 + (w1 - w0) * t);
+				if (w * (1 + LINE_DEPTH_BIAS) < depth[index]){
+					continue;
+				}
+			}
+			pixels[index] = blend(pixels[index], color, alpha);
+		}
+	}
+}
@@ -2,13 +2,19 @@ package ThreeDimensionalComponents;
 
 import org.jetbrains.annotations.NotNull;
 
-import javax.swing.*;
 import java.awt.*;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseMotionListener;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static java.lang.Math.*;
 
@@ -18,9 +24,8 @@ public class ThreeDimensionalCanvas extends Canvas implements MouseMotionListene
 	//============Global Constants=============
 	//-----------------------------------------
 	
-	//AWT and SWING components
-	private final JFrame frame;
-	private final Canvas canvas;
+	//Render target, and its graphics
+	private final RenderTarget target;
 	private final Graphics2D Graphics;
 	
 	//Background and text colors
@@ -34,16 +39,18 @@ public class ThreeDimensionalCanvas extends Canvas implements MouseMotionListene
 	//Field of view
 	private final double FOV;
 	
+	//Line list of shapes that only have faces
+	private static final int[][] NO_LINES = new int[0][];
+	
 	//-----------------------------------------
 	//============Global Variables=============
 	//-----------------------------------------
 	
-	//Keybind Booleans
-	private boolean[] keyValues = new boolean[5];
+	//Latest keyboard and mouse snapshot, published by the input listeners
+	private final AtomicReference<InputState> input = new AtomicReference<>(InputState.INITIAL);
 	
-	//Mouse Position
-	private double mouseX = -1;
-	private double mouseY = -1;
+	//Snapshot the last tick was run with
+	private InputState appliedInput = InputState.INITIAL;
 	
 	//General rotation of shapes in environment
 	private double rotX = 0;
@@ -56,35 +63,145 @@ public class ThreeDimensionalCanvas extends Canvas implements MouseMotionListene
 	private double camY = 0;
 	private double camZ = 10000;
 	
+	//Bumped whenever any camera variable changes, so registered meshes know when to rebuild
+	private int cameraVersion = 0;
+	
+	//Cached view matrix, and the camera version it was built from
+	private final Matrix4 viewMatrix = new Matrix4();
+	private int viewVersion = -1;
+	
+	//Scratch space for the transform stage
+	private final Matrix4 modelView = new Matrix4();
+	private final VertexBuffer immediateVertices = new VertexBuffer();
+	private final ThreeDimensionalShape immediateShape = new ThreeDimensionalShape();
+	
+	//Point storage for immediately drawn shapes
+	private int[] polygonX = new int[16];
+	private int[] polygonY = new int[16];
+	
+	//Commands of immediately drawn shapes, and their colors
+	private final DrawCommands immediateCommands = new DrawCommands();
+	private final ColorCache immediateColors = new ColorCache();
+	
+	//Indices of the off-heap face being added
+	private int[] meshFace = new int[16];
+	
 	//Non-essential variables for default loop
 	private double volY = 0;
 	
+	//Colliders of registered meshes and collidable instances, whether the camera stood on one after its last move,
+	//and the center of the camera's body
+	private final CollisionGrid collisionGrid = new CollisionGrid(Globals.Physics.cellSize);
+	private boolean onGround = false;
+	private final double[] body = new double[3];
+	
 	//Short-term storage for pre-rendered shapes
-	private ArrayList<Polygon> storedFaces = new ArrayList<>();
-	private ArrayList<Double> zIndex = new ArrayList<>();
-	private ArrayList<Color> faceColors = new ArrayList<>();
-	private ArrayList<Color> lineColors = new ArrayList<>();
+	private final DrawQueue queue = new DrawQueue();
+	
+	//Backend drawing the queued faces
+	private Rasterizer rasterizer = new Graphics2DRasterizer();
+	
+	//Depth sorter for the draw queue, kept between frames so it can reuse its buffers and the previous order
+	private final DepthSorter depthSorter = new DepthSorter();
+	
+	//Long-term storage for registered meshes
+	private final ArrayList<MeshHandle> meshes = new ArrayList<>();
+	
+	//Registered meshes, indexed by their world-space bounds, and how many faces they have in total
+	private final MeshBVH meshTree = new MeshBVH();
+	private int registeredFaces = 0;
+	private int meshSequence = 0;
+	
+	//Registered meshes in view this frame, in registration order, and the scratch space used to find and order them
+	private final ArrayList<MeshHandle> visibleMeshes = new ArrayList<>();
+	private final ArrayList<MeshHandle> meshQuery = new ArrayList<>();
+	private final DepthSorter meshSorter = new DepthSorter();
+	private double[] meshKeys = new double[64];
+	
+	//Registered meshes that need a rebuild this frame
+	private final ArrayList<MeshHandle> dirtyMeshes = new ArrayList<>();
+	
+	//Static geometry, drawn in BSP order without sorting, or null if there is none
+	private BSPTree staticGeometry = null;
+	
+	//Draw order of sorted dynamic faces merged with static faces, reused between frames
+	private int[] mergedOrder = new int[64];
+	
+	//Incremental repaint: whether it is on, and the parts of the screen that changed since the last frame
+	private boolean incrementalRepaint = false;
+	private final DirtyRegions dirtyRegions = new DirtyRegions();
+	
+	//Whether the next frame has to be repainted in full, and the camera version the last frame was painted with
+	private boolean repaintAll = true;
+	private int paintedCameraVersion = -1;
+	
+	//Whether something was drawn straight onto the target this frame, which cannot be compared between frames
+	private boolean immediateDrawn = false;
+	
+	//Whether the last "drawShapes" call found nothing changed, so there is nothing to present
+	private boolean frameSkipped = false;
+	
+	//Exporter every presented frame is captured to, if any
+	private FrameExporter frameExporter = null;
+	
+	//Log every frame's drawing calls are recorded to, if any
+	private FrameRecorder recorder = null;
+	
+	//Screen bounds of every queued face, and the faces touching the region being repainted, in draw order
+	private int[] faceBounds = new int[256];
+	private final DrawQueue regionQueue = new DrawQueue();
+	private int[] regionOrder = new int[0];
+	
+	//Text waiting to be drawn beneath the shapes: the characters, then per text its start, length, x and y. Texts
+	//before "pendingDrawn" were drawn already
+	private char[] pendingChars = new char[256];
+	private int[] pendingTexts = new int[16];
+	private int pendingCount = 0;
+	private int pendingDrawn = 0;
+	
+	//Inverse of the view matrix, for picking
+	private final Matrix4 inverseView = new Matrix4();
+	
+	//Visibility stage: frustum for culling whole meshes, near-plane clipper for faces, and back-face culling switch
+	private final Frustum frustum = new Frustum();
+	private final FaceClipper clipper = new FaceClipper();
+	private boolean cullBackFaces = false;
+	
+	//Pool used to rebuild registered meshes in parallel, or null to rebuild them on the calling thread
+	private ForkJoinPool transformPool = null;
+	
+	//Registered meshes and instances for the default loop, created on first use
+	private MeshHandle[] defaultShapes;
+	private MeshInstances defaultInstances;
+	
+	//Per-stage timings and face counters of presented frames
+	private final FrameStats frameStats = new FrameStats();
+	
+	//Running totals of the frame being drawn, recorded and reset by "update()"
+	private final long[] stageNanos = new long[FrameStats.STAGE_COUNT];
+	private int facesSubmitted = 0;
+	private int facesCulled = 0;
+	private int facesDrawn = 0;
+	
+	//When the last frame was presented, or -1 before the first one
+	private long lastPresent = -1;
+	
+	//Never committed, only used to check if a recording wants frame events
+	private final FrameEvent frameEventProbe = new FrameEvent();
 	
 	//Default upper-left hand text. Can be modified via "updateDebug(char[])"
 	private char[] debug = "Move mouse to center of display!".toCharArray();
 	
 	//Constructor. By default, it accepts FOV, canvas width, canvas height, canvas center of x and y, and background color
 	public ThreeDimensionalCanvas(double FOV, int width, int height, int centerX, int centerY, Color background, Color textColor){
-		//Make a frame to hold display, configure
-		frame = new JFrame("3D Display");
-		frame.setSize(width, height);
-		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-		
-		//Make a canvas to draw on, configure
-		canvas = new Canvas();
-		canvas.setSize(width, height);
-		
-		//Add canvas to frame
-		frame.add(canvas);
-		frame.setVisible(true);
+		this(FOV, new OnscreenRenderTarget(width, height), centerX, centerY, background, textColor);
+	}
+	//Constructor. Same as above, but draws into the given render target instead of its own window
+	public ThreeDimensionalCanvas(double FOV, @NotNull RenderTarget target, int centerX, int centerY, Color background, Color textColor){
+		this.target = target;
 		
-		//Get canvas graphics, configure background
-		Graphics = (Graphics2D) canvas.getGraphics();
+		//Get target graphics, configure background
+		Graphics = target.getGraphics();
 		this.background = background;
 		this.TextColor = textColor;
 		Graphics.setBackground(background);
@@ -94,17 +211,23 @@ public class ThreeDimensionalCanvas extends Canvas implements MouseMotionListene
 		this.centerY = centerY;
 		
 		this.FOV = FOV;
+		frustum.set(FOV, centerX, centerY, target.getWidth(), target.getHeight(), Globals.Camera.nearPlane);
+		clipper.setProjection(FOV, centerX, centerY);
 		
-		//Setup event listeners
-		canvas.addMouseMotionListener(this);
+		//Setup event listeners, if the target is on screen
 		addMouseMotionListener(this);
-		canvas.addKeyListener(this);
+		Component component = target.getComponent();
+		if (component != null){
+			component.addMouseMotionListener(this);
+			component.addKeyListener(this);
+		}
 	}
 	//Processes a shape for further use. Accepts lists of the x, y, and z coords of various points; Lists of all line
 	//pairs and shape groups; rotation values (in degress) along the X, Y, and Z axis
 	private ThreeDimensionalShape processShape(double[] x, double[] y, double[] z,
 	                                           @NotNull int[][] lineList, int[][] faceList,
 	                                           double thetaX, double thetaY, double thetaZ){
+		final long start = System.nanoTime();
 		
 		//Checks if point arrays are properly set up
 		if (!(x.length == y.length && y.length == z.length)){
@@ -116,30 +239,28 @@ public class ThreeDimensionalCanvas extends Canvas implements MouseMotionListene
 				throw new Error("Not all lines are two point pairs defined by index");
 			}
 		}
-		//Checks if faces each reference AT LEAST three points by index
+		//Checks if faces each reference AT LEAST three existing points by index
 		for (var i = 0; i < faceList.length; i++){
 			if (faceList[i].length < 3){
 				throw new Error("Not all faces consist of AT LEAST three points defined by index");
 			}
+			for (var j = 0; j < faceList[i].length; j++){
+				if (faceList[i][j] < 0 || faceList[i][j] >= x.length){
+					throw new Error("One of your faces references a non-existient point!");
+				}
+			}
 		}
 		
 		//General working array length
 		final int pointCount = x.length;
 		
-		//Pans camera
-		for (var i = 0; i < pointCount; i++){
-			x[i] -= camX;
-			y[i] -= camY;
-			z[i] -= camZ;
-		}
-		
 		//Sets up variables for center of shape
 		double centerX = 0;
 		double centerY = 0;
 		double centerZ = 0;
 		
 		//Computes average of points, sets it to center
-		for (var i = 0; i < x.length; i++){
+		for (var i = 0; i < pointCount; i++){
 			centerX += x[i];
 			centerY += y[i];
 			centerZ += z[i];
@@ -149,56 +270,243 @@ public class ThreeDimensionalCanvas extends Canvas implements MouseMotionListene
 		centerY /= y.length;
 		centerZ /= z.length;
 		
-		//General sin/cos theta calculations for shape rotation, to save processing power
-		double[] sinTheta = new double[]{sin(thetaX), sin(thetaY), sin(thetaZ)};
-		double[] cosTheta = new double[]{cos(thetaX), cos(thetaY), cos(thetaZ)};
+		//Transforms and projects the points into the scratch buffer, leaving the input arrays untouched
+		modelView.setModelView(getViewMatrix(), centerX, centerY, centerZ, 0, 0, 0, thetaX, thetaY, thetaZ);
+		immediateVertices.transform(modelView, x, y, z, pointCount, FOV, this.centerX, this.centerY);
 		
-		//Rotation on the x-axis
-		for (var i = 0; i < pointCount; i++){
-			double Y = y[i] - centerY;
-			double Z = z[i] - centerZ;
-			y[i] = cosTheta[0] * Y - sinTheta[0] * Z + centerY;
-			z[i] = cosTheta[0] * Z + sinTheta[0] * Y + centerZ;
+		//Returns the processed shape through default sorter
+		immediateShape.set(immediateVertices, lineList, faceList, cullBackFaces);
+		facesSubmitted += faceList.length;
+		facesCulled += faceList.length - immediateShape.getShapeCount();
+		stageNanos[FrameStats.TRANSFORM] += System.nanoTime() - start;
+		return immediateShape;
+	}
+	//Composes the camera pan and rotation into the view matrix, rebuilding it only when the camera changed
+	private Matrix4 getViewMatrix(){
+		if (viewVersion != cameraVersion){
+			viewMatrix.setIdentity()
+					.rotateCameraX(camRotX)
+					.rotateCameraY(camRotY)
+					.translate(-camX, -camY, -camZ);
+			frustum.setView(viewMatrix);
+			viewVersion = cameraVersion;
 		}
+		return viewMatrix;
+	}
+	//Finds the registered meshes in view, then rebuilds the cached transforms of every one of them whose transform or
+	//the camera changed since its last rebuild. Meshes are found through the bounding volume hierarchy, so meshes out
+	//of view cost nothing, and meshes whose bounds only touch the view are culled before any of their points are
+	//transformed. When parallel transforms are on and there is enough work, meshes are rebuilt on the transform pool
+	private void refreshMeshes(){
+		final Matrix4 view = getViewMatrix();
 		
-		//Rotation on the y-axis
-		for (var i = 0; i < pointCount; i++){
-			double X = x[i] - centerX;
-			double Z = z[i] - centerZ;
-			x[i] = cosTheta[1] * X - sinTheta[1] * Z + centerX;
-			z[i] = cosTheta[1] * Z + sinTheta[1] * X + centerZ;
+		//Finds the meshes in view, and puts them back in registration order
+		meshTree.update();
+		meshQuery.clear();
+		meshTree.queryFrustum(frustum, meshQuery);
+		final int found = meshQuery.size();
+		if (meshKeys.length < found){
+			meshKeys = new double[Math.max(found, meshKeys.length * 2)];
 		}
-		
-		//Rotation on the z-axis
-		for (var i = 0; i < pointCount; i++){
-			double X = x[i] - centerX;
-			double Y = y[i] - centerY;
-			x[i] = cosTheta[2] * X - sinTheta[2] * Y + centerX;
-			y[i] = cosTheta[2] * Y + sinTheta[2] * X + centerY;
+		for (var i = 0; i < found; i++){
+			meshKeys[i] = meshQuery.get(i).sequence;
+		}
+		final int[] order = meshSorter.sort(meshKeys, found);
+		visibleMeshes.clear();
+		for (var i = 0; i < found; i++){
+			visibleMeshes.add(meshQuery.get(order[i]));
 		}
 		
-		//General sin/cos theta calculations for camera rotation
-		sinTheta = new double[]{-sin(camRotX), -sin(camRotY)};
-		cosTheta = new double[]{-cos(camRotX), -cos(camRotY)};
-		
-		//Camera rotation on the y-axis
-		for (var i = 0; i < pointCount; i++){
-			double X = x[i];
-			double Z = z[i];
-			x[i] = -(cosTheta[1] * X - sinTheta[1] * Z);
-			z[i] = cosTheta[1] * Z + sinTheta[1] * X;
+		//Collects the meshes that need a rebuild and are in view
+		dirtyMeshes.clear();
+		long dirtyPoints = 0;
+		for (var i = 0; i < visibleMeshes.size(); i++){
+			MeshHandle handle = visibleMeshes.get(i);
+			if (handle.needsRebuild(cameraVersion)){
+				//Meshes with levels of detail only switch level when they or the camera moved
+				final int faceCount = handle.getMesh().getFaceCount();
+				if (handle.selectLevel(view, FOV)){
+					registeredFaces += handle.getMesh().getFaceCount() - faceCount;
+					meshTree.moved(handle);
+				}
+				handle.beginRebuild(view);
+				if (frustum.isOutside(handle.getMesh(), handle.modelView)){
+					handle.cull(cameraVersion);
+					continue;
+				}
+				dirtyMeshes.add(handle);
+				dirtyPoints += handle.getMesh().getPointCount();
+			}
+		}
+		if (dirtyMeshes.isEmpty()){
+			return;
 		}
 		
-		//Camera rotation on the x-axis
-		for (var i = 0; i < pointCount; i++){
-			double Y = y[i];
-			double Z = z[i];
-			z[i] = cosTheta[0] * Z - sinTheta[0] * Y;
-			y[i] = cosTheta[0] * Y + sinTheta[0] * Z;
+		//Only constants are shared, and none of them change while the meshes are rebuilt
+		if (transformPool != null && dirtyPoints >= MeshTransformTask.MIN_PARALLEL_POINTS){
+			transformPool.invoke(new MeshTransformTask(dirtyMeshes, FOV, centerX, centerY, cameraVersion, cullBackFaces));
+		} else {
+			for (var i = 0; i < dirtyMeshes.size(); i++){
+				MeshHandle handle = dirtyMeshes.get(i);
+				handle.transformRange(0, handle.getMesh().getPointCount(), FOV, centerX, centerY);
+				handle.endRebuild(cameraVersion, cullBackFaces);
+			}
+		}
+	}
+	//Turns back-face culling on or off. Off by default. When on, faces whose points run clockwise on screen are not drawn
+	public void setBackFaceCulling(boolean cullBackFaces){
+		if (this.cullBackFaces != cullBackFaces){
+			this.cullBackFaces = cullBackFaces;
+			//Registered meshes cache their visible faces, so they have to be rebuilt
+			cameraVersion++;
 		}
+	}
+	
+	public boolean isBackFaceCulling(){
+		return cullBackFaces;
+	}
+	//Turns parallel transforms of registered meshes on (with the given pool) or off (with null). Off by default
+	public void setTransformPool(ForkJoinPool transformPool){
+		this.transformPool = transformPool;
+	}
+	//Turns parallel transforms of registered meshes on, using the common pool, or off
+	public void setParallelTransform(boolean parallel){
+		setTransformPool(parallel ? ForkJoinPool.commonPool() : null);
+	}
+	//Registers a mesh with the canvas. Registered meshes are drawn by every "drawShapes" call until unregistered,
+	//without being re-submitted. Rotation values are in radians
+	public MeshHandle registerMesh(@NotNull Mesh mesh, double thetaX, double thetaY, double thetaZ, Color lineColor, Color faceColor){
+		return register(new MeshHandle(mesh, thetaX, thetaY, thetaZ, lineColor, faceColor));
+	}
+	//Registers a mesh with levels of detail. Every frame, the level is picked from how big the mesh is on screen
+	public MeshHandle registerMesh(@NotNull LODMesh lod, double thetaX, double thetaY, double thetaZ, Color lineColor, Color faceColor){
+		return register(new MeshHandle(lod, thetaX, thetaY, thetaZ, lineColor, faceColor));
+	}
+	
+	private MeshHandle register(MeshHandle handle){
+		final Mesh mesh = handle.getMesh();
+		handle.owner = this;
+		handle.sequence = meshSequence++;
+		meshes.add(handle);
+		meshTree.add(handle);
+		registeredFaces += mesh.getFaceCount();
+		handle.collider = collisionGrid.add(handle.getLOD() == null ? mesh : handle.getLOD().getLevel(0),
+				handle.getThetaX(), handle.getThetaY(), handle.getThetaZ(), handle.getOffsetX(), handle.getOffsetY(), handle.getOffsetZ());
+		return handle;
+	}
+	//Removes a registered mesh from the canvas
+	public void unregisterMesh(@NotNull MeshHandle handle){
+		if (handle.owner != this){
+			throw new Error("Mesh handle is not registered with this canvas!");
+		}
+		meshes.remove(handle);
+		meshTree.remove(handle);
+		registeredFaces -= handle.getMesh().getFaceCount();
+		collisionGrid.remove(handle.collider);
+		handle.collider = -1;
+		handle.owner = null;
+	}
+	//Called by a registered mesh when its offset changed, so its bounds can be refitted
+	void meshMoved(MeshHandle handle){
+		meshTree.moved(handle);
+		meshRotated(handle);
+	}
+	//Called by a registered mesh when its rotation changed, so its collider can be moved
+	void meshRotated(MeshHandle handle){
+		collisionGrid.move(handle.collider, handle.getThetaX(), handle.getThetaY(), handle.getThetaZ(),
+				handle.getOffsetX(), handle.getOffsetY(), handle.getOffsetZ());
+	}
+	//Makes every instance of "instances" collide with the camera, like registered meshes do. Their colliders follow
+	//them as they are added, moved and removed, until "removeColliders" is called
+	public void addColliders(@NotNull MeshInstances instances){
+		if (instances.collisionGrid != null){
+			throw new Error("Instances are already collidable!");
+		}
+		instances.collisionGrid = collisionGrid;
+		for (var i = 0; i < instances.size(); i++){
+			instances.addCollider(i);
+		}
+	}
+	
+	public void removeColliders(@NotNull MeshInstances instances){
+		if (instances.collisionGrid != collisionGrid){
+			throw new Error("Instances are not collidable on this canvas!");
+		}
+		for (var i = 0; i < instances.colliderCount; i++){
+			collisionGrid.remove(instances.colliders[i]);
+		}
+		instances.colliderCount = 0;
+		instances.collisionGrid = null;
+	}
+	//Whether the camera stood on something after its last move in "tick"
+	public boolean isOnGround(){
+		return onGround;
+	}
+	//Sets static geometry drawn on every "drawShapes" call, or removes it with null. The tree is built here if it was not
+	//built yet. Its faces come out of the tree already in order, and only the other faces are sorted and merged in
+	public void setStaticGeometry(BSPTree staticGeometry){
+		if (staticGeometry != null && !staticGeometry.isBuilt()){
+			staticGeometry.build();
+		}
+		if (staticGeometry != null){
+			staticGeometry.invalidate();
+		}
+		this.staticGeometry = staticGeometry;
+	}
+	
+	public BSPTree getStaticGeometry(){
+		return staticGeometry;
+	}
+	//Finds the registered mesh under a point on screen, or null if there is none. Only meshes whose bounds the ray
+	//through the point hits are tested face by face
+	public MeshHandle pickMesh(double screenX, double screenY){
+		final Matrix4 view = getViewMatrix();
 		
-		//Returns the processed shape through default sorter
-		return new ThreeDimensionalShape(x, y, z, lineList, faceList);
+		//Ray through the point, in view space. The camera is at the origin, and a point at z = -1 lands on screen at
+		//(x * FOV + centerX, y * FOV + centerY)
+		final double dirX = (screenX - centerX) / FOV;
+		final double dirY = (screenY - centerY) / FOV;
+		
+		//The same ray in world space
+		inverseView.invertAffine(view);
+		final double originX = inverseView.transformX(0, 0, 0);
+		final double originY = inverseView.transformY(0, 0, 0);
+		final double originZ = inverseView.transformZ(0, 0, 0);
+		
+		meshTree.update();
+		meshQuery.clear();
+		meshTree.queryRay(originX, originY, originZ,
+				inverseView.transformX(dirX, dirY, -1) - originX,
+				inverseView.transformY(dirX, dirY, -1) - originY,
+				inverseView.transformZ(dirX, dirY, -1) - originZ, meshQuery);
+		
+		MeshHandle nearest = null;
+		double nearestDistance = Globals.Numbers.infinity;
+		for (var i = 0; i < meshQuery.size(); i++){
+			MeshHandle handle = meshQuery.get(i);
+			if (handle.needsRebuild(cameraVersion) || handle.culled){
+				handle.rebuild(view, FOV, centerX, centerY, cameraVersion, cullBackFaces);
+			}
+			double distance = handle.intersectRay(dirX, dirY);
+			if (distance < nearestDistance){
+				nearestDistance = distance;
+				nearest = handle;
+			}
+		}
+		return nearest;
+	}
+	//Finds the registered mesh under the mouse, or null if there is none or the mouse never moved
+	public MeshHandle pickMeshAtMouse(){
+		InputState state = input.get();
+		return state.hasMouse() ? pickMesh(state.getMouseX(), state.getMouseY()) : null;
+	}
+	//Adds every registered mesh whose bounding sphere is within "radius" of a world-space point to "result", and
+	//returns how many were added
+	public int findMeshes(double x, double y, double z, double radius, @NotNull List<MeshHandle> result){
+		final int size = result.size();
+		meshTree.update();
+		meshTree.queryRadius(x, y, z, radius, result);
+		return result.size() - size;
 	}
 	//Draw a 3D Shape on top of the canvas, regardless of previously drawn objects or the camera
 	//Accepts lists of point coords, lists of line pairs and shape groups, rotation for X, Y, and Z axis,
@@ -208,121 +516,565 @@ public class ThreeDimensionalCanvas extends Canvas implements MouseMotionListene
 	                        double thetaX, double thetaY, double thetaZ,
 	                        Color lineColor, Color faceColor){
 		//NOTE: Lines drawn on top of shapes to improve visibility!
+		if (recorder != null){
+			recordCamera();
+			recorder.drawShape(x, y, z, lineList, faceList, thetaX, thetaY, thetaZ, lineColor, faceColor);
+		}
 		
 		
 		//Gets the shape with inputs
 		ThreeDimensionalShape shape = processShape(x, y, z, lineList, faceList, thetaX, thetaY, thetaZ);
+		final long start = System.nanoTime();
+		beginImmediateDrawing();
 		
 		//Gets the length of point array
-		int pointCount = shape.getX().length;
+		int pointCount = shape.getPointCount();
 		
 		x = shape.getX();
 		y = shape.getY();
-		z = shape.getZ();
-		faceList = shape.getShapes();
 		
-		//Draws the polygons, with outlines being the line color
-		ArrayList<Polygon> polygons = new ArrayList<>();
-		for (var i = 0; i < faceList.length; i++){
-			polygons.add(new Polygon());
-			for (var j = 0; j < faceList[i].length; j++){
-				polygons.get(i).addPoint((int) (Math.round(x[faceList[i][j]])/-z[faceList[i][j]] * FOV) + centerX, (int) (Math.round(y[faceList[i][j]])/-z[faceList[i][j]] * FOV) + centerY);
+		//Draws the polygons, with outlines being the line color. Faces crossing the near plane are clipped first.
+		//Polygons and lines are recorded first and drawn together, so they take a few Graphics2D calls
+		immediateCommands.clear();
+		final int lineARGB = lineColor.getRGB();
+		final int faceARGB = faceColor.getRGB();
+		int[][] faces = shape.getShapes();
+		double[] screenX = shape.getScreenX();
+		double[] screenY = shape.getScreenY();
+		for (var i = 0; i < shape.getShapeCount(); i++){
+			final boolean crossing = shape.isCrossing(i);
+			final int size = crossing ? clipper.clip(x, y, shape.getZ(), faces[i], 0, faces[i].length) : faces[i].length;
+			if (polygonX.length < size){
+				polygonX = new int[size * 2];
+				polygonY = new int[size * 2];
+			}
+			for (var j = 0; j < size; j++){
+				polygonX[j] = (int) (crossing ? clipper.screenX[j] : screenX[faces[i][j]]);
+				polygonY[j] = (int) (crossing ? clipper.screenY[j] : screenY[faces[i][j]]);
 			}
-			Graphics.setColor(faceColor);
-			Graphics.fillPolygon(polygons.get(i));
-			Graphics.setColor(lineColor);
-			Graphics.drawPolygon(polygons.get(i));
+			immediateCommands.addPolygon(polygonX, polygonY, size, faceARGB, lineARGB);
 		}
 		
 		//Draws the lines
-		Graphics.setColor(lineColor);
 		for (var i = 0; i < lineList.length; i++){
 			if (lineList[i][0] >= pointCount || lineList[i][1] >= pointCount){
 				throw new Error("One of your line-point pairs references a non-existient point!");
 			}
-			Graphics.drawLine((int) round(x[lineList[i][0]]) + centerX, (int) round(y[lineList[i][0]]) + centerY, (int) round(x[lineList[i][1]]) + centerX, (int) round(y[lineList[i][1]]) + centerY);
+			immediateCommands.addLine((int) round(x[lineList[i][0]]) + centerX, (int) round(y[lineList[i][0]]) + centerY, (int) round(x[lineList[i][1]]) + centerX, (int) round(y[lineList[i][1]]) + centerY, lineARGB);
 		}
+		immediateCommands.draw(Graphics, immediateColors);
 		
+		facesDrawn += shape.getShapeCount();
+		stageNanos[FrameStats.RASTER] += System.nanoTime() - start;
 	}
 	//Adds a 3D Shape to the draw queue...same as draw3DShape, but shapes stack relative to all of their components. Individual lines not supports
 	public void add3DShape(double[] x, double[] y, double[] z, int[][] faceList, double thetaX, double thetaY, double thetaZ, Color lineColor, Color faceColor){
-		ThreeDimensionalShape shape = processShape(x,y,z,new int[0][],faceList,thetaX,thetaY,thetaZ);
-		ArrayList<Polygon> polygons = shape.getPolygons(centerX, centerY, FOV);
-		storedFaces.addAll(polygons);
-		zIndex.addAll(shape.getZList());
-		for (var i = 0; i < polygons.size(); i++) {
-			faceColors.add(faceColor);
-			lineColors.add(lineColor);
+		if (recorder != null){
+			recordCamera();
+			recorder.addShape(x, y, z, faceList, thetaX, thetaY, thetaZ, lineColor, faceColor);
 		}
+		ThreeDimensionalShape shape = processShape(x,y,z,NO_LINES,faceList,thetaX,thetaY,thetaZ);
+		final long start = System.nanoTime();
+		int[][] faces = shape.getShapes();
+		double[] zList = shape.getZList();
+		double[] screenX = shape.getScreenX();
+		double[] screenY = shape.getScreenY();
+		z = shape.getZ();
+		final int lineARGB = lineColor.getRGB();
+		final int faceARGB = faceColor.getRGB();
+		for (var i = 0; i < shape.getShapeCount(); i++) {
+			if (shape.isCrossing(i)){
+				clipper.addClipped(queue, shape.getX(), shape.getY(), z, faces[i], 0, faces[i].length, lineARGB, faceARGB);
+				continue;
+			}
+			queue.beginFace(zList[i], lineARGB, faceARGB);
+			for (var j = 0; j < faces[i].length; j++){
+				int point = faces[i][j];
+				queue.addPoint(screenX[point], screenY[point], z[point]);
+			}
+		}
+		stageNanos[FrameStats.QUEUE] += System.nanoTime() - start;
+	}
+	//Adds every instance of a mesh to the draw queue, in one batch. Each instance is transformed from the shared local
+	//points, so they stay in cache, and instances entirely outside the view are skipped before any point is transformed
+	public void addInstances(@NotNull MeshInstances instances){
+		if (recorder != null){
+			recordCamera();
+			recorder.instances(instances);
+		}
+		final long start = System.nanoTime();
+		final Matrix4 view = getViewMatrix();
+		final Mesh mesh = instances.getMesh();
+		final double[] transforms = instances.getTransforms();
+		final int[] colors = instances.getColors();
+		final int queued = queue.faceCount;
+		
+		for (var i = 0; i < instances.size(); i++){
+			final int base = i * MeshInstances.STRIDE;
+			modelView.setModelView(view, mesh.getCenterX(), mesh.getCenterY(), mesh.getCenterZ(),
+					transforms[base + MeshInstances.OFFSET_X], transforms[base + MeshInstances.OFFSET_Y], transforms[base + MeshInstances.OFFSET_Z],
+					transforms[base + MeshInstances.THETA_X], transforms[base + MeshInstances.THETA_Y], transforms[base + MeshInstances.THETA_Z]);
+			if (frustum.isOutside(mesh, modelView)){
+				continue;
+			}
+			immediateVertices.resize(mesh.getPointCount());
+			immediateVertices.transform(modelView, mesh, 0, mesh.getPointCount(), FOV, centerX, centerY);
+			queueTransformedFaces(mesh, colors[i * 2], colors[i * 2 + 1]);
+		}
+		
+		final int submitted = mesh.getFaceCount() * instances.size();
+		facesSubmitted += submitted;
+		facesCulled += submitted - (queue.faceCount - queued);
+		stageNanos[FrameStats.TRANSFORM] += System.nanoTime() - start;
+	}
+	//Adds every mesh of a scene graph to the draw queue. The root must not have a parent. World matrices are only
+	//recomputed for nodes that moved, or whose ancestors moved, since the last call; every part is then transformed
+	//from one packed batch of world matrices
+	public void addScene(@NotNull SceneNode root){
+		if (root.getParent() != null){
+			throw new Error("Only the root of a scene graph can be added!");
+		}
+		final long start = System.nanoTime();
+		final Matrix4 view = getViewMatrix();
+		if (root.batch == null){
+			root.batch = new SceneBatch(root);
+		}
+		final SceneBatch batch = root.batch;
+		batch.update();
+		final double[] matrices = batch.matrices;
+		final int[] colors = batch.colors;
+		final int queued = queue.faceCount;
+		
+		int submitted = 0;
+		for (var i = 0; i < batch.partCount; i++){
+			final Mesh mesh = batch.meshes[i];
+			submitted += mesh.getFaceCount();
+			modelView.multiplyAffine(view, matrices, i * SceneBatch.MATRIX_STRIDE);
+			if (frustum.isOutside(mesh, modelView)){
+				continue;
+			}
+			immediateVertices.resize(mesh.getPointCount());
+			immediateVertices.transform(modelView, mesh, 0, mesh.getPointCount(), FOV, centerX, centerY);
+			queueTransformedFaces(mesh, colors[i * 2], colors[i * 2 + 1]);
+		}
+		
+		facesSubmitted += submitted;
+		facesCulled += submitted - (queue.faceCount - queued);
+		stageNanos[FrameStats.TRANSFORM] += System.nanoTime() - start;
+	}
+	//Adds the faces of a mesh just transformed into the scratch buffer to the draw queue, with the same visibility
+	//rules as registered meshes
+	private void queueTransformedFaces(Mesh mesh, int lineARGB, int faceARGB){
+		final int[] indices = mesh.getFaceIndices();
+		final int[] offsets = mesh.getFaceOffsets();
+		final double[] x = immediateVertices.x;
+		final double[] y = immediateVertices.y;
+		final double[] z = immediateVertices.z;
+		for (var j = 0; j < mesh.getFaceCount(); j++){
+			final int from = offsets[j];
+			final int to = offsets[j + 1];
+			int position = FaceClipper.classify(z, indices, from, to);
+			if (position == FaceClipper.OUTSIDE || (position == FaceClipper.CROSSING && Globals.Camera.strictClip)){
+				continue;
+			}
+			if (cullBackFaces && FaceClipper.isBackFace(x, y, z, indices, from, to)){
+				continue;
+			}
+			if (position == FaceClipper.CROSSING){
+				clipper.addClipped(queue, x, y, z, indices, from, to, lineARGB, faceARGB);
+				continue;
+			}
+			double zSum = 0;
+			for (var k = from; k < to; k++){
+				zSum += z[indices[k]];
+			}
+			queue.addFace(immediateVertices, indices, from, to, zSum / (to - from), lineARGB, faceARGB);
+		}
+	}
+	//Adds an off-heap mesh to the draw queue, rotated (in radians) about its center and offset. Points and faces are
+	//read from the mesh's buffers in place, so the only heap memory used is the transform scratch space, which is
+	//shared by every mesh added this way and sized for the biggest one
+	public void addMesh(@NotNull OffHeapMesh mesh, double thetaX, double thetaY, double thetaZ,
+	                    double offsetX, double offsetY, double offsetZ, Color lineColor, Color faceColor){
+		final long start = System.nanoTime();
+		final int queued = queue.faceCount;
+		modelView.setModelView(getViewMatrix(), mesh.getCenterX(), mesh.getCenterY(), mesh.getCenterZ(),
+				offsetX, offsetY, offsetZ, thetaX, thetaY, thetaZ);
+		if (!frustum.isOutside(mesh, modelView)){
+			immediateVertices.resize(mesh.getPointCount());
+			immediateVertices.transform(modelView, mesh, 0, mesh.getPointCount(), FOV, centerX, centerY);
+			final double[] x = immediateVertices.x;
+			final double[] y = immediateVertices.y;
+			final double[] z = immediateVertices.z;
+			final IntBuffer indices = mesh.getFaceIndices();
+			final IntBuffer offsets = mesh.getFaceOffsets();
+			final int lineARGB = lineColor.getRGB();
+			final int faceARGB = faceColor.getRGB();
+			
+			//Same visibility rules as registered meshes, one face at a time
+			for (var i = 0; i < mesh.getFaceCount(); i++){
+				final int from = offsets.get(i);
+				final int size = offsets.get(i + 1) - from;
+				if (meshFace.length < size){
+					meshFace = new int[size * 2];
+				}
+				for (var j = 0; j < size; j++){
+					meshFace[j] = indices.get(from + j);
+				}
+				int position = FaceClipper.classify(z, meshFace, 0, size);
+				if (position == FaceClipper.OUTSIDE || (position == FaceClipper.CROSSING && Globals.Camera.strictClip)){
+					continue;
+				}
+				if (cullBackFaces && FaceClipper.isBackFace(x, y, z, meshFace, 0, size)){
+					continue;
+				}
+				if (position == FaceClipper.CROSSING){
+					clipper.addClipped(queue, x, y, z, meshFace, 0, size, lineARGB, faceARGB);
+					continue;
+				}
+				double zSum = 0;
+				for (var j = 0; j < size; j++){
+					zSum += z[meshFace[j]];
+				}
+				queue.addFace(immediateVertices, meshFace, 0, size, zSum / size, lineARGB, faceARGB);
+			}
+		}
+		
+		facesSubmitted += mesh.getFaceCount();
+		facesCulled += mesh.getFaceCount() - (queue.faceCount - queued);
+		stageNanos[FrameStats.TRANSFORM] += System.nanoTime() - start;
 	}
 	//Draws all the shapes in the draw queue...if clear is true, the draw queue should be cleared
 	public void drawShapes(boolean clear){
+		if (recorder != null){
+			recordCamera();
+			recorder.drawShapes(meshes, clear);
+		}
 		
-		//Caches the shapes, for restoration if clear is false
-		ArrayList<Color> faceColorCache = (ArrayList<Color>) faceColors.clone();
-		ArrayList<Color> lineColorCache = (ArrayList<Color>) lineColors.clone();
-		ArrayList<Polygon> shapeCache = (ArrayList<Polygon>) storedFaces.clone();
-		ArrayList<Double> zIndexCache = (ArrayList<Double>) zIndex.clone();
-		
-		//Sorts all faces by average z-index. This can result in undesirable clipping, but is fast.
-		int size = storedFaces.size();
-		double lowZValue;
-		int lowZIndex;
-		for (var i = 0; i < size; i++){
-			lowZValue = 1.0/0.0;
-			lowZIndex = -1;
-			for (var j = 0; j < storedFaces.size(); j++){
-				if (lowZValue > zIndex.get(j)){
-					lowZValue = zIndex.get(j).doubleValue();
-					lowZIndex = j;
-				}
+		//Remembers where the queue ends, so registered meshes can be removed again if clear is false
+		final int queued = queue.faceCount;
+		
+		//Adds registered meshes, rebuilding only the ones that changed
+		long start = System.nanoTime();
+		refreshMeshes();
+		long end = System.nanoTime();
+		stageNanos[FrameStats.TRANSFORM] += end - start;
+		start = end;
+		facesSubmitted += registeredFaces;
+		facesCulled += registeredFaces;
+		for (var i = 0; i < visibleMeshes.size(); i++){
+			MeshHandle handle = visibleMeshes.get(i);
+			final int[] indices = handle.getMesh().getFaceIndices();
+			final int[] offsets = handle.getMesh().getFaceOffsets();
+			for (var j = 0; j < handle.visibleCount; j++){
+				int face = handle.visibleFaces[j];
+				queue.addFace(handle.vertices, indices, offsets[face], offsets[face + 1], handle.zList[j], handle.lineARGB, handle.faceARGB);
 			}
-			double avgPoint = 0;
-			for (var j = 0; j < storedFaces.get(lowZIndex).npoints; j++){
-				avgPoint += storedFaces.get(lowZIndex).xpoints[j] + storedFaces.get(lowZIndex).ypoints[j];
+			for (var j = 0; j < handle.clippedCount; j++){
+				int face = handle.clippedFaces[j];
+				clipper.addClipped(queue, handle.vertices.x, handle.vertices.y, handle.vertices.z, indices,
+						offsets[face], offsets[face + 1], handle.lineARGB, handle.faceARGB);
 			}
-			avgPoint /= storedFaces.get(lowZIndex).npoints * 2;
-			//Draws face if Average Z index is in front of camera
-			if (lowZValue < 0) {
-				Graphics.setColor(faceColors.get(lowZIndex));
-				Graphics.fillPolygon(storedFaces.get(lowZIndex));
-				Graphics.setColor(lineColors.get(lowZIndex));
-				Graphics.drawPolygon(storedFaces.get(lowZIndex));
+			facesCulled -= handle.visibleCount + handle.clippedCount;
+		}
+		end = System.nanoTime();
+		stageNanos[FrameStats.QUEUE] += end - start;
+		start = end;
+		
+		//Adds static geometry after everything else, already in order
+		final int dynamicCount = queue.faceCount;
+		if (staticGeometry != null){
+			int added = staticGeometry.addFaces(queue, getViewMatrix(), frustum, clipper, camX, camY, camZ, FOV, centerX, centerY, cameraVersion, cullBackFaces);
+			facesSubmitted += staticGeometry.getFaceCount();
+			facesCulled += staticGeometry.getFaceCount() - added;
+			end = System.nanoTime();
+			stageNanos[FrameStats.TRANSFORM] += end - start;
+			start = end;
+		}
+		
+		//Sorts all other faces by average z-index, if the rasterizer needs it, and merges the static faces in
+		int[] order = null;
+		if (rasterizer.needsSortedFaces()){
+			order = depthSorter.sort(queue.faceZ, dynamicCount);
+			if (dynamicCount < queue.faceCount){
+				order = mergeStaticFaces(order, dynamicCount);
 			}
-			
-			faceColors.remove(lowZIndex);
-			storedFaces.remove(lowZIndex);
-			lineColors.remove(lowZIndex);
-			zIndex.remove(lowZIndex);
 		}
+		end = System.nanoTime();
+		stageNanos[FrameStats.SORT] += end - start;
+		start = end;
+		facesDrawn += incrementalRepaint ? repaintChanged(order) : rasterizer.drawFaces(target, queue, order);
+		stageNanos[FrameStats.RASTER] += System.nanoTime() - start;
+		
+		//Registered meshes are never kept in the draw queue, they are re-added on every call
+		queue.truncate(clear ? 0 : queued);
+	}
+	//Merges the sorted dynamic faces with the static faces after them, which are in order already. A dynamic face goes
+	//before a static face if it is farther away
+	private int[] mergeStaticFaces(int[] dynamicOrder, int dynamicCount){
+		final int faceCount = queue.faceCount;
+		if (mergedOrder.length < faceCount){
+			mergedOrder = new int[Math.max(faceCount, mergedOrder.length * 2)];
+		}
+		final double[] faceZ = queue.faceZ;
+		int dynamic = 0;
+		int position = 0;
+		for (var face = dynamicCount; face < faceCount; face++){
+			while (dynamic < dynamicCount && faceZ[dynamicOrder[dynamic]] < faceZ[face]){
+				mergedOrder[position++] = dynamicOrder[dynamic++];
+			}
+			mergedOrder[position++] = face;
+		}
+		while (dynamic < dynamicCount){
+			mergedOrder[position++] = dynamicOrder[dynamic++];
+		}
+		return mergedOrder;
+	}
+	//Repaints only the parts of the screen that changed since the last frame. Every face and text is compared with the
+	//last frame's, and the bounds of those without an identical match are merged into a few rectangles, each of
+	//which is cleared and redrawn with only the faces touching it. Returns the number of faces that were drawn
+	private int repaintChanged(int[] order){
+		final int width = target.getWidth();
+		final int height = target.getHeight();
 		
-		if (!clear){
-			faceColors = faceColorCache;
-			lineColors = lineColorCache;
-			storedFaces = shapeCache;
-			zIndex = zIndexCache;
+		//Finds what changed
+		if (faceBounds.length < queue.faceCount * 4){
+			faceBounds = new int[Math.max(queue.faceCount * 4, faceBounds.length * 2)];
+		}
+		dirtyRegions.begin();
+		for (var i = 0; i < queue.faceCount; i++){
+			final int face = order == null ? i : order[i];
+			if (queue.faceZ[face] < 0){
+				queue.getBounds(face, faceBounds, face * 4);
+				dirtyRegions.add(queue.hashFace(face), faceBounds[face * 4], faceBounds[face * 4 + 1], faceBounds[face * 4 + 2], faceBounds[face * 4 + 3]);
+			}
+		}
+		final FontMetrics metrics = Graphics.getFontMetrics();
+		for (var i = 0; i < pendingCount; i++){
+			final int base = i * 4;
+			final int textX = pendingTexts[base + 2];
+			final int textY = pendingTexts[base + 3];
+			long hash = (long) textX << 32 ^ textY;
+			for (var j = pendingTexts[base]; j < pendingTexts[base] + pendingTexts[base + 1]; j++){
+				hash = (hash ^ pendingChars[j]) * 0x100000001B3L;
+			}
+			dirtyRegions.add(hash, textX - 1, textY - metrics.getAscent() - 1,
+					textX + metrics.charsWidth(pendingChars, pendingTexts[base], pendingTexts[base + 1]) + 2, textY + metrics.getDescent() + 2);
+		}
+		
+		//Everything moves with the camera, and targets without pixels of their own may not keep them between frames
+		dirtyRegions.finish(repaintAll || immediateDrawn || paintedCameraVersion != cameraVersion || target.getPixels() == null, width, height);
+		repaintAll = immediateDrawn;
+		paintedCameraVersion = cameraVersion;
+		frameSkipped = dirtyRegions.rectCount == 0;
+		
+		int drawn = 0;
+		if (dirtyRegions.full){
+			//Anything drawn straight onto the target was drawn over a cleared screen already
+			if (!immediateDrawn){
+				Graphics.setColor(background);
+				Graphics.fillRect(0, 0, width, height);
+			}
+			drawPendingText(pendingDrawn);
+			drawn = rasterizer.drawFaces(target, queue, order);
+		} else {
+			for (var r = 0; r < dirtyRegions.rectCount; r++){
+				final int x0 = dirtyRegions.rects[r * 4];
+				final int y0 = dirtyRegions.rects[r * 4 + 1];
+				final int x1 = dirtyRegions.rects[r * 4 + 2];
+				final int y1 = dirtyRegions.rects[r * 4 + 3];
+				
+				//Copies the faces touching the region, keeping their order
+				regionQueue.truncate(0);
+				for (var i = 0; i < queue.faceCount; i++){
+					final int face = order == null ? i : order[i];
+					final int base = face * 4;
+					if (queue.faceZ[face] < 0 && faceBounds[base] < x1 && x0 < faceBounds[base + 2] && faceBounds[base + 1] < y1 && y0 < faceBounds[base + 3]){
+						regionQueue.copyFace(queue, face);
+					}
+				}
+				if (regionOrder.length < regionQueue.faceCount){
+					regionOrder = new int[Math.max(regionQueue.faceCount, regionOrder.length * 2)];
+					for (var i = 0; i < regionOrder.length; i++){
+						regionOrder[i] = i;
+					}
+				}
+				
+				Graphics.setClip(x0, y0, x1 - x0, y1 - y0);
+				Graphics.setColor(background);
+				Graphics.fillRect(x0, y0, x1 - x0, y1 - y0);
+				drawPendingText(0);
+				drawn += rasterizer.drawFaces(target, regionQueue, order == null ? null : regionOrder);
+				Graphics.setClip(null);
+			}
+		}
+		
+		immediateDrawn = false;
+		pendingCount = 0;
+		pendingDrawn = 0;
+		return drawn;
+	}
+	//Things drawn straight onto the target cannot be compared between frames, so with incremental repaint the frame
+	//they are drawn in and the one after are repainted in full. The screen is cleared before the first of them, as
+	//"clear" would have, and the text waiting so far is drawn beneath them
+	private void beginImmediateDrawing(){
+		if (incrementalRepaint && !immediateDrawn){
+			immediateDrawn = true;
+			Graphics.setColor(background);
+			Graphics.fillRect(0, 0, target.getWidth(), target.getHeight());
+			drawPendingText(0);
+			pendingDrawn = pendingCount;
+		}
+	}
+	//Draws the waiting text, from the given one on
+	private void drawPendingText(int from){
+		Graphics.setColor(TextColor);
+		for (var i = from; i < pendingCount; i++){
+			Graphics.drawChars(pendingChars, pendingTexts[i * 4], pendingTexts[i * 4 + 1], pendingTexts[i * 4 + 2], pendingTexts[i * 4 + 3]);
 		}
 	}
-	//Clears the canvas, and if clearShapes is true, clear the draw queue
+	//Turns incremental repaint on or off. Off by default. When on, "drawShapes" only repaints the parts of the screen
+	//that changed since the last frame, and "update" presents nothing if nothing changed. "clear" then leaves the
+	//pixels alone, and "drawText" draws beneath the shapes of the next "drawShapes" call, which should be called once
+	//per frame. Targets without pixels of their own, like the onscreen target, are always repainted in full
+	public void setIncrementalRepaint(boolean incrementalRepaint){
+		if (this.incrementalRepaint != incrementalRepaint){
+			this.incrementalRepaint = incrementalRepaint;
+			repaintAll = true;
+			frameSkipped = false;
+			dirtyRegions.reset();
+			pendingCount = 0;
+			pendingDrawn = 0;
+		}
+	}
+	
+	public boolean isIncrementalRepaint(){
+		return incrementalRepaint;
+	}
+	//Whether the last frame was skipped by incremental repaint, because nothing on screen changed
+	public boolean isFrameSkipped(){
+		return frameSkipped;
+	}
+	//Selects the backend that draws the queued faces. Defaults to a Graphics2DRasterizer
+	public void setRasterizer(@NotNull Rasterizer rasterizer){
+		this.rasterizer = rasterizer;
+		repaintAll = true;
+	}
+	
+	public Rasterizer getRasterizer(){
+		return rasterizer;
+	}
+	//Captures every frame "update" presents to "frameExporter", or stops capturing if null. Frames skipped by
+	//incremental repaint are captured too, so the exported sequence has every frame. Needs a target with pixels
+	public void setFrameExporter(FrameExporter frameExporter){
+		if (frameExporter != null && target.getPixels() == null){
+			throw new Error("Frames can only be exported from a target with pixels!");
+		}
+		this.frameExporter = frameExporter;
+	}
+	
+	public FrameExporter getFrameExporter(){
+		return frameExporter;
+	}
+	//Starts recording every frame to a log at "path", which FrameReplay can replay headlessly. Recorded are the camera,
+	//"clear", "drawText", "add3DShape", "draw3DShape" and "addInstances" calls, and the registered meshes; static
+	//geometry, off-heap meshes and scene graphs are not. Each frame ends at "update"
+	public void startRecording(@NotNull Path path) throws IOException {
+		stopRecording();
+		recorder = new FrameRecorder(path, FOV, target.getWidth(), target.getHeight(), centerX, centerY, background, TextColor);
+	}
+	//Stops recording, and writes out the rest of the log
+	public void stopRecording() throws IOException {
+		if (recorder != null){
+			final FrameRecorder recorder = this.recorder;
+			this.recorder = null;
+			recorder.close();
+		}
+	}
+	
+	public boolean isRecording(){
+		return recorder != null;
+	}
+	//Records the camera before a recorded call that uses it
+	private void recordCamera(){
+		recorder.camera(cameraVersion, camX, camY, camZ, camRotX, camRotY);
+	}
+	//Clears the canvas, and if clearShapes is true, clear the draw queue. With incremental repaint, the parts of the
+	//canvas that changed are cleared by "drawShapes" instead
 	public void clear(boolean clearShapes){
-		Graphics.setColor(background);
-		Graphics.fillRect(0,0,canvas.getWidth(),canvas.getHeight());
+		if (recorder != null){
+			recorder.clear(clearShapes);
+		}
+		if (!incrementalRepaint){
+			Graphics.setColor(background);
+			Graphics.fillRect(0,0,target.getWidth(),target.getHeight());
+		}
 		if (clearShapes) {
-			storedFaces.clear();
-			zIndex.clear();
+			queue.truncate(0);
 		}
 	}
-	//Basic update
+	//Basic update. Presents the frame, captures it if exporting, and records its timings and counters
 	public void update(){
-		frame.repaint();
+		final long start = System.nanoTime();
+		if (!frameSkipped){
+			target.present();
+		}
+		if (frameExporter != null){
+			frameExporter.capture(target);
+		}
+		if (recorder != null){
+			recorder.endFrame();
+		}
+		final long end = System.nanoTime();
+		stageNanos[FrameStats.PRESENT] += end - start;
+		
+		final long frameNanos = lastPresent < 0 ? -1 : end - lastPresent;
+		lastPresent = end;
+		frameStats.record(stageNanos, frameNanos, facesSubmitted, facesCulled, facesDrawn);
+		if (frameEventProbe.isEnabled()){
+			commitFrameEvent(frameNanos);
+		}
+		
+		for (var i = 0; i < FrameStats.STAGE_COUNT; i++){
+			stageNanos[i] = 0;
+		}
+		facesSubmitted = 0;
+		facesCulled = 0;
+		facesDrawn = 0;
+	}
+	//Emits the current frame as a Flight Recorder event
+	private void commitFrameEvent(long frameNanos){
+		FrameEvent event = new FrameEvent();
+		event.transform = stageNanos[FrameStats.TRANSFORM];
+		event.queue = stageNanos[FrameStats.QUEUE];
+		event.sort = stageNanos[FrameStats.SORT];
+		event.raster = stageNanos[FrameStats.RASTER];
+		event.present = stageNanos[FrameStats.PRESENT];
+		event.frame = frameNanos;
+		event.submitted = facesSubmitted;
+		event.culled = facesCulled;
+		event.drawn = facesDrawn;
+		event.commit();
+	}
+	//Gets the timings and face counters of all frames presented so far
+	public FrameStats getFrameStats(){
+		return frameStats;
 	}
 	//Get canvas width
 	public int getWidth(){
-		return frame.getWidth();
+		return target.getWidth();
 	}
 	//Get canvas height
 	public int getHeight(){
-		return frame.getHeight();
+		return target.getHeight();
+	}
+	//Get the render target
+	public RenderTarget getTarget(){
+		return target;
+	}
+	//Get the pixels of the render target, or null if it has none
+	public int[] getPixels(){
+		return target.getPixels();
 	}
 	//Add to shape rotation
 	public void setRotX(double rotX) {
@@ -333,94 +1085,169 @@ public class ThreeDimensionalCanvas extends Canvas implements MouseMotionListene
 		this.rotY = rotY;
 	}
 	
-	public void setCamRotX(double rotX){ this.camRotX = rotX; }
-	public void setCamRotY(double rotY){ this.camRotY = rotY; }
+	public void setCamRotX(double rotX){
+		if (this.camRotX != rotX){
+			this.camRotX = rotX;
+			cameraVersion++;
+		}
+	}
+	public void setCamRotY(double rotY){
+		if (this.camRotY != rotY){
+			this.camRotY = rotY;
+			cameraVersion++;
+		}
+	}
 	
 	public void setCamX(double camX) {
-		this.camX = camX;
+		if (this.camX != camX){
+			this.camX = camX;
+			cameraVersion++;
+		}
 	}
 	
 	public void setCamY(double camY) {
-		this.camY = camY;
+		if (this.camY != camY){
+			this.camY = camY;
+			cameraVersion++;
+		}
 	}
 	
 	public void setCamZ(double camZ) {
-		this.camZ = camZ;
+		if (this.camZ != camZ){
+			this.camZ = camZ;
+			cameraVersion++;
+		}
 	}
 	
 	public void drawText(char[] text, int x, int y){
+		if (recorder != null){
+			recorder.text(text, x, y);
+		}
+		if (incrementalRepaint){
+			//Kept until "drawShapes", which only draws it where the screen changed
+			final int start = pendingCount == 0 ? 0 : pendingTexts[pendingCount * 4 - 4] + pendingTexts[pendingCount * 4 - 3];
+			if (pendingChars.length < start + text.length){
+				pendingChars = Arrays.copyOf(pendingChars, Math.max(start + text.length, pendingChars.length * 2));
+			}
+			if (pendingTexts.length < pendingCount * 4 + 4){
+				pendingTexts = Arrays.copyOf(pendingTexts, pendingTexts.length * 2);
+			}
+			System.arraycopy(text, 0, pendingChars, start, text.length);
+			pendingTexts[pendingCount * 4] = start;
+			pendingTexts[pendingCount * 4 + 1] = text.length;
+			pendingTexts[pendingCount * 4 + 2] = x;
+			pendingTexts[pendingCount * 4 + 3] = y;
+			pendingCount++;
+			return;
+		}
 		Graphics.setColor(TextColor);
-		Graphics.drawChars(text.clone(), 0, text.length, x, y);
+		Graphics.drawChars(text, 0, text.length, x, y);
 	}
 	
+	//Gets a copy of the latest key states
 	public boolean[] getKeyValues() {
-		return keyValues;
+		return input.get().getKeyValues();
+	}
+	//Gets the latest keyboard and mouse snapshot
+	public InputState getInput() {
+		return input.get();
 	}
 	
 	public void updateDebug(char[] text){
 		debug = text;
 	}
 	
-	//Default loop (for testing purposes)
+	//Default loop (for testing purposes). Draws a frame, then runs one tick. All drawing, ticking and camera changes
+	//must happen on one thread; only the input listeners may run elsewhere
 	public void loop(){
+		render();
+		tick();
+	}
+	//Draws one frame of the default loop
+	public void render(){
 		//Clears the canvas; Does not clear the stored shapes
 		clear(false);
 		//Draw debug text...somehow takes like 10s to initialize.
 		drawText(debug, 10, 10);
-		//Draw three default shapes
-		add3DShape(new double[]{-1500,-1500, 500, 500, -1500, -1500, 500, 500}, new double[]{-1000, 1000, -1000, 1000, -1000, 1000, -1000, 1000}, new double[]{5000, 5000, 5000, 5000, 7000, 7000, 7000, 7000},
-				new int[][]{new int[]{0,2,3,1}, new int[]{4,6,7,5}, new int[]{0,4,5,1}, new int[]{1,5,7,3}, new int[]{2,6,7,3}, new int[]{0,4,6,2}},
-				Math.toRadians(rotX+20), Math.toRadians(rotY), Math.toRadians(0),
-				new Color(255, 255, 255), new Color(0, 11, 141, 200));
-		add3DShape(new double[]{-500,-500, 1500, 1500, -500, -500, 1500, 1500}, new double[]{-1000, 1000, -1000, 1000, -1000, 1000, -1000, 1000}, new double[]{5000, 5000, 5000, 5000, 7000, 7000, 7000, 7000},
-				new int[][]{new int[]{0,2,3,1}, new int[]{4,6,7,5}, new int[]{0,4,5,1}, new int[]{1,5,7,3}, new int[]{2,6,7,3}, new int[]{0,4,6,2}},
-				Math.toRadians(rotX-20), Math.toRadians(rotY+20), Math.toRadians(0),
-				new Color(255, 255, 255), new Color(122, 0, 2, 200));
-		add3DShape(new double[]{-5000,-5000, 5000, 5000, -5000, -5000, 5000, 5000}, new double[]{-2001, -2000, -2001, -2000, -2001, -2000, -2001, -2000}, new double[]{-5000, -5000, -5000, -5000, 5000, 5000, 5000, 5000},
-				new int[][]{new int[]{0,2,3,1}, new int[]{4,6,7,5}, new int[]{0,4,5,1}, new int[]{1,5,7,3}, new int[]{2,6,7,3}, new int[]{0,4,6,2}},
-				Math.toRadians(rotX), Math.toRadians(rotY), Math.toRadians(0),
-				new Color(255, 255, 255), new Color(0, 122, 16, 80));
+		//Create the default shapes once, then only update their rotation. Both cuboids are instances of one mesh
+		if (defaultShapes == null){
+			int[][] cuboidFaces = new int[][]{new int[]{0,2,3,1}, new int[]{4,6,7,5}, new int[]{0,4,5,1}, new int[]{1,5,7,3}, new int[]{2,6,7,3}, new int[]{0,4,6,2}};
+			defaultInstances = new MeshInstances(new Mesh(new double[]{-1000,-1000, 1000, 1000, -1000, -1000, 1000, 1000}, new double[]{-1000, 1000, -1000, 1000, -1000, 1000, -1000, 1000}, new double[]{-1000, -1000, -1000, -1000, 1000, 1000, 1000, 1000}, cuboidFaces), 2);
+			defaultInstances.add(0, 0, 0, -500, 0, 6000, new Color(255, 255, 255), new Color(0, 11, 141, 200));
+			defaultInstances.add(0, 0, 0, 500, 0, 6000, new Color(255, 255, 255), new Color(122, 0, 2, 200));
+			addColliders(defaultInstances);
+			defaultShapes = new MeshHandle[]{
+					registerMesh(new Mesh(new double[]{-5000,-5000, 5000, 5000, -5000, -5000, 5000, 5000}, new double[]{-2001, -2000, -2001, -2000, -2001, -2000, -2001, -2000}, new double[]{-5000, -5000, -5000, -5000, 5000, 5000, 5000, 5000}, cuboidFaces),
+							0, 0, 0, new Color(255, 255, 255), new Color(0, 122, 16, 80))
+			};
+		}
+		defaultInstances.setRotation(0, Math.toRadians(rotX+20), Math.toRadians(rotY), Math.toRadians(0));
+		defaultInstances.setRotation(1, Math.toRadians(rotX-20), Math.toRadians(rotY+20), Math.toRadians(0));
+		defaultShapes[0].setRotation(Math.toRadians(rotX), Math.toRadians(rotY), Math.toRadians(0));
+		addInstances(defaultInstances);
 		//Draw the shapes, and clear the queue
 		drawShapes(true);
 		//Update changes to the canvas
 		update();
+	}
+	//Runs one fixed step of the default loop's simulation, using the latest input snapshot
+	public void tick(){
+		final InputState keys = input.get();
 		
-		//System.out.print("UP: " + keyValues[0] + " RIGHT: " + keyValues[1] + " DOWN: " + keyValues[2] + " LEFT: " + keyValues[3] + " SPACE: " + keyValues[4]);
+		//Applies mouse look, only when the mouse moved since the last tick
+		if (keys.hasMouse() && (keys.getMouseX() != appliedInput.getMouseX() || keys.getMouseY() != appliedInput.getMouseY())){
+			setCamRotY(Math.toRadians(centerX - keys.getMouseX())/2);
+			setCamRotX(Math.max(Math.min(Math.toRadians(keys.getMouseY() - centerY)/2, Math.PI / 3), -Math.PI / 3));
+			
+			debug = ("X rotation: " + (int) ((centerX - keys.getMouseX())/2) + "\r\nY rotation: " + (int) (Math.max(Math.min((centerY - keys.getMouseY())/2, 60), -60))).toCharArray();
+		}
+		appliedInput = keys;
 		
 		//Update camera varibles for stuff like movement, and jumping
-		setCamZ(camZ - (keyValues[0] ? 50 : 0) * cos(camRotY) + (keyValues[2] ? 50 : 0) * cos(camRotY) - (keyValues[1] ? 50 : 0) * sin(camRotY) + (keyValues[3] ? 50 : 0) * sin(camRotY));
-		setCamX(camX - (keyValues[3] ? 50 : 0) * cos(camRotY) + (keyValues[1] ? 50 : 0) * cos(camRotY) - (keyValues[0] ? 50 : 0) * sin(camRotY) + (keyValues[2] ? 50 : 0) * sin(camRotY));
+		final double moveZ = - (keys.isKeyDown(0) ? 50 : 0) * cos(camRotY) + (keys.isKeyDown(2) ? 50 : 0) * cos(camRotY) - (keys.isKeyDown(1) ? 50 : 0) * sin(camRotY) + (keys.isKeyDown(3) ? 50 : 0) * sin(camRotY);
+		final double moveX = - (keys.isKeyDown(3) ? 50 : 0) * cos(camRotY) + (keys.isKeyDown(1) ? 50 : 0) * cos(camRotY) - (keys.isKeyDown(0) ? 50 : 0) * sin(camRotY) + (keys.isKeyDown(2) ? 50 : 0) * sin(camRotY);
+		if (onGround && keys.isKeyDown(4)){
+			volY = 200;
+		}
 		volY -= 9.8;
-		if (camY < -500){
+		
+		//Moves the camera's body through the scene, stopping and sliding at whatever it hits
+		body[0] = camX;
+		body[1] = camY - Globals.Camera.eyeHeight;
+		body[2] = camZ;
+		final int contacts = collisionGrid.move(body, moveX, volY, moveZ, Globals.Camera.bodyRadius, Globals.Camera.bodyHalfHeight);
+		onGround = (contacts & CollisionGrid.GROUNDED) != 0;
+		if (body[1] - Globals.Camera.bodyHalfHeight < Globals.Physics.floorY){
+			body[1] = Globals.Physics.floorY + Globals.Camera.bodyHalfHeight;
+			onGround = true;
+		}
+		if (onGround){
 			volY = Math.max(0, volY);
-			if (keyValues[4]){
-				volY += 200;
-				camY = -700;
-			}
 		}
-		camY += volY;
+		if ((contacts & CollisionGrid.CEILING) != 0){
+			volY = Math.min(0, volY);
+		}
+		setCamX(body[0]);
+		setCamY(body[1] + Globals.Camera.eyeHeight);
+		setCamZ(body[2]);
 	}
-	//Mouse move event
+	//Mouse move event. Only publishes a new snapshot; the camera follows on the next tick
 	@Override
 	public void mouseMoved(MouseEvent e) {
-		mouseX = e.getX();
-		mouseY = e.getY();
-		
-		setCamRotY(Math.toRadians(centerX - e.getX())/2);
-		setCamRotX(Math.max(Math.min(Math.toRadians(e.getY() - centerY)/2, Math.PI / 3), -Math.PI / 3));
-		
-		debug = ("X rotation: " + ((centerX - e.getX())/2) + "\r\nY rotation: " + (Math.max(Math.min((centerY - e.getY())/2, 60), -60))).toCharArray();
+		final int x = e.getX();
+		final int y = e.getY();
+		input.updateAndGet(state -> state.withMouse(x, y));
 	}
 	//Mouse drag event
 	@Override
 	public void mouseDragged(MouseEvent e) {
-		if (mouseX != -1 && mouseY != -1) {
-			//addRotY((mouseX - e.getX()) / 2);
-			//addRotX((mouseY - e.getY()) / 2);
+		final int x = e.getX();
+		final int y = e.getY();
+		InputState previous = input.getAndUpdate(state -> state.withMouse(x, y));
+		if (previous.hasMouse()) {
+			//addRotY((previous.getMouseX() - x) / 2);
+			//addRotX((previous.getMouseY() - y) / 2);
 		}
-		
-		mouseX = e.getX();
-		mouseY = e.getY();
 	}
 	//Key 'typed' event (pressed and released)
 	@Override
@@ -430,39 +1257,17 @@ public class ThreeDimensionalCanvas extends Canvas implements MouseMotionListene
 	//Key pressed (pushed down)
 	@Override
 	public void keyPressed(KeyEvent keyEvent) {
-		if (keyEvent.getKeyCode() == KeyEvent.VK_UP){
-			keyValues[0] = true;
-		}
-		if (keyEvent.getKeyCode() == KeyEvent.VK_RIGHT){
-			keyValues[1] = true;
-		}
-		if (keyEvent.getKeyCode() == KeyEvent.VK_DOWN){
-			keyValues[2] = true;
-		}
-		if (keyEvent.getKeyCode() == KeyEvent.VK_LEFT){
-			keyValues[3] = true;
-		}
-		if (keyEvent.getKeyCode() == KeyEvent.VK_SPACE){
-			keyValues[4] = true;
+		final int key = InputState.keyIndex(keyEvent.getKeyCode());
+		if (key != -1){
+			input.updateAndGet(state -> state.withKey(key, true));
 		}
 	}
 	//Key released (allowed to release)
 	@Override
 	public void keyReleased(KeyEvent keyEvent) {
-		if (keyEvent.getKeyCode() == KeyEvent.VK_UP){
-			keyValues[0] = false;
-		}
-		if (keyEvent.getKeyCode() == KeyEvent.VK_RIGHT){
-			keyValues[1] = false;
-		}
-		if (keyEvent.getKeyCode() == KeyEvent.VK_DOWN){
-			keyValues[2] = false;
-		}
-		if (keyEvent.getKeyCode() == KeyEvent.VK_LEFT){
-			keyValues[3] = false;
-		}
-		if (keyEvent.getKeyCode() == KeyEvent.VK_SPACE){
-			keyValues[4] = false;
+		final int key = InputState.keyIndex(keyEvent.getKeyCode());
+		if (key != -1){
+			input.updateAndGet(state -> state.withKey(key, false));
 		}
 	}
 	
@@ -0,0 +1,70 @@
+package ThreeDimensionalComponents;
+
+//Capped cylinder around the Y axis, centered on the origin. Faces are wound to the engine's front-face rule: seen from
+//outside, their points run counter-clockwise on screen
+public final class ThreeDimensionalCylinder extends ParametricShape {
+	
+	private final double radius;
+	private final double height;
+	
+	public ThreeDimensionalCylinder(double radius, double height){
+		if (!(radius > 0 && height > 0)){
+			throw new Error("A cylinder needs a radius and height above zero!");
+		}
+		this.radius = radius;
+		this.height = height;
+	}
+	
+	public double getRadius(){
+		return radius;
+	}
+	
+	public double getHeight(){
+		return height;
+	}
+	
+	//"segments" points around both caps. Each cap is one face
+	@Override
+	public Mesh tessellate(int segments){
+		segments = Math.max(3, segments);
+		
+		//Top ring, then bottom ring
+		final double[] x = new double[segments * 2];
+		final double[] y = new double[segments * 2];
+		final double[] z = new double[segments * 2];
+		for (var segment = 0; segment < segments; segment++){
+			double theta = 2 * Math.PI * segment / segments;
+			x[segment] = x[segments + segment] = radius * Math.cos(theta);
+			z[segment] = z[segments + segment] = radius * Math.sin(theta);
+			y[segment] = height / 2;
+			y[segments + segment] = -height / 2;
+		}
+		
+		final int[][] faces = new int[segments + 2][];
+		final int[] top = new int[segments];
+		final int[] bottom = new int[segments];
+		for (var segment = 0; segment < segments; segment++){
+			int next = (segment + 1) % segments;
+			faces[segment] = new int[]{next, segments + next, segments + segment, segment};
+			top[segment] = segments - 1 - segment;
+			bottom[segment] = segments + segment;
+		}
+		faces[segments] = top;
+		faces[segments + 1] = bottom;
+		return new Mesh(x, y, z, faces);
+	}
+	
+	@Override
+	public boolean equals(Object other){
+		if (!(other instanceof ThreeDimensionalCylinder)){
+			return false;
+		}
+		ThreeDimensionalCylinder cylinder = (ThreeDimensionalCylinder) other;
+		return cylinder.radius == radius && cylinder.height == height;
+	}
+	
+	@Override
+	public int hashCode(){
+		return Double.hashCode(radius) * 31 + Double.hashCode(height);
+	}
+}
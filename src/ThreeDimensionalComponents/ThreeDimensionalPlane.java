@@ -0,0 +1,66 @@
+package ThreeDimensionalComponents;
+
+//Flat, subdivided rectangle in the XZ plane, centered on the origin and facing up (+Y): seen from above, its points
+//run counter-clockwise on screen, so back-face culling hides it from below. Subdividing does not change its outline,
+//but smaller faces sort and clip against the near plane far better than one big face
+public final class ThreeDimensionalPlane extends ParametricShape {
+	
+	private final double width;
+	private final double depth;
+	
+	public ThreeDimensionalPlane(double width, double depth){
+		if (!(width > 0 && depth > 0)){
+			throw new Error("A plane needs a width and depth above zero!");
+		}
+		this.width = width;
+		this.depth = depth;
+	}
+	
+	public double getWidth(){
+		return width;
+	}
+	
+	public double getDepth(){
+		return depth;
+	}
+	
+	//A quarter of "segments" cells along each side
+	@Override
+	public Mesh tessellate(int segments){
+		final int cells = Math.max(1, segments / 4);
+		final int side = cells + 1;
+		
+		final double[] x = new double[side * side];
+		final double[] y = new double[side * side];
+		final double[] z = new double[side * side];
+		for (var row = 0; row < side; row++){
+			for (var column = 0; column < side; column++){
+				x[row * side + column] = (column / (double) cells - 0.5) * width;
+				z[row * side + column] = (row / (double) cells - 0.5) * depth;
+			}
+		}
+		
+		final int[][] faces = new int[cells * cells][];
+		for (var row = 0; row < cells; row++){
+			for (var column = 0; column < cells; column++){
+				int corner = row * side + column;
+				faces[row * cells + column] = new int[]{corner, corner + side, corner + side + 1, corner + 1};
+			}
+		}
+		return new Mesh(x, y, z, faces);
+	}
+	
+	@Override
+	public boolean equals(Object other){
+		if (!(other instanceof ThreeDimensionalPlane)){
+			return false;
+		}
+		ThreeDimensionalPlane plane = (ThreeDimensionalPlane) other;
+		return plane.width == width && plane.depth == depth;
+	}
+	
+	@Override
+	public int hashCode(){
+		return Double.hashCode(width) * 31 + Double.hashCode(depth);
+	}
+}
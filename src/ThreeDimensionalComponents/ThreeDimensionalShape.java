@@ -1,80 +1,102 @@
 package ThreeDimensionalComponents;
 
-import java.awt.*;
-import java.util.ArrayList;
-
 class ThreeDimensionalShape {
 	private double[] x;
 	private double[] y;
 	private double[] z;
-	private final ArrayList<Double> zValues = new ArrayList<>();
+	private double[] screenX;
+	private double[] screenY;
+	private int pointCount;
+	private double[] zValues;
 	private int[][] lines;
 	private int[][] shapes;
+	private boolean[] crossing;
+	private int shapeCount;
+	
+	//Reused by "set"
+	private double[] zList = new double[0];
+	private boolean[] crossingList = new boolean[0];
+	private final DepthSorter sorter = new DepthSorter();
 	
 	ThreeDimensionalShape(){
 		x = new double[0];
 		y = new double[0];
 		z = new double[0];
+		screenX = new double[0];
+		screenY = new double[0];
 		lines = new int[0][];
 		shapes = new int[0][];
+		crossing = new boolean[0];
+		zValues = new double[0];
+	}
+	
+	ThreeDimensionalShape(VertexBuffer vertices, int[][] Lines, int[][] Shapes){
+		this();
+		set(vertices, Lines, Shapes, false);
 	}
 	
-	ThreeDimensionalShape(double[] X, double[] Y, double[] Z, int[][] Lines, int[][] Shapes){
-		x = X;
-		y = Y;
-		z = Z;
+	//Replaces the contents of this shape, reusing its arrays. Lets one instance be processed over and over without
+	//allocating, once its arrays have grown to fit. Faces behind the near plane are dropped, and so are back faces if
+	//cullBackFaces is true
+	void set(VertexBuffer vertices, int[][] Lines, int[][] Shapes, boolean cullBackFaces){
+		x = vertices.x;
+		y = vertices.y;
+		z = vertices.z;
+		screenX = vertices.screenX;
+		screenY = vertices.screenY;
+		pointCount = vertices.count;
 		lines = Lines;
-		shapes = new int[Shapes.length][];
 		
-		ArrayList<Integer> shapeIndex = new ArrayList<>();
-		ArrayList<Double> zList = new ArrayList<>();
+		if (zList.length < Shapes.length){
+			zList = new double[Shapes.length];
+			zValues = new double[Shapes.length];
+			shapes = new int[Shapes.length][];
+			crossing = new boolean[Shapes.length];
+			crossingList = new boolean[Shapes.length];
+		}
 		
+		//Faces crossing the near plane are sorted as if their points behind it were on it
 		for (var i = 0; i < Shapes.length; i++){
+			int position = FaceClipper.classify(z, Shapes[i], 0, Shapes[i].length);
+			if (position == FaceClipper.OUTSIDE || (position == FaceClipper.CROSSING && Globals.Camera.strictClip)
+					|| (cullBackFaces && FaceClipper.isBackFace(x, y, z, Shapes[i], 0, Shapes[i].length))){
+				zList[i] = Globals.Numbers.infinity;
+				continue;
+			}
+			crossingList[i] = position == FaceClipper.CROSSING;
 			double zSum = 0;
-			shapeIndex.add(i);
 			for (var j = 0; j < Shapes[i].length; j++){
-				zSum += z[Shapes[i][j]];
-				if (z[Shapes[i][j]] > 0 && Globals.Camera.strictClip){
-					zSum = Globals.Numbers.infinity;
-				}
+				zSum += Math.min(z[Shapes[i][j]], -Globals.Camera.nearPlane);
 			}
-			zList.add(zSum / Shapes[i].length);
+			zList[i] = zSum / Shapes[i].length;
 		}
 		
-		int smallZ;
-		double smallValue;
-		int size = Shapes.length;
-		
-		for (var i = 0; i < size; i++){
-			smallValue = Globals.Numbers.infinity;
-			smallZ = -1;
-			for (var j = 0; j < shapeIndex.size(); j++){
-				if (smallValue > zList.get(shapeIndex.get(j))){
-					smallValue = zList.get(shapeIndex.get(j));
-					smallZ = j;
-				}
-			}
-			if (smallZ == -1){
-				size = i;
-				break;
-			}
-			shapes[i] = Shapes[shapeIndex.get(smallZ)];
-			zValues.add(smallValue);
-			
-			shapeIndex.remove(smallZ);
+		//Sorts faces by average z, farthest first. Clipped faces sort to the end, and are dropped
+		int[] order = sorter.sort(zList, Shapes.length);
+		int size = 0;
+		while (size < Shapes.length && zList[order[size]] < Globals.Numbers.infinity){
+			size++;
 		}
 		
-		int[][] temp = new int[size][];
 		for (var i = 0; i < size; i++){
-			temp[i] = shapes[i];
+			shapes[i] = Shapes[order[i]];
+			zValues[i] = zList[order[i]];
+			crossing[i] = crossingList[order[i]];
+		}
+		for (var i = size; i < shapes.length; i++){
+			shapes[i] = null;
 		}
-		shapes = temp;
+		shapeCount = size;
 	}
 	
 	double[] getX() {
 		return x;
 	}
 	
+	int getPointCount() {
+		return pointCount;
+	}
+	
 	double[] getY() {
 		return y;
 	}
@@ -83,25 +105,34 @@ class ThreeDimensionalShape {
 		return z;
 	}
 	
+	double[] getScreenX() {
+		return screenX;
+	}
+	
+	double[] getScreenY() {
+		return screenY;
+	}
+	
 	int[][] getLines() {
 		return lines;
 	}
 	
+	//Faces, farthest first. Only the first "getShapeCount()" entries are valid
 	int[][] getShapes() {
 		return shapes;
 	}
 	
-	ArrayList<Polygon> getPolygons(int centerX, int centerY, double FOV) {
-		ArrayList<Polygon> polygons = new ArrayList<>();
-		for (var i = 0; i < shapes.length; i++){
-			polygons.add(new Polygon());
-			for (var j = 0; j < shapes[i].length; j++){
-				polygons.get(i).addPoint((int) (Math.round(x[shapes[i][j]])/-z[shapes[i][j]] * FOV) + centerX,(int) (Math.round(y[shapes[i][j]])/-z[shapes[i][j]] * FOV) + centerY);
-			}
-		}
-		return polygons;
+	int getShapeCount() {
+		return shapeCount;
 	}
-	ArrayList<Double> getZList(){
+	
+	//Whether a face (by its index in "getShapes()") crosses the near plane, and has to be clipped before drawing
+	boolean isCrossing(int shape) {
+		return crossing[shape];
+	}
+	
+	//Average z of every face, in the same order as "getShapes()"
+	double[] getZList(){
 		return zValues;
 	}
 }
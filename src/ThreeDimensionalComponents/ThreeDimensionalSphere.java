@@ -1,9 +1,75 @@
 package ThreeDimensionalComponents;
 
-public class ThreeDimensionalSphere extends ThreeDimensionalShape {
-	public ThreeDimensionalSphere() {
-		super();
+//Sphere around the origin, tessellated into rings from pole to pole. Faces are wound to the engine's front-face rule
+//(see "FaceClipper.isBackFace"): seen from outside, their points run counter-clockwise on screen, so back-face culling
+//drops the far side
+public final class ThreeDimensionalSphere extends ParametricShape {
+	
+	private final double radius;
+	
+	public ThreeDimensionalSphere(double radius){
+		if (!(radius > 0)){
+			throw new Error("A sphere needs a radius above zero!");
+		}
+		this.radius = radius;
+	}
+	
+	public double getRadius(){
+		return radius;
+	}
+	
+	//"segments" points around every ring, and half as many rings
+	@Override
+	public Mesh tessellate(int segments){
+		segments = Math.max(3, segments);
+		final int rings = Math.max(2, segments / 2);
 		
+		//North pole, every ring in between, then the south pole
+		final int pointCount = 2 + (rings - 1) * segments;
+		final double[] x = new double[pointCount];
+		final double[] y = new double[pointCount];
+		final double[] z = new double[pointCount];
+		y[0] = radius;
+		y[pointCount - 1] = -radius;
+		for (var ring = 1; ring < rings; ring++){
+			double phi = Math.PI * ring / rings;
+			double ringRadius = radius * Math.sin(phi);
+			for (var segment = 0; segment < segments; segment++){
+				double theta = 2 * Math.PI * segment / segments;
+				int point = 1 + (ring - 1) * segments + segment;
+				x[point] = ringRadius * Math.cos(theta);
+				y[point] = radius * Math.cos(phi);
+				z[point] = ringRadius * Math.sin(theta);
+			}
+		}
 		
+		//Triangles around the poles, quads in between
+		final int[][] faces = new int[rings * segments][];
+		int face = 0;
+		for (var ring = 0; ring < rings; ring++){
+			for (var segment = 0; segment < segments; segment++){
+				int next = (segment + 1) % segments;
+				int upper = 1 + (ring - 1) * segments;
+				int lower = 1 + ring * segments;
+				if (ring == 0){
+					faces[face++] = new int[]{0, lower + next, lower + segment};
+				} else if (ring == rings - 1){
+					faces[face++] = new int[]{upper + next, pointCount - 1, upper + segment};
+				} else {
+					faces[face++] = new int[]{upper + next, lower + next, lower + segment, upper + segment};
+				}
+			}
+		}
+		return new Mesh(x, y, z, faces);
+	}
+	
+	@Override
+	public boolean equals(Object other){
+		return other instanceof ThreeDimensionalSphere && ((ThreeDimensionalSphere) other).radius == radius;
+	}
+	
+	@Override
+	public int hashCode(){
+		return Double.hashCode(radius);
 	}
 }
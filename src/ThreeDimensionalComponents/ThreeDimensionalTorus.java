@@ -0,0 +1,72 @@
+package ThreeDimensionalComponents;
+
+//Torus around the Y axis, centered on the origin: a tube of "tubeRadius" swept around a circle of "radius". Faces are
+//wound to the engine's front-face rule: seen from outside, their points run counter-clockwise on screen
+public final class ThreeDimensionalTorus extends ParametricShape {
+	
+	private final double radius;
+	private final double tubeRadius;
+	
+	public ThreeDimensionalTorus(double radius, double tubeRadius){
+		if (!(tubeRadius > 0 && radius > tubeRadius)){
+			throw new Error("A torus needs a tube radius above zero, and a radius above its tube radius!");
+		}
+		this.radius = radius;
+		this.tubeRadius = tubeRadius;
+	}
+	
+	public double getRadius(){
+		return radius;
+	}
+	
+	public double getTubeRadius(){
+		return tubeRadius;
+	}
+	
+	//"segments" rings around the Y axis, each with half as many points around the tube
+	@Override
+	public Mesh tessellate(int segments){
+		segments = Math.max(3, segments);
+		final int sides = Math.max(3, segments / 2);
+		
+		final double[] x = new double[segments * sides];
+		final double[] y = new double[segments * sides];
+		final double[] z = new double[segments * sides];
+		for (var segment = 0; segment < segments; segment++){
+			double theta = 2 * Math.PI * segment / segments;
+			for (var side = 0; side < sides; side++){
+				double phi = 2 * Math.PI * side / sides;
+				double distance = radius + tubeRadius * Math.cos(phi);
+				int point = segment * sides + side;
+				x[point] = distance * Math.cos(theta);
+				y[point] = tubeRadius * Math.sin(phi);
+				z[point] = distance * Math.sin(theta);
+			}
+		}
+		
+		final int[][] faces = new int[segments * sides][];
+		for (var segment = 0; segment < segments; segment++){
+			int nextSegment = (segment + 1) % segments;
+			for (var side = 0; side < sides; side++){
+				int nextSide = (side + 1) % sides;
+				faces[segment * sides + side] = new int[]{nextSegment * sides + nextSide, nextSegment * sides + side,
+						segment * sides + side, segment * sides + nextSide};
+			}
+		}
+		return new Mesh(x, y, z, faces);
+	}
+	
+	@Override
+	public boolean equals(Object other){
+		if (!(other instanceof ThreeDimensionalTorus)){
+			return false;
+		}
+		ThreeDimensionalTorus torus = (ThreeDimensionalTorus) other;
+		return torus.radius == radius && torus.tubeRadius == tubeRadius;
+	}
+	
+	@Override
+	public int hashCode(){
+		return Double.hashCode(radius) * 31 + Double.hashCode(tubeRadius);
+	}
+}
@@ -0,0 +1,198 @@
+package ThreeDimensionalComponents;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+//Multi-core backend. The frame is split into square screen tiles, every face is binned into the tiles its bounding
+//box touches, and each tile is then rasterized on a ForkJoinPool worker, clipped to its own region of the buffers.
+//Tiles never share pixels, so no locking is needed, and every tile draws its faces in queue order, so translucent
+//faces still blend exactly as they would on one thread.
+//Either draws sorted faces back to front (like Graphics2DRasterizer), or depth tests every pixel (like
+//ZBufferRasterizer)
+public class TiledRasterizer extends PixelRasterizer {
+	
+	//Tiles with fewer faces than this are not worth handing to another worker on their own
+	private static final int MIN_TASK_FACES = 64;
+	
+	private final boolean depthTest;
+	private final int tileSize;
+	private final ForkJoinPool pool;
+	
+	//Tile grid of the last frame
+	private int tilesX;
+	private int tilesY;
+	private SoftwareRasterizer[] rasters = new SoftwareRasterizer[0];
+	
+	//Bins: the faces of tile i are binFaces[binStart[i]] up to (but not including) binFaces[binStart[i + 1]]
+	private int[] binStart = new int[1];
+	private int[] binFaces = new int[0];
+	
+	//Per face tile range, filled while counting and reused while binning
+	private int[] faceTiles = new int[0];
+	
+	//Frame being drawn
+	private DrawQueue queue;
+	private float[] depth;
+	private int width;
+	private int height;
+	
+	//Constructor. Accepts whether to depth test, the tile size in pixels and the pool to render on
+	public TiledRasterizer(boolean depthTest, int tileSize, ForkJoinPool pool){
+		if (tileSize < 1){
+			throw new Error("Tile size must be AT LEAST one pixel");
+		}
+		this.depthTest = depthTest;
+		this.tileSize = tileSize;
+		this.pool = pool;
+	}
+	
+	//Constructor. Uses 64 pixel tiles on the common pool
+	public TiledRasterizer(boolean depthTest){
+		this(depthTest, 64, ForkJoinPool.commonPool());
+	}
+	
+	@Override
+	boolean needsSortedFaces() {
+		return !depthTest;
+	}
+	
+	@Override
+	int drawFaces(RenderTarget target, DrawQueue queue, int[] order) {
+		this.queue = queue;
+		width = target.getWidth();
+		height = target.getHeight();
+		
+		beginPixels(target);
+		depth = depthTest ? clearDepth(width, height) : null;
+		
+		//Makes a rasterizer per tile
+		tilesX = (width + tileSize - 1) / tileSize;
+		tilesY = (height + tileSize - 1) / tileSize;
+		final int tileCount = tilesX * tilesY;
+		if (rasters.length < tileCount){
+			rasters = Arrays.copyOf(rasters, tileCount);
+			binStart = new int[tileCount + 1];
+		}
+		for (var tile = 0; tile < tileCount; tile++){
+			if (rasters[tile] == null){
+				rasters[tile] = new SoftwareRasterizer();
+			}
+			SoftwareRasterizer raster = rasters[tile];
+			raster.setTarget(pixels, depth, width, height, imageType);
+			int tileX = (tile % tilesX) * tileSize;
+			int tileY = (tile / tilesX) * tileSize;
+			raster.setClip(Math.max(tileX, clipX0), Math.max(tileY, clipY0),
+					Math.min(tileX + tileSize, clipX1), Math.min(tileY + tileSize, clipY1));
+		}
+		
+		final int drawn = bin(order, tileCount);
+		pool.invoke(new TileTask(0, tileCount));
+		
+		this.queue = null;
+		endPixels(target);
+		return drawn;
+	}
+	
+	//Sorts faces into tiles by bounding box, keeping draw order within every tile. Returns the number of faces that
+	//landed in at least one tile
+	private int bin(int[] order, int tileCount){
+		final int faceCount = queue.faceCount;
+		if (faceTiles.length < faceCount * 4){
+			faceTiles = new int[Math.max(faceCount * 4, faceTiles.length * 2)];
+		}
+		
+		//Counts the faces of every tile
+		Arrays.fill(binStart, 0, tileCount + 1, 0);
+		int binned = 0;
+		for (var i = 0; i < faceCount; i++){
+			int face = order == null ? i : order[i];
+			int base = i * 4;
+			if (!(queue.faceZ[face] < 0) || !tileRange(face, base)){
+				faceTiles[base] = 1;
+				faceTiles[base + 2] = 0;
+				continue;
+			}
+			for (var tileY = faceTiles[base + 1]; tileY <= faceTiles[base + 3]; tileY++){
+				for (var tileX = faceTiles[base]; tileX <= faceTiles[base + 2]; tileX++){
+					binStart[tileY * tilesX + tileX + 1]++;
+				}
+			}
+			binned++;
+		}
+		for (var tile = 0; tile < tileCount; tile++){
+			binStart[tile + 1] += binStart[tile];
+		}
+		if (binFaces.length < binStart[tileCount]){
+			binFaces = new int[Math.max(binStart[tileCount], binFaces.length * 2)];
+		}
+		
+		//Fills the bins, using the starts as cursors and shifting them back afterwards
+		for (var i = 0; i < faceCount; i++){
+			int face = order == null ? i : order[i];
+			int base = i * 4;
+			for (var tileY = faceTiles[base + 1]; tileY <= faceTiles[base + 3]; tileY++){
+				for (var tileX = faceTiles[base]; tileX <= faceTiles[base + 2]; tileX++){
+					binFaces[binStart[tileY * tilesX + tileX]++] = face;
+				}
+			}
+		}
+		for (var tile = tileCount; tile > 0; tile--){
+			binStart[tile] = binStart[tile - 1];
+		}
+		binStart[0] = 0;
+		return binned;
+	}
+	
+	//Writes the range of tiles a face touches to faceTiles[base] (min x, min y, max x, max y). Returns false if the
+	//face is entirely off screen
+	private boolean tileRange(int face, int base){
+		final int start = queue.faceStart[face];
+		final int end = start + queue.faceSize[face];
+		double minX = Globals.Numbers.infinity, minY = Globals.Numbers.infinity;
+		double maxX = -Globals.Numbers.infinity, maxY = -Globals.Numbers.infinity;
+		for (var i = start; i < end; i++){
+			minX = Math.min(minX, queue.pointX[i]);
+			minY = Math.min(minY, queue.pointY[i]);
+			maxX = Math.max(maxX, queue.pointX[i]);
+			maxY = Math.max(maxY, queue.pointY[i]);
+		}
+		if (!(maxX >= 0 && maxY >= 0 && minX < width && minY < height)){
+			return false;
+		}
+		faceTiles[base] = Math.max(0, (int) Math.floor(minX)) / tileSize;
+		faceTiles[base + 1] = Math.max(0, (int) Math.floor(minY)) / tileSize;
+		faceTiles[base + 2] = Math.min(width - 1, (int) Math.ceil(maxX)) / tileSize;
+		faceTiles[base + 3] = Math.min(height - 1, (int) Math.ceil(maxY)) / tileSize;
+		return true;
+	}
+	
+	//Rasterizes a range of tiles, splitting it in half while both halves have enough work
+	private class TileTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		
+		private final int from;
+		private final int to;
+		
+		TileTask(int from, int to){
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected void compute() {
+			if (to - from > 1 && binStart[to] - binStart[from] >= MIN_TASK_FACES * 2){
+				int middle = (from + to) >>> 1;
+				invokeAll(new TileTask(from, middle), new TileTask(middle, to));
+				return;
+			}
+			for (var tile = from; tile < to; tile++){
+				SoftwareRasterizer raster = rasters[tile];
+				for (var i = binStart[tile]; i < binStart[tile + 1]; i++){
+					raster.fillFace(queue, binFaces[i]);
+					raster.strokeFace(queue, binFaces[i]);
+				}
+			}
+		}
+	}
+}
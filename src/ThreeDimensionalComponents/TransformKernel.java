@@ -0,0 +1,49 @@
+package ThreeDimensionalComponents;
+
+//SIMD transform and projection, for VertexBuffer. The engine targets Java 11, so the kernel lives in the optional
+//"vector" module (built against jdk.incubator.vector) and is loaded by name. If that module is not on the class path,
+//or the JVM was started without "--add-modules jdk.incubator.vector", every transform stays on the scalar loop.
+//Pick a path with -DThreeDimensionalComponents.transform=scalar, vector (the default) or float; "float" also keeps
+//float32 copies of mesh points and transforms them at float precision, reading half as much memory
+abstract class TransformKernel {
+	
+	//Ranges shorter than this stay on the scalar loop, as setting up the vectors costs more than it saves
+	static final int MIN_POINTS = 32;
+	
+	//Kernel in use, or null for the scalar loop
+	static final TransformKernel INSTANCE;
+	
+	//Whether meshes are transformed from float32 copies of their points
+	static final boolean FLOAT_STORAGE;
+	
+	static {
+		final String mode = System.getProperty("ThreeDimensionalComponents.transform", "vector");
+		TransformKernel kernel = null;
+		if (!mode.equals("scalar")){
+			try {
+				kernel = (TransformKernel) Class.forName("ThreeDimensionalComponents.VectorTransformKernel")
+						.getDeclaredConstructor().newInstance();
+			} catch (ReflectiveOperationException | LinkageError e){
+				//Vector module or incubator module missing, so the scalar loop is used
+			}
+		}
+		INSTANCE = kernel;
+		FLOAT_STORAGE = kernel != null && mode.equals("float");
+	}
+	
+	//Name of the path in use, for logs and benchmarks
+	static String getPath(){
+		return INSTANCE == null ? "scalar" : FLOAT_STORAGE ? "float" : INSTANCE.getName();
+	}
+	
+	abstract String getName();
+	
+	//Same contract as the scalar loop in VertexBuffer: transforms and projects points "from" up to "to" into "out",
+	//whose arrays are already big enough. The double path gives the same results as the scalar loop
+	abstract void transform(double[] m, double[] srcX, double[] srcY, double[] srcZ, int from, int to,
+	                        double FOV, int centerX, int centerY, VertexBuffer out);
+	
+	//Same as above, from float32 points, computing in float32
+	abstract void transform(double[] m, float[] srcX, float[] srcY, float[] srcZ, int from, int to,
+	                        double FOV, int centerX, int centerY, VertexBuffer out);
+}
@@ -0,0 +1,116 @@
+package ThreeDimensionalComponents;
+
+import java.nio.FloatBuffer;
+
+//Structure-of-arrays output of the transform stage: view-space coords, and the projected screen coords.
+//Arrays only ever grow, so a buffer that is reused does not allocate once it is big enough
+final class VertexBuffer {
+	
+	//View-space coords. z is also the depth; points in front of the camera have a negative z
+	double[] x = new double[0];
+	double[] y = new double[0];
+	double[] z = new double[0];
+	
+	//Screen coords, with perspective already applied
+	double[] screenX = new double[0];
+	double[] screenY = new double[0];
+	
+	//Number of valid points
+	int count = 0;
+	
+	//Makes sure the buffer can hold "count" points, and sets the count
+	void resize(int count){
+		if (x.length < count){
+			x = new double[count];
+			y = new double[count];
+			z = new double[count];
+			screenX = new double[count];
+			screenY = new double[count];
+		}
+		this.count = count;
+	}
+	
+	//Transforms and projects every point in a single pass. The source arrays are never modified
+	void transform(Matrix4 modelView, double[] srcX, double[] srcY, double[] srcZ, int count,
+	               double FOV, int centerX, int centerY){
+		resize(count);
+		transform(modelView, srcX, srcY, srcZ, 0, count, FOV, centerX, centerY);
+	}
+	
+	//Transforms and projects points "from" up to (but not including) "to". The buffer must already be big enough.
+	//Separate ranges can be transformed on separate threads. Uses the SIMD kernel if there is one
+	void transform(Matrix4 modelView, double[] srcX, double[] srcY, double[] srcZ, int from, int to,
+	               double FOV, int centerX, int centerY){
+		final TransformKernel kernel = TransformKernel.INSTANCE;
+		if (kernel != null && to - from >= TransformKernel.MIN_POINTS){
+			kernel.transform(modelView.m, srcX, srcY, srcZ, from, to, FOV, centerX, centerY, this);
+			return;
+		}
+		transformScalar(modelView, srcX, srcY, srcZ, from, to, FOV, centerX, centerY);
+	}
+	
+	//Transforms points of a mesh, from its float32 copies if float storage is on
+	void transform(Matrix4 modelView, Mesh mesh, int from, int to, double FOV, int centerX, int centerY){
+		final TransformKernel kernel = TransformKernel.INSTANCE;
+		if (TransformKernel.FLOAT_STORAGE && to - from >= TransformKernel.MIN_POINTS){
+			final float[][] points = mesh.getFloatPoints();
+			kernel.transform(modelView.m, points[0], points[1], points[2], from, to, FOV, centerX, centerY, this);
+			return;
+		}
+		transform(modelView, mesh.getX(), mesh.getY(), mesh.getZ(), from, to, FOV, centerX, centerY);
+	}
+	
+	//Transforms points of an off-heap mesh, reading the float coords in place
+	void transform(Matrix4 modelView, OffHeapMesh mesh, int from, int to, double FOV, int centerX, int centerY){
+		final FloatBuffer srcX = mesh.getX();
+		final FloatBuffer srcY = mesh.getY();
+		final FloatBuffer srcZ = mesh.getZ();
+		final double[] m = modelView.m;
+		final double m00 = m[0], m01 = m[1], m02 = m[2], m03 = m[3];
+		final double m10 = m[4], m11 = m[5], m12 = m[6], m13 = m[7];
+		final double m20 = m[8], m21 = m[9], m22 = m[10], m23 = m[11];
+		
+		for (var i = from; i < to; i++){
+			double X = srcX.get(i);
+			double Y = srcY.get(i);
+			double Z = srcZ.get(i);
+			double viewX = m00 * X + m01 * Y + m02 * Z + m03;
+			double viewY = m10 * X + m11 * Y + m12 * Z + m13;
+			double viewZ = m20 * X + m21 * Y + m22 * Z + m23;
+			x[i] = viewX;
+			y[i] = viewY;
+			z[i] = viewZ;
+			
+			//Perspective divide
+			double scale = FOV / -viewZ;
+			screenX[i] = viewX * scale + centerX;
+			screenY[i] = viewY * scale + centerY;
+		}
+	}
+	
+	//Scalar loop, used when there is no SIMD kernel
+	void transformScalar(Matrix4 modelView, double[] srcX, double[] srcY, double[] srcZ, int from, int to,
+	                     double FOV, int centerX, int centerY){
+		final double[] m = modelView.m;
+		final double m00 = m[0], m01 = m[1], m02 = m[2], m03 = m[3];
+		final double m10 = m[4], m11 = m[5], m12 = m[6], m13 = m[7];
+		final double m20 = m[8], m21 = m[9], m22 = m[10], m23 = m[11];
+		
+		for (var i = from; i < to; i++){
+			double X = srcX[i];
+			double Y = srcY[i];
+			double Z = srcZ[i];
+			double viewX = m00 * X + m01 * Y + m02 * Z + m03;
+			double viewY = m10 * X + m11 * Y + m12 * Z + m13;
+			double viewZ = m20 * X + m21 * Y + m22 * Z + m23;
+			x[i] = viewX;
+			y[i] = viewY;
+			z[i] = viewZ;
+			
+			//Perspective divide
+			double scale = FOV / -viewZ;
+			screenX[i] = viewX * scale + centerX;
+			screenY[i] = viewY * scale + centerY;
+		}
+	}
+}
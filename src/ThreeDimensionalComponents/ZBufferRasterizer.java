@@ -0,0 +1,36 @@
+package ThreeDimensionalComponents;
+
+//Depth-buffered backend. Faces are drawn in submission order straight into the target's pixels, and every pixel is
+//depth tested, so occlusion is correct without any sorting.
+//Opaque faces write depth; translucent faces are blended in submission order and do not hide what is drawn after
+//them, so this backend suits dense, mostly opaque scenes best
+public class ZBufferRasterizer extends PixelRasterizer {
+	
+	private final SoftwareRasterizer raster = new SoftwareRasterizer();
+	
+	@Override
+	boolean needsSortedFaces() {
+		return false;
+	}
+	
+	@Override
+	int drawFaces(RenderTarget target, DrawQueue queue, int[] order) {
+		final int width = target.getWidth();
+		final int height = target.getHeight();
+		
+		beginPixels(target);
+		raster.setTarget(pixels, clearDepth(width, height), width, height, imageType);
+		raster.setClip(clipX0, clipY0, clipX1, clipY1);
+		int drawn = 0;
+		for (var face = 0; face < queue.faceCount; face++){
+			//Draws face if Average Z index is in front of camera
+			if (queue.faceZ[face] < 0){
+				raster.fillFace(queue, face);
+				raster.strokeFace(queue, face);
+				drawn++;
+			}
+		}
+		endPixels(target);
+		return drawn;
+	}
+}
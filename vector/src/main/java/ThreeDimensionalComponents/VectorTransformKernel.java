@@ -0,0 +1,132 @@
+package ThreeDimensionalComponents;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+//Transform and projection on the widest vectors the CPU has. Loaded by name from TransformKernel; loading fails with a
+//LinkageError if the JVM was started without "--add-modules jdk.incubator.vector", and the engine stays scalar.
+//The double path does the same operations in the same order as the scalar loop, so its results are identical. The
+//float path reads half as much memory and divides in float32, and is as precise as floats are
+final class VectorTransformKernel extends TransformKernel {
+	
+	private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+	
+	//Floats in half as wide a vector, so there are as many lanes as in DOUBLES and every float vector widens into
+	//exactly one double vector. Splitting a full-width float vector in two halves is far slower
+	private static final VectorSpecies<Float> FLOATS = VectorSpecies.of(float.class, VectorShape.forBitSize(DOUBLES.vectorBitSize() / 2));
+	
+	VectorTransformKernel(){
+		//Fails here, rather than on the first transform, if the Vector API is not usable
+		DoubleVector.zero(DOUBLES);
+		FloatVector.zero(FLOATS);
+	}
+	
+	@Override
+	String getName(){
+		return "vector" + DOUBLES.vectorBitSize();
+	}
+	
+	@Override
+	void transform(double[] m, double[] srcX, double[] srcY, double[] srcZ, int from, int to,
+	               double FOV, int centerX, int centerY, VertexBuffer out){
+		final double[] x = out.x, y = out.y, z = out.z, screenX = out.screenX, screenY = out.screenY;
+		final DoubleVector m00 = DoubleVector.broadcast(DOUBLES, m[0]), m01 = DoubleVector.broadcast(DOUBLES, m[1]);
+		final DoubleVector m02 = DoubleVector.broadcast(DOUBLES, m[2]), m03 = DoubleVector.broadcast(DOUBLES, m[3]);
+		final DoubleVector m10 = DoubleVector.broadcast(DOUBLES, m[4]), m11 = DoubleVector.broadcast(DOUBLES, m[5]);
+		final DoubleVector m12 = DoubleVector.broadcast(DOUBLES, m[6]), m13 = DoubleVector.broadcast(DOUBLES, m[7]);
+		final DoubleVector m20 = DoubleVector.broadcast(DOUBLES, m[8]), m21 = DoubleVector.broadcast(DOUBLES, m[9]);
+		final DoubleVector m22 = DoubleVector.broadcast(DOUBLES, m[10]), m23 = DoubleVector.broadcast(DOUBLES, m[11]);
+		final DoubleVector fov = DoubleVector.broadcast(DOUBLES, FOV);
+		final DoubleVector cx = DoubleVector.broadcast(DOUBLES, centerX);
+		final DoubleVector cy = DoubleVector.broadcast(DOUBLES, centerY);
+		
+		int i = from;
+		for (final int bound = from + DOUBLES.loopBound(to - from); i < bound; i += DOUBLES.length()){
+			DoubleVector X = DoubleVector.fromArray(DOUBLES, srcX, i);
+			DoubleVector Y = DoubleVector.fromArray(DOUBLES, srcY, i);
+			DoubleVector Z = DoubleVector.fromArray(DOUBLES, srcZ, i);
+			DoubleVector viewX = m00.mul(X).add(m01.mul(Y)).add(m02.mul(Z)).add(m03);
+			DoubleVector viewY = m10.mul(X).add(m11.mul(Y)).add(m12.mul(Z)).add(m13);
+			DoubleVector viewZ = m20.mul(X).add(m21.mul(Y)).add(m22.mul(Z)).add(m23);
+			viewX.intoArray(x, i);
+			viewY.intoArray(y, i);
+			viewZ.intoArray(z, i);
+			
+			//Perspective divide
+			DoubleVector scale = fov.div(viewZ.neg());
+			viewX.mul(scale).add(cx).intoArray(screenX, i);
+			viewY.mul(scale).add(cy).intoArray(screenY, i);
+		}
+		
+		//Points left over after the last full vector
+		for (; i < to; i++){
+			double X = srcX[i];
+			double Y = srcY[i];
+			double Z = srcZ[i];
+			double viewX = m[0] * X + m[1] * Y + m[2] * Z + m[3];
+			double viewY = m[4] * X + m[5] * Y + m[6] * Z + m[7];
+			double viewZ = m[8] * X + m[9] * Y + m[10] * Z + m[11];
+			x[i] = viewX;
+			y[i] = viewY;
+			z[i] = viewZ;
+			double scale = FOV / -viewZ;
+			screenX[i] = viewX * scale + centerX;
+			screenY[i] = viewY * scale + centerY;
+		}
+	}
+	
+	@Override
+	void transform(double[] m, float[] srcX, float[] srcY, float[] srcZ, int from, int to,
+	               double FOV, int centerX, int centerY, VertexBuffer out){
+		final double[] x = out.x, y = out.y, z = out.z, screenX = out.screenX, screenY = out.screenY;
+		final FloatVector m00 = FloatVector.broadcast(FLOATS, (float) m[0]), m01 = FloatVector.broadcast(FLOATS, (float) m[1]);
+		final FloatVector m02 = FloatVector.broadcast(FLOATS, (float) m[2]), m03 = FloatVector.broadcast(FLOATS, (float) m[3]);
+		final FloatVector m10 = FloatVector.broadcast(FLOATS, (float) m[4]), m11 = FloatVector.broadcast(FLOATS, (float) m[5]);
+		final FloatVector m12 = FloatVector.broadcast(FLOATS, (float) m[6]), m13 = FloatVector.broadcast(FLOATS, (float) m[7]);
+		final FloatVector m20 = FloatVector.broadcast(FLOATS, (float) m[8]), m21 = FloatVector.broadcast(FLOATS, (float) m[9]);
+		final FloatVector m22 = FloatVector.broadcast(FLOATS, (float) m[10]), m23 = FloatVector.broadcast(FLOATS, (float) m[11]);
+		final FloatVector fov = FloatVector.broadcast(FLOATS, (float) FOV);
+		final FloatVector cx = FloatVector.broadcast(FLOATS, centerX);
+		final FloatVector cy = FloatVector.broadcast(FLOATS, centerY);
+		
+		int i = from;
+		for (final int bound = from + FLOATS.loopBound(to - from); i < bound; i += FLOATS.length()){
+			FloatVector X = FloatVector.fromArray(FLOATS, srcX, i);
+			FloatVector Y = FloatVector.fromArray(FLOATS, srcY, i);
+			FloatVector Z = FloatVector.fromArray(FLOATS, srcZ, i);
+			FloatVector viewX = m00.mul(X).add(m01.mul(Y)).add(m02.mul(Z)).add(m03);
+			FloatVector viewY = m10.mul(X).add(m11.mul(Y)).add(m12.mul(Z)).add(m13);
+			FloatVector viewZ = m20.mul(X).add(m21.mul(Y)).add(m22.mul(Z)).add(m23);
+			FloatVector scale = fov.div(viewZ.neg());
+			store(viewX, x, i);
+			store(viewY, y, i);
+			store(viewZ, z, i);
+			store(viewX.mul(scale).add(cx), screenX, i);
+			store(viewY.mul(scale).add(cy), screenY, i);
+		}
+		
+		//Points left over after the last full vector
+		for (; i < to; i++){
+			float X = srcX[i];
+			float Y = srcY[i];
+			float Z = srcZ[i];
+			float viewX = (float) m[0] * X + (float) m[1] * Y + (float) m[2] * Z + (float) m[3];
+			float viewY = (float) m[4] * X + (float) m[5] * Y + (float) m[6] * Z + (float) m[7];
+			float viewZ = (float) m[8] * X + (float) m[9] * Y + (float) m[10] * Z + (float) m[11];
+			x[i] = viewX;
+			y[i] = viewY;
+			z[i] = viewZ;
+			float scale = (float) FOV / -viewZ;
+			screenX[i] = viewX * scale + centerX;
+			screenY[i] = viewY * scale + centerY;
+		}
+	}
+	
+	//Widens a float vector into the doubles at "index"
+	private static void store(FloatVector values, double[] target, int index){
+		((DoubleVector) values.convertShape(VectorOperators.F2D, DOUBLES, 0)).intoArray(target, index);
+	}
+}